@@ -0,0 +1,66 @@
+#!/bin/sh
+# Run the JMH benchmarks against two commits and print their scores side by side.
+#
+# Usage: bench/jmh/compare.sh <base> <head> [JMH options]
+#   e.g. bench/jmh/compare.sh main HEAD -p input=large NumericBenchmark
+#        bench/jmh/compare.sh HEAD~1 HEAD -prof gc EndToEndBenchmark
+#
+# Each commit is checked out into a temporary git worktree and the benchmarks in this working tree
+# are compiled against its sources, so both commits are measured by exactly the same benchmarks.
+# A benchmark that uses something the older commit doesn't have won't compile. Leave its source out
+# with EXCLUDE, e.g. EXCLUDE='**/EvaluateBenchmark.java' (and don't select it). Both runs write JMH's CSV results, which are kept in
+# the temporary directory printed at the start, and the table shows each score with its error and
+# the change from base to head (negative is faster for time per operation).
+set -e
+
+if [ $# -lt 2 ]; then
+  echo "Usage: $0 <base> <head> [JMH options]" >&2
+  exit 1
+fi
+base=$1
+head=$2
+shift 2
+
+root=$(cd "$(dirname "$0")/../.." && pwd)
+work=$(mktemp -d "${TMPDIR:-/tmp}/scli-compare.XXXXXX")
+echo "Results in $work" >&2
+
+cleanup() {
+  git -C "$root" worktree remove --force "$work/base" > /dev/null 2>&1 || true
+  git -C "$root" worktree remove --force "$work/head" > /dev/null 2>&1 || true
+}
+trap cleanup EXIT
+
+# Build the benchmarks against the sources of a commit and run them.
+run() {
+  name=$1
+  commit=$2
+  shift 2
+  git -C "$root" worktree add --detach "$work/$name" "$commit" > /dev/null 2>&1
+  mvn -B -q -f "$root/bench/jmh/pom.xml" -Dscl.root="$work/$name" \
+    -Dbench.exclude="${EXCLUDE:-nothing}" clean package
+  cp "$root/bench/jmh/target/benchmarks.jar" "$work/$name.jar"
+  echo "Running $commit" >&2
+  java -jar "$work/$name.jar" -rf csv -rff "$work/$name.csv" "$@" >&2
+}
+
+run base "$base" "$@"
+run head "$head" "$@"
+
+# Join the two CSV files on the benchmark name and its parameters. None of the benchmarks' names or
+# parameters contain commas, so dropping JMH's quotes and splitting on commas is enough.
+awk -F, '
+  { gsub(/"/, "") }
+  FNR == 1 { next }
+  {
+    k = $1
+    for (i = 8; i <= NF; i++) k = k " " $i
+  }
+  FILENAME == ARGV[1] { score[k] = $5; error[k] = $6; next }
+  k in score {
+    change = score[k] == 0 ? 0 : ($5 - score[k]) * 100 / score[k]
+    printf "%-70s %14.3f ± %-10.3f %14.3f ± %-10.3f %+8.1f%%  %s\n",
+        k, score[k], error[k], $5, $6, change, $7
+  }
+  BEGIN { printf "%-70s %27s %27s %9s\n", "benchmark", "base", "head", "change" }
+' "$work/base.csv" "$work/head.csv"
@@ -0,0 +1,97 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// The same element-wise operations on byte arrays four ways: the Vector API kernels, the plain
+// loop kernels, a whole SCLByteArray operation (which adds the new array and the dispatch), and a
+// loop over SCLBytes the way a program without arrays would have to do it, one element at a time.
+// The forks start with the Vector API module so both kinds of kernels can be measured in one run.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class ByteArrayBenchmark {
+  @Param({"64", "4096"})
+  private int size;
+
+  private final ByteKernels vector = new VectorByteKernels();
+  private final ByteKernels scalar = new ScalarByteKernels();
+
+  private byte[] lhs;
+  private byte[] rhs;
+  private byte[] out;
+  private SCLByteArray lhsArray;
+  private SCLByteArray rhsArray;
+  private SCLByte[] lhsBytes;
+  private SCLByte[] rhsBytes;
+  private SCLByte[] outBytes;
+
+  @Setup
+  public void setup() {
+    Random random = new Random(42);
+    lhs = new byte[size];
+    rhs = new byte[size];
+    out = new byte[size];
+    random.nextBytes(lhs);
+    random.nextBytes(rhs);
+    lhsArray = new SCLByteArray(lhs.clone());
+    rhsArray = new SCLByteArray(rhs.clone());
+
+    lhsBytes = new SCLByte[size];
+    rhsBytes = new SCLByte[size];
+    outBytes = new SCLByte[size];
+    for (int i = 0; i < size; i++) {
+      lhsBytes[i] = SCLByte.of(lhs[i]);
+      rhsBytes[i] = SCLByte.of(rhs[i]);
+    }
+  }
+
+  @Benchmark
+  public byte[] vectorXor() {
+    vector.xor(lhs, rhs, out);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] scalarXor() {
+    scalar.xor(lhs, rhs, out);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] vectorShiftRight() {
+    vector.shiftRight(lhs, 3, out);
+    return out;
+  }
+
+  @Benchmark
+  public byte[] scalarShiftRight() {
+    scalar.shiftRight(lhs, 3, out);
+    return out;
+  }
+
+  @Benchmark
+  public TypedValue arrayXor() {
+    return SCLByteArray.apply("bxor", lhsArray, rhsArray);
+  }
+
+  @Benchmark
+  public SCLByte[] byteXor() {
+    for (int i = 0; i < size; i++) outBytes[i] = (SCLByte) lhsBytes[i].bitwiseXor(rhsBytes[i]);
+    return outBytes;
+  }
+}
@@ -0,0 +1,51 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// bitops1.scl from start to finish, with its output thrown away. load runs everything (scan,
+// parse, prepare, and execute), run only executes a program that was loaded once, the way the
+// daemon and batch mode run a program they have already cached.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EndToEndBenchmark {
+  private String source;
+  private SCLProgram program;
+
+  @Setup
+  public void setup() {
+    source = Programs.bitops1();
+    program = new SCLProgram(source);
+  }
+
+  @Benchmark
+  public Interpreter load() {
+    return execute(new SCLProgram(source));
+  }
+
+  @Benchmark
+  public Interpreter run() {
+    return execute(program);
+  }
+
+  private static Interpreter execute(SCLProgram program) {
+    Interpreter interpreter = new Interpreter(program);
+    interpreter.setOutput(Writer.nullWriter());
+    interpreter.execute();
+    return interpreter;
+  }
+}
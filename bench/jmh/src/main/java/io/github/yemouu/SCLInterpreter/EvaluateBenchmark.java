@@ -0,0 +1,127 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Evaluating one expression over global variables, both the way tier 0 does it (walking the
+// tokens with Interpreter.evaluate) and the way tier 1 does it (a compiled Expression tree). The
+// compiled tree looks up each operator's kernel by the types of the values, since globals don't
+// have a type it can rely on. The same expression over parameters of the same types (spelled in
+// lower case, since a parameter can't have the name of a global) shows what finding the kernels
+// when the tree is compiled saves.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EvaluateBenchmark {
+  // The variables the expressions use, an empty main so that executing the program defines them
+  // and nothing else, and a function with parameters of the same types.
+  private static final String PROGRAM =
+      String.join(
+          "\n",
+          "symbol MASK 0FFh",
+          "symbol A 066h",
+          "symbol B 0B3h",
+          "symbol N 12345",
+          "global declarations",
+          "variables",
+          "  define unused of type unsigned integer",
+          "implementations",
+          "function main is",
+          "  begin",
+          "    exit",
+          "endfun main",
+          "function typed parameters mask of type byte, a of type byte, b of type byte,"
+              + " n of type unsigned integer is",
+          "  begin",
+          "    exit",
+          "endfun typed",
+          "");
+
+  @Param({
+    "A band B",
+    "(A band B) bor (A bxor 01h)",
+    "((N lshift 3) bxor (N rshift 2)) band MASK",
+    "negate (A bor (B lshift 1))"
+  })
+  public String expression;
+
+  private Interpreter interpreter;
+  private List<Token> tokens;
+  private Expression compiled;
+  private Map<String, TypedValue> globals;
+  private final TypedValue[] slots = new TypedValue[0];
+  private Expression typed;
+  private TypedValue[] typedSlots;
+
+  @Setup
+  public void setup() {
+    SCLProgram program = new SCLProgram(PROGRAM);
+    interpreter = new Interpreter(program);
+    interpreter.setOutput(Writer.nullWriter());
+    interpreter.execute();
+
+    // The scanner only finishes a token when it sees the character after it, so the expression
+    // needs a line ending. Its end of statement token isn't part of the expression.
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(expression + "\n");
+    tokens = scanner.getTokens();
+    while (!tokens.isEmpty() && tokens.get(tokens.size() - 1).TYPE == TokenType.END_OF_STATEMENT)
+      tokens = tokens.subList(0, tokens.size() - 1);
+
+    Subprogram main = ((SCLSubprogram) interpreter.getValue("main")).getSubprogram();
+    compiled = Expression.compile(tokens, main);
+    globals =
+        Map.of(
+            "MASK", interpreter.getValue("MASK"),
+            "A", interpreter.getValue("A"),
+            "B", interpreter.getValue("B"),
+            "N", interpreter.getValue("N"));
+
+    Subprogram function = ((SCLSubprogram) interpreter.getValue("typed")).getSubprogram();
+    List<Token> lowerCase = new ArrayList<>();
+    for (Token token : tokens)
+      lowerCase.add(
+          token.TYPE == TokenType.IDENTIFIER
+              ? new Token(token.TYPE, token.VALUE.toLowerCase())
+              : token);
+    typed = Expression.compile(lowerCase, function);
+    typedSlots = new TypedValue[function.getFrameSize()];
+    for (String name : globals.keySet()) {
+      int slot = function.getSlot(name.toLowerCase());
+      SCLTypes type = function.getInitialSlots()[slot].TYPE;
+      typedSlots[slot] = Expression.numeric(globals.get(name)).to(type);
+    }
+  }
+
+  @Benchmark
+  public TypedValue interpreted() {
+    return interpreter.evaluate(tokens);
+  }
+
+  @Benchmark
+  public TypedValue compiled() {
+    return compiled.evaluate(slots, globals);
+  }
+
+  @Benchmark
+  public TypedValue resolved() {
+    return typed.evaluate(typedSlots, globals);
+  }
+}
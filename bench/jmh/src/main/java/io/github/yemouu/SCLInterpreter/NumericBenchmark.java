@@ -0,0 +1,120 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Every operation of SCLByte and SCLUnsignedInteger on its own, the 64 bit types, and an operator
+// between two different types (which works in their join). The operands are fields rather than
+// constants so the JIT can't fold the operations away. Run with -prof gc to see how much each
+// operation allocates.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class NumericBenchmark {
+  private SCLByte byteA = new SCLByte("066h");
+  private SCLByte byteB = new SCLByte("0B3h");
+  private SCLByte byteShift = new SCLByte("03h");
+  private SCLUnsignedInteger intA = new SCLUnsignedInteger("3735928559");
+  private SCLUnsignedInteger intB = new SCLUnsignedInteger("12345");
+  private SCLUnsignedInteger intShift = new SCLUnsignedInteger("3");
+  private SCLLong longA = new SCLLong("-81985529216486896");
+  private SCLLong longB = new SCLLong("12345");
+  private SCLUnsignedLong unsignedLongA = new SCLUnsignedLong("18364758544493064720");
+  private SCLUnsignedLong unsignedLongB = new SCLUnsignedLong("12345");
+
+  @Benchmark
+  public TypedNumericValue byteAnd() {
+    return byteA.bitwiseAnd(byteB);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteOr() {
+    return byteA.bitwiseOr(byteB);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteXor() {
+    return byteA.bitwiseXor(byteB);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteLeftShift() {
+    return byteA.leftShift(byteShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteRightShift() {
+    return byteA.rightShift(byteShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteNegate() {
+    return byteA.negate();
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerAnd() {
+    return intA.bitwiseAnd(intB);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerOr() {
+    return intA.bitwiseOr(intB);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerXor() {
+    return intA.bitwiseXor(intB);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerLeftShift() {
+    return intA.leftShift(intShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerRightShift() {
+    return intA.rightShift(intShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedIntegerNegate() {
+    return intA.negate();
+  }
+
+  @Benchmark
+  public TypedNumericValue longAnd() {
+    return longA.bitwiseAnd(longB);
+  }
+
+  @Benchmark
+  public TypedNumericValue longRightShift() {
+    return longA.rightShift(intShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedLongXor() {
+    return unsignedLongA.bitwiseXor(unsignedLongB);
+  }
+
+  @Benchmark
+  public TypedNumericValue unsignedLongRightShift() {
+    return unsignedLongA.rightShift(intShift);
+  }
+
+  @Benchmark
+  public TypedNumericValue byteAndUnsignedInteger() {
+    return byteA.bitwiseAnd(intA);
+  }
+}
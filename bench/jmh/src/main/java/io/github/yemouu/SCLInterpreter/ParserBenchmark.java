@@ -0,0 +1,50 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Parser.begin on the same inputs as ScannerBenchmark. A Parser can only parse once and its
+// constructor scans the program, so a fresh Parser is made (untimed) before every invocation. That
+// setup isn't free even when it isn't timed, which makes the small input's numbers noisier than
+// the large one's.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserBenchmark {
+  @Param({"small", "large"})
+  public String input;
+
+  private String source;
+  private Parser parser;
+
+  @Setup
+  public void setup() {
+    source = input.equals("small") ? Programs.bitops1() : Programs.large(10000);
+  }
+
+  @Setup(Level.Invocation)
+  public void scan() {
+    parser = new Parser(source);
+  }
+
+  @Benchmark
+  public List<List<Token>> begin() {
+    parser.begin();
+    return parser.getStatements();
+  }
+}
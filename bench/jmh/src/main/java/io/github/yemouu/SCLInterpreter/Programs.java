@@ -0,0 +1,65 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+
+// The programs the benchmarks run.
+final class Programs {
+  private Programs() {}
+
+  // examples/bitops1.scl, which the build copies into the benchmarks jar.
+  static String bitops1() {
+    try (InputStream in = Programs.class.getResourceAsStream("/bitops1.scl")) {
+      return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+    } catch (IOException error) {
+      throw new UncheckedIOException(error);
+    }
+  }
+
+  // A program whose main has the given number of statements, cycling through every bitwise
+  // operator on byte and unsigned integer variables. Good for seeing how the scanner and parser
+  // scale with the size of a file.
+  static String large(int statements) {
+    StringBuilder program = new StringBuilder();
+    program.append("symbol MASK 0FFh\n");
+    program.append("global declarations\n");
+    program.append("variables\n");
+    program.append("  define total of type unsigned integer\n");
+    program.append("implementations\n");
+    program.append("function main is\n");
+    program.append("  variables\n");
+    program.append("    define a of type byte\n");
+    program.append("    define b of type byte\n");
+    program.append("    define n of type unsigned integer\n");
+    program.append("  begin\n");
+    program.append("    set a = 066h\n");
+    program.append("    set b = 0B3h\n");
+    program.append("    set n = 12345\n");
+    for (int i = 0; i < statements; i++) {
+      switch (i % 6) {
+        case 0:
+          program.append("    set a = (a band b) bor 01h // keep bit 0\n");
+          break;
+        case 1:
+          program.append("    set b = b bxor (a lshift 1)\n");
+          break;
+        case 2:
+          program.append("    set n = (n rshift 3) bxor ").append(i).append('\n');
+          break;
+        case 3:
+          program.append("    set total = (n band MASK) lshift 2\n");
+          break;
+        case 4:
+          program.append("    set a = negate a\n");
+          break;
+        default:
+          program.append("    display \"step ").append(i).append(": \", a, \" \", n\n");
+          break;
+      }
+    }
+    program.append("endfun main\n");
+    return program.toString();
+  }
+}
@@ -0,0 +1,178 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+
+// Runs the scanner, the parser, and the interpreter over generated programs of growing size and
+// reports how their time and peak heap grow with the size of the program. Each size multiplies the
+// number of functions of the base workload, so the programs grow in every way at once (tokens,
+// statements, identifiers, and calls).
+//
+// The exponent column is how fast the time grows between one size and the one before it: if the
+// program has k times the tokens and takes k^e times as long, e is the exponent. Anything that is
+// linear stays close to 1, and something quadratic hiding in a phase shows up as a phase whose
+// exponent climbs towards 2 as the programs get bigger.
+//
+//   java -cp bench/jmh/target/benchmarks.jar io.github.yemouu.SCLInterpreter.ScalingCurve \
+//       [--sizes 1,2,4,8,16,32] [--runs 5] [workload settings]
+//
+// The workload settings are the ones Workload takes (--seed, --functions, --statements, ...). The
+// time of a phase is the fastest of its runs. Its peak heap is how far the heap grew above where it
+// was when the phase started, right after a full GC.
+final class ScalingCurve {
+  private final List<MemoryPoolMXBean> heap = new ArrayList<>();
+
+  private ScalingCurve() {
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans())
+      if (pool.getType() == MemoryType.HEAP) heap.add(pool);
+  }
+
+  // One measurement of a phase at one size.
+  private static final class Sample {
+    final int size;
+    final long tokens;
+    final long nanos;
+    final long peakBytes;
+
+    Sample(int size, long tokens, long nanos, long peakBytes) {
+      this.size = size;
+      this.tokens = tokens;
+      this.nanos = nanos;
+      this.peakBytes = peakBytes;
+    }
+  }
+
+  // The time and peak heap of one run of a phase.
+  private long nanos;
+  private long peakBytes;
+
+  private void measure(Runnable phase) {
+    System.gc();
+    long before = 0;
+    for (MemoryPoolMXBean pool : heap) {
+      pool.resetPeakUsage();
+      before += pool.getUsage().getUsed();
+    }
+
+    long start = System.nanoTime();
+    phase.run();
+    nanos = System.nanoTime() - start;
+
+    long peak = 0;
+    for (MemoryPoolMXBean pool : heap) peak += pool.getPeakUsage().getUsed();
+    peakBytes = Math.max(0, peak - before);
+  }
+
+  private static void print(String phase, List<Sample> samples) {
+    System.out.println(phase);
+    System.out.printf(
+        "%6s %10s %12s %10s %10s %9s%n", "size", "tokens", "ms", "ns/token", "peak_mb", "exponent");
+    Sample previous = null;
+    for (Sample sample : samples) {
+      String exponent = "";
+      if (previous != null && sample.tokens != previous.tokens && previous.nanos > 0)
+        exponent =
+            String.format(
+                "%.2f",
+                Math.log((double) sample.nanos / previous.nanos)
+                    / Math.log((double) sample.tokens / previous.tokens));
+      System.out.printf(
+          "%6d %10d %12.3f %10.1f %10.2f %9s%n",
+          sample.size,
+          sample.tokens,
+          sample.nanos / 1e6,
+          (double) sample.nanos / sample.tokens,
+          sample.peakBytes / (1024.0 * 1024.0),
+          exponent);
+      previous = sample;
+    }
+    System.out.println();
+  }
+
+  public static void main(String[] args) {
+    Workload workload = new Workload();
+    List<String> rest = workload.configure(args);
+    int[] sizes = {1, 2, 4, 8, 16, 32};
+    int runs = 5;
+    for (int i = 0; i < rest.size(); i++) {
+      if (rest.get(i).equals("--sizes") && i + 1 < rest.size()) {
+        String[] parts = rest.get(++i).split(",");
+        sizes = new int[parts.length];
+        for (int j = 0; j < parts.length; j++) sizes[j] = Integer.parseInt(parts[j].trim());
+      } else if (rest.get(i).equals("--runs") && i + 1 < rest.size()) {
+        runs = Integer.parseInt(rest.get(++i));
+      } else {
+        System.err.println(
+            "Usage: ScalingCurve [--sizes 1,2,4,...] [--runs n] [--seed n] [--symbols n]"
+                + " [--globals n] [--functions n] [--statements n] [--depth n] [--comments f]");
+        System.exit(1);
+      }
+    }
+
+    ScalingCurve curve = new ScalingCurve();
+    int functions = workload.functions;
+
+    // Give the JIT a chance to compile the scanner, parser, and interpreter before we time them,
+    // so the smallest sizes aren't measuring the interpreter running in the JVM's interpreter.
+    workload.functions = functions;
+    String warmup = workload.generate();
+    for (int i = 0; i < 20; i++) curve.run(warmup);
+
+    List<Sample> scan = new ArrayList<>();
+    List<Sample> parse = new ArrayList<>();
+    List<Sample> execute = new ArrayList<>();
+    for (int size : sizes) {
+      workload.functions = functions * size;
+      String source = workload.generate();
+      long[][] best = new long[3][];
+      for (int run = 0; run < runs; run++) {
+        long[][] result = curve.run(source);
+        for (int phase = 0; phase < 3; phase++)
+          if (best[phase] == null || result[phase][0] < best[phase][0]) best[phase] = result[phase];
+      }
+      scan.add(new Sample(size, best[0][2], best[0][0], best[0][1]));
+      parse.add(new Sample(size, best[1][2], best[1][0], best[1][1]));
+      execute.add(new Sample(size, best[2][2], best[2][0], best[2][1]));
+      System.err.printf("size %d: %d characters done%n", size, source.length());
+    }
+
+    System.out.printf(
+        "Workload: seed %d, %d symbols, %d globals, %d functions x size, %d statements each,"
+            + " depth %d, comments %.2f%n%n",
+        workload.seed,
+        workload.symbols,
+        workload.globals,
+        functions,
+        workload.statements,
+        workload.expressionDepth,
+        workload.commentDensity);
+    print("Scan (SCLScanner.tokenize)", scan);
+    print("Parse (Parser.begin)", parse);
+    print("Execute (Interpreter.execute)", execute);
+  }
+
+  // Run every phase over a program once. Returns the time, peak heap, and token count of each.
+  private long[][] run(String source) {
+    long[][] result = new long[3][];
+
+    SCLScanner scanner = new SCLScanner();
+    measure(() -> scanner.tokenize(source));
+    long tokens = scanner.getTokens().size();
+    result[0] = new long[] {nanos, peakBytes, tokens};
+
+    Parser parser = new Parser(source);
+    measure(parser::begin);
+    result[1] = new long[] {nanos, peakBytes, tokens};
+
+    SCLProgram program = new SCLProgram(source);
+    Interpreter interpreter = new Interpreter(program);
+    interpreter.setOutput(Writer.nullWriter());
+    measure(interpreter::execute);
+    result[2] = new long[] {nanos, peakBytes, tokens};
+    return result;
+  }
+}
@@ -0,0 +1,42 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// SCLScanner.tokenize on bitops1.scl (small) and on a generated program with 10000 statements in
+// main (large).
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ScannerBenchmark {
+  @Param({"small", "large"})
+  public String input;
+
+  private String source;
+
+  @Setup
+  public void setup() {
+    source = input.equals("small") ? Programs.bitops1() : Programs.large(10000);
+  }
+
+  @Benchmark
+  public List<Token> tokenize() {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(source);
+    return scanner.getTokens();
+  }
+}
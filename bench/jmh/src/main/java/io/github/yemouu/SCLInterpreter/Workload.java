@@ -0,0 +1,218 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+// Generates valid SCL programs of any size. The same settings and seed always give the same
+// program, so a measurement can be repeated exactly and two commits can be measured on the same
+// input.
+//
+// A program has the given number of symbols and global variables, and the given number of
+// functions each with the given number of statements. Every function takes two unsigned integers
+// and returns one. Its statements assign expressions over its parameters, its locals, the symbols,
+// and the globals, call functions defined before it, and run short if and for blocks. main sets
+// every global, calls every function, and displays what they return. Expressions are nested to
+// the given depth and only use unsigned integers, so every operation is valid and the program
+// always runs to the end.
+//
+//   java -cp bench/jmh/target/benchmarks.jar io.github.yemouu.SCLInterpreter.Workload \
+//       --seed 42 --functions 100 --statements 50 > big.scl
+final class Workload {
+  private static final String[] OPERATORS = {"band", "bor", "bxor", "lshift", "rshift"};
+
+  long seed = 1;
+  int symbols = 10;
+  int globals = 10;
+  int functions = 10;
+  int statements = 20;
+  int expressionDepth = 3;
+
+  // The chance of a comment before a statement, and separately of one at the end of it.
+  double commentDensity = 0.2;
+
+  private SplittableRandom random;
+  private StringBuilder out;
+
+  String generate() {
+    random = new SplittableRandom(seed);
+    out = new StringBuilder();
+
+    for (int i = 0; i < symbols; i++) line(0, "symbol S" + i + " " + random.nextInt(1, 65536));
+    // The parser expects a program to start with a keyword, so this can't be the first line.
+    line(0, "/* Generated workload, seed " + seed + " */");
+    line(0, "global declarations");
+    line(0, "variables");
+    for (int i = 0; i < globals; i++) line(1, "define g" + i + " of type unsigned integer");
+    line(0, "");
+    line(0, "implementations");
+    for (int i = 0; i < functions; i++) function(i);
+    main();
+    return out.toString();
+  }
+
+  private void function(int index) {
+    String name = "f" + index;
+    line(0, "");
+    line(
+        1,
+        "function "
+            + name
+            + " return type unsigned integer parameters a of type unsigned integer,"
+            + " b of type unsigned integer is");
+    line(2, "variables");
+    int locals = Math.max(1, statements / 4);
+    for (int i = 0; i < locals; i++) line(3, "define v" + i + " of type unsigned integer");
+    line(3, "define i of type unsigned integer");
+    line(2, "begin");
+
+    // The names that already have a value. Locals join once they've been assigned.
+    List<String> names = new ArrayList<>(List.of("a", "b"));
+    for (int i = 0; i < symbols; i++) names.add("S" + i);
+    for (int i = 0; i < globals; i++) names.add("g" + i);
+
+    for (int i = 0; i < statements; i++) {
+      comment(3);
+      String target = "v" + random.nextInt(locals);
+      int kind = random.nextInt(10);
+      if (kind == 0 && index > 0)
+        statement(
+            3,
+            "set "
+                + target
+                + " = call f"
+                + random.nextInt(index)
+                + " using "
+                + expression(names, expressionDepth)
+                + ", "
+                + expression(names, 0));
+      else if (kind == 1) {
+        statement(
+            3,
+            "if "
+                + expression(names, 1)
+                + " less "
+                + expression(names, 1)
+                + " then");
+        statement(4, "set " + target + " = " + expression(names, expressionDepth));
+        statement(3, "endif");
+      } else if (kind == 2) {
+        statement(3, "for i = 1 to " + random.nextInt(1, 4) + " do");
+        statement(4, "set " + target + " = " + target(names, target) + " bxor i");
+        statement(3, "endfor");
+      } else statement(3, "set " + target + " = " + expression(names, expressionDepth));
+      // The body of an if might not run, every other statement always assigns its target.
+      if (kind != 1 && !names.contains(target)) names.add(target);
+    }
+
+    statement(3, "return " + expression(names, expressionDepth));
+    line(1, "endfun " + name);
+  }
+
+  // In a for loop the target may not have a value yet, in which case we start it from a.
+  private static String target(List<String> names, String target) {
+    return names.contains(target) ? target : "a";
+  }
+
+  private void main() {
+    line(0, "");
+    line(1, "function main is");
+    line(2, "variables");
+    line(3, "define r of type unsigned integer");
+    line(2, "begin");
+    for (int i = 0; i < globals; i++) statement(3, "set g" + i + " = " + random.nextInt(65536));
+    for (int i = 0; i < functions; i++) {
+      comment(3);
+      statement(
+          3, "set r = call f" + i + " using " + random.nextInt(65536) + ", " + random.nextInt(32));
+      statement(3, "display \"f" + i + " \", r");
+    }
+    line(1, "endfun main");
+  }
+
+  // An expression nested depth levels deep. Each level combines the level below it with a single
+  // operand, on either side, so the size of an expression grows linearly with its depth.
+  private String expression(List<String> names, int depth) {
+    if (depth == 0) return operand(names);
+
+    String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+    boolean shift = operator.endsWith("shift");
+    String operand = shift ? String.valueOf(random.nextInt(8)) : operand(names);
+    String inner = expression(names, depth - 1);
+    if (random.nextBoolean() || shift)
+      return "(" + inner + ") " + operator + " " + operand;
+    return operand + " " + operator + " (" + inner + ")";
+  }
+
+  private String operand(List<String> names) {
+    int choice = random.nextInt(8);
+    if (choice == 0) return String.valueOf(random.nextInt(65536));
+    // The parser only allows negate at the start of an expression or after (.
+    if (choice == 1) return "(negate " + names.get(random.nextInt(names.size())) + ")";
+    return names.get(random.nextInt(names.size()));
+  }
+
+  private void comment(int indent) {
+    if (random.nextDouble() < commentDensity)
+      line(indent, "// " + random.nextInt(1000000) + " a comment the scanner has to skip over");
+  }
+
+  private void statement(int indent, String statement) {
+    if (random.nextDouble() < commentDensity) statement += " // trailing comment";
+    line(indent, statement);
+  }
+
+  private void line(int indent, String line) {
+    for (int i = 0; i < indent; i++) out.append("  ");
+    out.append(line).append('\n');
+  }
+
+  // Read the settings from --name value pairs. Anything that isn't a setting is returned.
+  List<String> configure(String[] args) {
+    List<String> rest = new ArrayList<>();
+    for (int i = 0; i < args.length; i++) {
+      if (i + 1 == args.length) {
+        rest.add(args[i]);
+        continue;
+      }
+      switch (args[i]) {
+        case "--seed":
+          seed = Long.parseLong(args[++i]);
+          break;
+        case "--symbols":
+          symbols = Integer.parseInt(args[++i]);
+          break;
+        case "--globals":
+          globals = Integer.parseInt(args[++i]);
+          break;
+        case "--functions":
+          functions = Integer.parseInt(args[++i]);
+          break;
+        case "--statements":
+          statements = Integer.parseInt(args[++i]);
+          break;
+        case "--depth":
+          expressionDepth = Integer.parseInt(args[++i]);
+          break;
+        case "--comments":
+          commentDensity = Double.parseDouble(args[++i]);
+          break;
+        default:
+          rest.add(args[i]);
+      }
+    }
+    return rest;
+  }
+
+  public static void main(String[] args) {
+    Workload workload = new Workload();
+    List<String> rest = workload.configure(args);
+    if (!rest.isEmpty()) {
+      System.err.println(
+          "Usage: Workload [--seed n] [--symbols n] [--globals n] [--functions n] [--statements n]"
+              + " [--depth n] [--comments fraction]");
+      System.exit(1);
+    }
+    System.out.print(workload.generate());
+  }
+}
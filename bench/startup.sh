@@ -0,0 +1,77 @@
+#!/bin/sh
+# Measure how long it takes to run a small SCL program from a cold start. Each mode runs the
+# program the same number of times and we report the minimum, median, and mean wall clock time.
+#
+#   no-cds   the JVM without any class data sharing (-Xshare:off)
+#   cold     a plain `java -jar`, which only shares the JDK's own classes
+#   appcds   the AppCDS archive built by `mvn -P appcds package`
+#   daemon   a client talking to an already running, already warm daemon
+#
+# Usage: bench/startup.sh [program] [runs]
+# Build first with `mvn -P appcds package`. Results go to stdout so they can be compared across
+# commits, e.g. `bench/startup.sh > before.txt`.
+root=$(cd "$(dirname "$0")/.." && pwd)
+program=${1:-$root/examples/bitops1.scl}
+runs=${2:-20}
+jar="$root/target/scli-1.0.0.jar"
+archive="$root/target/scli.jsa"
+socket="${TMPDIR:-/tmp}/scli-startup-bench-$$.sock"
+
+if [ ! -f "$jar" ]; then
+  echo "$jar not found, run mvn -P appcds package first" >&2
+  exit 1
+fi
+
+# Print the time in milliseconds it takes to run the given command once.
+time_ms() {
+  start=$(date +%s%N)
+  "$@" > /dev/null 2>&1
+  end=$(date +%s%N)
+  echo $(((end - start) / 1000000))
+}
+
+# Run a command $runs times (after one untimed run) and print min, median, and mean.
+measure() {
+  name=$1
+  shift
+  "$@" > /dev/null 2>&1
+  i=0
+  while [ $i -lt "$runs" ]; do
+    time_ms "$@"
+    i=$((i + 1))
+  done | sort -n | awk -v name="$name" '
+    { times[NR] = $1; total += $1 }
+    END { printf "%-8s %8d %8d %8.1f\n", name, times[1], times[int((NR + 1) / 2)], total / NR }'
+}
+
+echo "$runs runs of $program, times in milliseconds"
+printf "%-8s %8s %8s %8s\n" mode min median mean
+
+measure no-cds java -Xshare:off -jar "$jar" "$program"
+measure cold java -jar "$jar" "$program"
+
+if [ -f "$archive" ]; then
+  measure appcds java -XX:SharedArchiveFile="$archive" -jar "$jar" "$program"
+else
+  echo "appcds   skipped, $archive not found" >&2
+fi
+
+java -jar "$jar" --daemon --socket "$socket" 2> /dev/null &
+daemon=$!
+while [ ! -S "$socket" ]; do sleep 0.1; done
+
+# Warm the daemon up before measuring so that we are timing the JIT compiled interpreter.
+i=0
+while [ $i -lt 50 ]; do
+  java -jar "$jar" --client --socket "$socket" "$program" > /dev/null
+  i=$((i + 1))
+done
+
+if [ -f "$archive" ]; then
+  measure daemon java -XX:SharedArchiveFile="$archive" -jar "$jar" --client --socket "$socket" "$program"
+else
+  measure daemon java -jar "$jar" --client --socket "$socket" "$program"
+fi
+
+java -jar "$jar" --stop --socket "$socket" > /dev/null
+wait $daemon
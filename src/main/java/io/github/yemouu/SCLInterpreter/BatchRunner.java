@@ -0,0 +1,217 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+// Runs many programs in a single JVM. Each program is parsed and executed on a work stealing pool
+// with its output captured, so small programs keep every core busy without paying for a JVM each.
+//
+// Output is either printed in the order the programs were given (waiting on slow programs when it
+// has to) or printed as soon as each program finishes with every line prefixed by the program's
+// path. Either way, a summary with each program's exit status and run time is printed to stderr.
+public class BatchRunner {
+  static final String USAGE =
+      "Usage: java Interpreter --batch [--as-completed] [--threads <count>]"
+          + " [--manifest <file>]... <file | directory>...";
+
+  private final List<Path> programs;
+  private final boolean asCompleted;
+  private final int threads;
+
+  // The result of running one program.
+  private static class Result {
+    final int index;
+    final Path path;
+    final String output;
+    final String error;
+    final int status;
+    final long nanos;
+
+    Result(int index, Path path, String output, String error, int status, long nanos) {
+      this.index = index;
+      this.path = path;
+      this.output = output;
+      this.error = error;
+      this.status = status;
+      this.nanos = nanos;
+    }
+  }
+
+  public BatchRunner(List<Path> programs, boolean asCompleted, int threads) {
+    this.programs = programs;
+    this.asCompleted = asCompleted;
+    this.threads = threads;
+  }
+
+  // Turn the command line into a list of programs. Files are used as is, directories are searched
+  // for .scl files (sorted so the order doesn't depend on the file system), and manifests list one
+  // path per line relative to the manifest. Blank lines and lines starting with # are ignored.
+  private static List<Path> collect(List<String> paths, List<String> manifests)
+      throws IOException {
+    List<Path> programs = new ArrayList<>();
+
+    for (String manifest : manifests) {
+      Path manifestPath = Path.of(manifest);
+      Path base = manifestPath.toAbsolutePath().getParent();
+      for (String line : Files.readAllLines(manifestPath)) {
+        line = line.strip();
+        if (line.isEmpty() || line.startsWith("#")) continue;
+        programs.add(base.resolve(line).normalize());
+      }
+    }
+
+    for (String path : paths) {
+      Path file = Path.of(path);
+      if (!Files.isDirectory(file)) {
+        programs.add(file);
+        continue;
+      }
+
+      try (Stream<Path> walk = Files.walk(file)) {
+        programs.addAll(
+            walk.filter(Files::isRegularFile)
+                .filter(candidate -> candidate.toString().endsWith(".scl"))
+                .sorted()
+                .collect(Collectors.toList()));
+      }
+    }
+
+    return programs;
+  }
+
+  // Parse and execute a single program. We read the file ourselves because the scanner exits the
+  // JVM when it can't open a file, and one bad path shouldn't end the whole batch. For the same
+  // reason an Error (a program that runs out of memory, say) only fails the program it came from.
+  private static Result execute(int index, Path path) {
+    long start = System.nanoTime();
+    StringWriter output = new StringWriter();
+    try {
+      Interpreter interpreter = new Interpreter(new SCLProgram(path));
+      interpreter.setOutput(new PrintWriter(output));
+      interpreter.execute();
+      return new Result(index, path, output.toString(), null, 0, System.nanoTime() - start);
+    } catch (Throwable error) {
+      long nanos = System.nanoTime() - start;
+      return new Result(index, path, output.toString(), error.toString(), 1, nanos);
+    }
+  }
+
+  // Run every program and print their output. Returns 0 if every program succeeded, 1 otherwise.
+  public int run() throws InterruptedException {
+    ForkJoinPool pool = new ForkJoinPool(threads);
+    CompletionService<Result> completion = new ExecutorCompletionService<>(pool);
+    long start = System.nanoTime();
+
+    List<Future<Result>> futures = new ArrayList<>(programs.size());
+    for (int i = 0; i < programs.size(); i++) {
+      int index = i;
+      futures.add(completion.submit(() -> execute(index, programs.get(index))));
+    }
+
+    // Results are stored by the program's position so the summary is always in the order the
+    // programs were given, no matter what order they finished in.
+    Result[] results = new Result[programs.size()];
+    try {
+      if (asCompleted) {
+        for (int i = 0; i < programs.size(); i++) {
+          Result result = completion.take().get();
+          printPrefixed(result);
+          results[result.index] = result;
+        }
+      } else {
+        for (Future<Result> future : futures) {
+          Result result = future.get();
+          System.out.print(result.output);
+          if (result.error != null) System.err.println(result.path + ": " + result.error);
+          results[result.index] = result;
+        }
+      }
+    } catch (ExecutionException error) {
+      // execute() catches everything a program can throw, so this means something is very wrong.
+      throw new IllegalStateException(error.getCause());
+    } finally {
+      pool.shutdown();
+    }
+    System.out.flush();
+
+    return summarize(results, System.nanoTime() - start);
+  }
+
+  // Print a program's output with every line prefixed by the program's path.
+  private static void printPrefixed(Result result) {
+    String prefix = result.path + ": ";
+    for (String line : result.output.split("\n")) {
+      if (line.isEmpty()) continue;
+      System.out.println(prefix + line);
+    }
+    if (result.error != null) System.err.println(prefix + result.error);
+  }
+
+  // Print the status and run time of each program (in the order they were given) and the totals.
+  private int summarize(Result[] results, long wallNanos) {
+    int failures = 0;
+    long totalNanos = 0;
+    System.err.printf("%6s %10s  %s%n", "status", "time_ms", "program");
+    for (Result result : results) {
+      if (result.status != 0) failures++;
+      totalNanos += result.nanos;
+      System.err.printf("%6d %10.3f  %s%n", result.status, result.nanos / 1e6, result.path);
+    }
+    System.err.printf(
+        "%d programs, %d failed, %.3f ms wall time, %.3f ms total run time on %d threads%n",
+        results.length, failures, wallNanos / 1e6, totalNanos / 1e6, threads);
+
+    return failures == 0 ? 0 : 1;
+  }
+
+  // Entry point for --batch. Returns the exit status for the JVM.
+  public static int batch(String[] args) throws IOException, InterruptedException {
+    boolean asCompleted = false;
+    int threads = Runtime.getRuntime().availableProcessors();
+    List<String> manifests = new ArrayList<>();
+    List<String> paths = new ArrayList<>();
+
+    for (int i = 0; i < args.length; i++) {
+      // Both --threads and --manifest need a value after them.
+      if ((args[i].equals("--threads") || args[i].equals("--manifest")) && i + 1 == args.length) {
+        System.err.println(USAGE);
+        return 1;
+      }
+
+      switch (args[i]) {
+        case "--as-completed":
+          asCompleted = true;
+          break;
+        case "--threads":
+          threads = Integer.parseInt(args[++i]);
+          break;
+        case "--manifest":
+          manifests.add(args[++i]);
+          break;
+        default:
+          paths.add(args[i]);
+          break;
+      }
+    }
+
+    List<Path> programs = collect(paths, manifests);
+    if (programs.isEmpty()) {
+      System.err.println(USAGE);
+      return 1;
+    }
+
+    return new BatchRunner(programs, asCompleted, threads).run();
+  }
+}
@@ -0,0 +1,51 @@
+package io.github.yemouu.SCLInterpreter;
+
+// The loops behind the element-wise operators of byte arrays. Every method reads its operands and
+// writes every element of out, which is always as long as the array operands. Shift counts are
+// already between 0 and 7, SCLByteArray deals with the rest.
+//
+// There are two implementations. VectorByteKernels uses the incubating Vector API, which the JIT
+// turns into SIMD instructions that work on 16, 32, or 64 bytes at a time. It is only available
+// when the JVM was started with --add-modules jdk.incubator.vector, so everywhere else we fall back
+// to ScalarByteKernels, which is a plain loop. Setting scl.vector to false also uses the plain loop
+// (to compare the two).
+interface ByteKernels {
+  ByteKernels INSTANCE = load();
+
+  void and(byte[] lhs, byte[] rhs, byte[] out);
+
+  void or(byte[] lhs, byte[] rhs, byte[] out);
+
+  void xor(byte[] lhs, byte[] rhs, byte[] out);
+
+  void and(byte[] lhs, byte rhs, byte[] out);
+
+  void or(byte[] lhs, byte rhs, byte[] out);
+
+  void xor(byte[] lhs, byte rhs, byte[] out);
+
+  void shiftLeft(byte[] lhs, int count, byte[] out);
+
+  void shiftRight(byte[] lhs, int count, byte[] out);
+
+  void not(byte[] operand, byte[] out);
+
+  // A name for the implementation, e.g. for benchmark output.
+  String name();
+
+  private static ByteKernels load() {
+    if (!Boolean.parseBoolean(System.getProperty("scl.vector", "true")))
+      return new ScalarByteKernels();
+
+    // VectorByteKernels can only be loaded when the Vector API module is, so we load it by name
+    // and use the plain loop if that fails.
+    try {
+      return (ByteKernels)
+          Class.forName(ByteKernels.class.getPackageName() + ".VectorByteKernels")
+              .getDeclaredConstructor()
+              .newInstance();
+    } catch (ReflectiveOperationException | LinkageError error) {
+      return new ScalarByteKernels();
+    }
+  }
+}
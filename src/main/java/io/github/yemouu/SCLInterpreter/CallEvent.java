@@ -0,0 +1,30 @@
+package io.github.yemouu.SCLInterpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.yemouu.SCLInterpreter.Call")
+@Label("SCL Call")
+@Description("A subprogram from the moment it was called until it returned")
+@Category("SCL")
+@Enabled(false)
+@StackTrace(false)
+class CallEvent extends Event {
+  @Label("Subprogram")
+  String subprogram;
+
+  @Label("Depth")
+  int depth;
+
+  @Label("Statements")
+  @Description("Statements executed by the call, including the calls it made")
+  long statements;
+
+  // Not recorded. How many statements had been executed when the call started.
+  transient long startStatements;
+}
@@ -0,0 +1,164 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Finds values that are computed the same way from the same values, and replaces every one of them
+// with the first. The first has been computed on every path to the others when its block dominates
+// theirs (every path from the start of the subprogram to them goes through it), so the pass walks
+// the dominator tree and only looks up values found in the blocks above the current one.
+//
+// Reads of globals and array elements are only the same when they read the same version of
+// memory, which starts over at the start of every block and after every statement that can change
+// memory (a call, setting a global, or setting an element), so those are only ever merged between
+// statements of the same block with nothing in between that could have changed them. Conversions
+// to a numeric type always give the same value for the same number and are merged too, the others
+// either check the value or copy an array and are left alone.
+//
+// The merged value is read from a variable that still holds it where one does, so for example a
+// second `a band mask` after `set x = a band mask` reads x instead of applying band again.
+final class CommonSubexpressionElimination implements PassManager.Pass {
+  public String name() {
+    return "common subexpression elimination";
+  }
+
+  public int run(IR ir) {
+    if (ir.blocks.isEmpty()) return 0;
+    List<List<IR.Block>> children = dominatorTree(ir);
+
+    int changes = 0;
+    Map<String, IR.Value> available = new HashMap<>();
+    Set<IR.Value> visited = new HashSet<>();
+    // Walk the tree depth first, forgetting a block's values once its subtree is done.
+    Deque<Object> work = new ArrayDeque<>();
+    work.push(ir.blocks.get(0));
+    while (!work.isEmpty()) {
+      Object item = work.pop();
+      if (item instanceof List) {
+        for (Object key : (List<?>) item) available.remove(key);
+        continue;
+      }
+      IR.Block block = (IR.Block) item;
+      List<String> added = new ArrayList<>();
+      for (IR.Instruction instruction : block.instructions) {
+        if (instruction.operands == null) continue;
+        for (IR.Value operand : instruction.operands)
+          changes += visit(operand, available, visited, added);
+        if (instruction.def != null)
+          changes += visit(instruction.def, available, visited, added);
+      }
+      work.push(added);
+      for (IR.Block child : children.get(block.id)) work.push(child);
+    }
+    return changes;
+  }
+
+  private static int visit(
+      IR.Value value, Map<String, IR.Value> available, Set<IR.Value> visited, List<String> added) {
+    value = value.find();
+    if (!visited.add(value)) return 0;
+
+    int changes = 0;
+    if (value.kind != IR.Value.Kind.PHI)
+      for (IR.Value arg : value.args) changes += visit(arg, available, visited, added);
+
+    String key = key(value);
+    if (key == null) return changes;
+    IR.Value first = available.get(key);
+    if (first == null) {
+      available.put(key, value);
+      added.add(key);
+      return changes;
+    }
+    value.replacement = first;
+    return changes + 1;
+  }
+
+  // Two values with the same key are always equal. Null for values that are only equal to
+  // themselves.
+  private static String key(IR.Value value) {
+    switch (value.kind) {
+      case CONSTANT:
+        return "constant " + value.type + " " + value.constant.getText();
+      case GLOBAL:
+        return "global " + value.name + " @" + value.memory;
+      case ELEMENT:
+        return "element " + args(value) + " @" + value.memory;
+      case BINARY:
+        return Operators.name(value.operator) + " " + args(value);
+      case NEGATE:
+        return "negate " + args(value);
+      // The length of an array never changes, and neither does a byte file's while it is mapped.
+      case LENGTH:
+        return "length " + args(value);
+      case CONVERT:
+        if (!(value.conversion instanceof Conversion.To)) return null;
+        return "convert " + value.type + " " + args(value);
+      default:
+        return null;
+    }
+  }
+
+  private static String args(IR.Value value) {
+    StringBuilder args = new StringBuilder();
+    for (IR.Value arg : value.args) args.append(arg.find()).append(' ');
+    return args.toString();
+  }
+
+  // The blocks each block immediately dominates, by Cooper, Harvey, and Kennedy's iterative
+  // algorithm over the reachable blocks in reverse postorder.
+  private static List<List<IR.Block>> dominatorTree(IR ir) {
+    List<IR.Block> order = new ArrayList<>();
+    postorder(ir.blocks.get(0), new HashSet<>(), order);
+    int[] number = new int[ir.blocks.size()];
+    for (int i = 0; i < order.size(); i++) number[order.get(i).id] = i;
+
+    IR.Block[] dominator = new IR.Block[ir.blocks.size()];
+    IR.Block start = ir.blocks.get(0);
+    dominator[start.id] = start;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int i = order.size() - 1; i >= 0; i--) {
+        IR.Block block = order.get(i);
+        if (block == start) continue;
+        IR.Block idom = null;
+        for (IR.Block predecessor : block.predecessors) {
+          if (dominator[predecessor.id] == null) continue;
+          idom = idom == null ? predecessor : intersect(predecessor, idom, dominator, number);
+        }
+        if (dominator[block.id] != idom) {
+          dominator[block.id] = idom;
+          changed = true;
+        }
+      }
+    }
+
+    List<List<IR.Block>> children = new ArrayList<>();
+    for (int i = 0; i < ir.blocks.size(); i++) children.add(new ArrayList<>());
+    for (IR.Block block : order)
+      if (block != start) children.get(dominator[block.id].id).add(block);
+    return children;
+  }
+
+  private static void postorder(IR.Block block, Set<IR.Block> seen, List<IR.Block> order) {
+    if (!seen.add(block)) return;
+    for (IR.Block successor : block.successors) postorder(successor, seen, order);
+    order.add(block);
+  }
+
+  private static IR.Block intersect(
+      IR.Block lhs, IR.Block rhs, IR.Block[] dominator, int[] number) {
+    while (lhs != rhs) {
+      while (number[lhs.id] < number[rhs.id]) lhs = dominator[lhs.id];
+      while (number[rhs.id] < number[lhs.id]) rhs = dominator[rhs.id];
+    }
+    return lhs;
+  }
+}
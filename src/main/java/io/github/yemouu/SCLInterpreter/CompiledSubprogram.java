@@ -0,0 +1,79 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.List;
+import java.util.Map;
+
+// The faster form of a subprogram that the TieredExecution manager swaps in once the subprogram is
+// hot. It keeps the subprogram's statements (so control flow, jump targets, and statement ids stay
+// exactly the same) and adds a compiled Expression for each of their expressions and the slot of
+// each statement's target. Because the two forms share statement ids and frame slots, a frame can
+// switch from one to the other between any two statements.
+//
+// The expressions come from the subprogram's IR after the optimization passes have run over it
+// (see PassManager), which can also find statements that don't need to run at all. Those are
+// marked dead, and only their guards are evaluated.
+final class CompiledSubprogram {
+  private final Subprogram subprogram;
+
+  // The compiled expressions of each statement, indexed by statement id and then in the same order
+  // as Statement.operands.
+  private final Expression[][] operands;
+
+  // The slot of each statement's target, or -1 if the statement has no target or its target is a
+  // global.
+  private final int[] targetSlots;
+
+  // The guards of each dead statement, indexed by statement id. Null for statements that run.
+  private final Expression[][] guards;
+
+  CompiledSubprogram(Subprogram subprogram) {
+    this.subprogram = subprogram;
+
+    IR ir = PassManager.optimize(subprogram);
+    List<Statement> statements = subprogram.getStatements();
+    this.operands = new Expression[statements.size()][];
+    this.targetSlots = new int[statements.size()];
+    this.guards = new Expression[statements.size()][];
+    for (Statement statement : statements) {
+      IR.Instruction instruction = ir.instructions[statement.id];
+      Expression[] expressions = new Expression[statement.operands.size()];
+      for (int i = 0; i < expressions.length; i++)
+        expressions[i] =
+            instruction.operands == null || instruction.state == null || instruction.dead
+                ? Expression.compile(statement.operands.get(i), subprogram)
+                : ir.lower(instruction, instruction.operands[i]);
+      operands[statement.id] = expressions;
+
+      if (instruction.dead) {
+        guards[statement.id] = new Expression[instruction.guards.size()];
+        for (int i = 0; i < instruction.guards.size(); i++)
+          guards[statement.id][i] = ir.lower(instruction, instruction.guards.get(i));
+      }
+
+      Integer slot = statement.target == null ? null : subprogram.getSlot(statement.target);
+      targetSlots[statement.id] = slot == null ? -1 : slot;
+    }
+  }
+
+  Subprogram getSubprogram() {
+    return subprogram;
+  }
+
+  Expression getOperand(Statement statement, int index) {
+    return operands[statement.id][index];
+  }
+
+  int getTargetSlot(Statement statement) {
+    return targetSlots[statement.id];
+  }
+
+  boolean isDead(Statement statement) {
+    return guards[statement.id] != null;
+  }
+
+  // Check that every variable a dead statement reads has a value, failing the way the statement
+  // would have if one doesn't.
+  void guard(Statement statement, TypedValue[] slots, Map<String, TypedValue> globals) {
+    for (Expression guard : guards[statement.id]) guard.evaluate(slots, globals);
+  }
+}
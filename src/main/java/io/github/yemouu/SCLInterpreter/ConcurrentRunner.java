@@ -0,0 +1,150 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.File;
+import java.io.StringWriter;
+import java.lang.reflect.InvocationTargetException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+// Runs many executions of the same program at the same time. The program is parsed once and shared
+// while each execution gets its own Interpreter, so the only per-execution cost is the
+// Interpreter's identifiers and the output it produces.
+//
+// On Java 21 and later every execution runs on its own virtual thread. We are built for Java 17
+// where virtual threads don't exist, so we look the executor up at runtime and fall back to a pool
+// with one platform thread per core when it isn't there.
+public class ConcurrentRunner {
+  private final SCLProgram program;
+  private final ExecutorService executor;
+
+  public ConcurrentRunner(SCLProgram program) {
+    this(program, newExecutor());
+  }
+
+  // Same as above but lets the caller decide which threads the executions run on.
+  public ConcurrentRunner(SCLProgram program, ExecutorService executor) {
+    this.program = program;
+    this.executor = executor;
+  }
+
+  // Check if this JVM can create virtual threads.
+  public static boolean hasVirtualThreads() {
+    try {
+      Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+      return true;
+    } catch (NoSuchMethodException error) {
+      return false;
+    }
+  }
+
+  // Create an executor that starts a new virtual thread for every task if we can, otherwise a pool
+  // with a platform thread for each core.
+  public static ExecutorService newExecutor() {
+    try {
+      return (ExecutorService)
+          Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+    } catch (NoSuchMethodException | IllegalAccessException | InvocationTargetException error) {
+      return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  // Execute the program the given number of times and wait for every execution to finish. The
+  // output of each execution is returned in the order the executions were submitted. If any
+  // execution fails, its exception is thrown once all of them are done.
+  public List<String> run(int invocations) throws InterruptedException {
+    List<Callable<String>> tasks = new ArrayList<>(invocations);
+    for (int i = 0; i < invocations; i++) tasks.add(this::runOnce);
+
+    List<String> outputs = new ArrayList<>(invocations);
+    for (Future<String> future : executor.invokeAll(tasks)) {
+      try {
+        outputs.add(future.get());
+      } catch (ExecutionException error) {
+        if (error.getCause() instanceof RuntimeException) throw (RuntimeException) error.getCause();
+        throw new IllegalStateException(error.getCause());
+      }
+    }
+
+    return outputs;
+  }
+
+  // A single execution with its output captured.
+  private String runOnce() {
+    StringWriter output = new StringWriter();
+    Interpreter interpreter = new Interpreter(program);
+    interpreter.setOutput(output);
+    interpreter.execute();
+    return output.toString();
+  }
+
+  public void shutdown() {
+    executor.shutdown();
+  }
+
+  // Measure how throughput changes with the number of threads. We run the same number of
+  // executions on pools of 1, 2, 4, ... threads up to the number of cores and report executions
+  // per second and the speedup over a single thread. Each pool gets a warm up round first so that
+  // we are measuring JIT compiled code.
+  private static void stress(SCLProgram program, int invocations) throws InterruptedException {
+    int cores = Runtime.getRuntime().availableProcessors();
+    List<Integer> threadCounts = new ArrayList<>();
+    for (int threads = 1; threads < cores; threads *= 2) threadCounts.add(threads);
+    threadCounts.add(cores);
+
+    System.out.printf("%d executions per round, %d cores%n", invocations, cores);
+    System.out.printf("%8s %14s %8s%n", "threads", "executions/s", "speedup");
+
+    double baseline = 0;
+    for (int threads : threadCounts) {
+      ConcurrentRunner runner =
+          new ConcurrentRunner(program, Executors.newFixedThreadPool(threads));
+      runner.run(invocations);
+
+      long start = System.nanoTime();
+      runner.run(invocations);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      runner.shutdown();
+
+      double throughput = invocations / seconds;
+      if (baseline == 0) baseline = throughput;
+      System.out.printf("%8d %14.0f %7.2fx%n", threads, throughput, throughput / baseline);
+    }
+  }
+
+  public static void main(String[] args) throws InterruptedException {
+    boolean stress = args.length > 0 && args[0].equals("--stress");
+    int offset = stress ? 1 : 0;
+
+    if (args.length - offset < 1 || args.length - offset > 2) {
+      System.err.println("Usage: java ConcurrentRunner [--stress] <filename> [invocations]");
+      return;
+    }
+
+    SCLProgram program = new SCLProgram(new File(args[offset]));
+    int invocations = args.length - offset == 2 ? Integer.parseInt(args[offset + 1]) : 10000;
+
+    if (stress) {
+      stress(program, invocations);
+      return;
+    }
+
+    ConcurrentRunner runner = new ConcurrentRunner(program);
+    long start = System.nanoTime();
+    List<String> outputs = runner.run(invocations);
+    double seconds = (System.nanoTime() - start) / 1e9;
+    runner.shutdown();
+
+    if (!outputs.isEmpty()) System.out.print(outputs.get(0));
+    System.err.printf(
+        "%d executions on %s threads in %.3f s (%.0f executions/s)%n",
+        invocations,
+        hasVirtualThreads() ? "virtual" : "platform",
+        seconds,
+        invocations / seconds);
+  }
+}
@@ -0,0 +1,88 @@
+package io.github.yemouu.SCLInterpreter;
+
+// How a value is converted to the type of the variable (or parameter, or return value) it is
+// assigned to. TypeChecker works out the conversion of every assignment in a program when the
+// program is loaded, so running an assignment is a single call that doesn't look at either type.
+interface Conversion {
+  TypedValue apply(TypedValue variable, TypedValue value);
+
+  // The value already has the variable's type.
+  Conversion NONE = (variable, value) -> value;
+
+  // An array or a number assigned to an array, which always gives a new array so the variable
+  // doesn't share its elements with anything else.
+  Conversion ARRAY = (variable, value) -> ((SCLByteArray) variable).assign(value);
+
+  // For assignments whose types weren't known ahead of time, every check is done as it runs.
+  Conversion CHECKED = Conversion::convert;
+
+  // A number widened or narrowed to a numeric type, see TypedNumericValue.
+  static Conversion to(SCLTypes type) {
+    return To.TO[type.ordinal()];
+  }
+
+  // Widening or narrowing a number, which can't fail and always gives the same value for the same
+  // number. One for each numeric type.
+  final class To implements Conversion {
+    private static final To[] TO = new To[SCLTypes.values().length];
+
+    static {
+      for (SCLTypes type : SCLTypes.values()) if (numeric(type)) TO[type.ordinal()] = new To(type);
+    }
+
+    final SCLTypes type;
+
+    private To(SCLTypes type) {
+      this.type = type;
+    }
+
+    public TypedValue apply(TypedValue variable, TypedValue value) {
+      return ((TypedNumericValue) value).to(type);
+    }
+  }
+
+  // The conversion from a value of one type to a variable of another. Either type may be null if
+  // it isn't known, which leaves the checks to CHECKED.
+  static Conversion of(SCLTypes variable, SCLTypes value) {
+    if (variable == null || value == null) return CHECKED;
+    if (variable == SCLTypes.BYTE_ARRAY && (value == SCLTypes.BYTE_ARRAY || numeric(value)))
+      return ARRAY;
+    if (variable == SCLTypes.STRING && value == SCLTypes.STRING) return NONE;
+    if (numeric(variable) && numeric(value)) return variable == value ? NONE : to(variable);
+    throw new TypeMismatchException(
+        "Tried assigning " + TypeChecker.describe(value) + " to " + TypeChecker.describe(variable));
+  }
+
+  static boolean numeric(SCLTypes type) {
+    return TypedNumericValue.join(type, type) != null;
+  }
+
+  // Convert a new value to the type of the variable it is being assigned to, checking both types.
+  static TypedValue convert(TypedValue originalValue, TypedValue newValue) {
+    if (newValue.TYPE == SCLTypes.BYTE_ARRAY && originalValue.TYPE != SCLTypes.BYTE_ARRAY)
+      throw new TypeMismatchException("Tried assigning " + newValue + " to " + originalValue);
+
+    switch (originalValue.TYPE) {
+      case STRING:
+        if (newValue.TYPE != originalValue.TYPE)
+          throw new TypeMismatchException("Tried assigning " + newValue + " to " + originalValue);
+        return newValue;
+      case BYTE:
+      case SHORT:
+      case UNSIGNED_SHORT:
+      case INTEGER:
+      case UNSIGNED_INTEGER:
+      case LONG:
+      case UNSIGNED_LONG:
+        // Widened or narrowed to the variable's type, see TypedNumericValue.
+        return Expression.numeric(newValue).to(originalValue.TYPE);
+      case BYTE_ARRAY:
+        return ((SCLByteArray) originalValue).assign(newValue);
+      case BYTE_FILE:
+        throw new TypeMismatchException(
+            "Tried assigning " + newValue + " to " + originalValue + ", only its elements can be");
+      default:
+        throw new NotImplementedException();
+    }
+  }
+}
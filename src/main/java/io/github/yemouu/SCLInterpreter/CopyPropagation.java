@@ -0,0 +1,42 @@
+package io.github.yemouu.SCLInterpreter;
+
+// Copies are propagated while the IR is built: `set b = a` only makes b another name for a's value,
+// so everything that reads b afterwards reads that value directly. What is left for this pass are
+// the phis that don't pick between different values. A phi whose arguments are all the same value
+// (or the phi itself, for a variable that a loop never changes) is a copy of that value, and is
+// replaced by it. Replacing one can make others trivial, so it goes until none are.
+final class CopyPropagation implements PassManager.Pass {
+  public String name() {
+    return "copy propagation";
+  }
+
+  public int run(IR ir) {
+    int changes = 0;
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (IR.Value phi : ir.phis) {
+        if (phi.replacement != null) continue;
+        IR.Value same = same(phi);
+        if (same != null) {
+          phi.replacement = same;
+          changes++;
+          changed = true;
+        }
+      }
+    }
+    return changes;
+  }
+
+  // The one value a phi picks, or null if it picks between more than one.
+  private static IR.Value same(IR.Value phi) {
+    IR.Value same = null;
+    for (IR.Value arg : phi.args) {
+      arg = arg.find();
+      if (arg == phi || arg == same) continue;
+      if (same != null) return null;
+      same = arg;
+    }
+    return same;
+  }
+}
@@ -0,0 +1,243 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Removes sets whose value is never used. Only display and exit can be seen from outside of a
+// program, so a set of a local variable that nothing reads before the variable is set again (or
+// the subprogram returns) doesn't need to run, and neither does a set of a global that is set again
+// later in the same block with nothing in between that could read it (a call or another subprogram
+// could read any global, so those stop the search, as does the end of the block).
+//
+// A set is only removed when running it can't fail, since the error it would have stopped the
+// program with can be seen too: its types were checked when the program was loaded, it reads no
+// array elements (the index could be out of bounds), and it applies no operators to arrays (their
+// lengths could differ). Reading a variable that doesn't have a value yet fails as well, so those
+// variables are kept as the statement's guards and are still checked when it is skipped. A global
+// only needs checking the first time the block reads it, and symbols and subprograms always have a
+// value.
+//
+// Removing a set can leave the sets that computed its operands unused, so liveness is worked out
+// again until nothing else can be removed.
+final class DeadStoreElimination implements PassManager.Pass {
+  public String name() {
+    return "dead store elimination";
+  }
+
+  public int run(IR ir) {
+    int changes = 0;
+    int changed;
+    do {
+      changed = locals(ir) + globals(ir);
+      changes += changed;
+    } while (changed > 0);
+    return changes;
+  }
+
+  private static int locals(IR ir) {
+    Map<IR.Block, BitSet> liveIn = liveness(ir);
+    int changes = 0;
+    for (IR.Block block : ir.blocks) {
+      if (!block.reachable) continue;
+      BitSet live = liveOut(block, liveIn);
+      for (int i = block.instructions.size() - 1; i >= 0; i--) {
+        IR.Instruction instruction = block.instructions.get(i);
+        if (!instruction.dead
+            && instruction.slot >= 0
+            && !live.get(instruction.slot)
+            && remove(ir, instruction))
+          changes++;
+        transfer(ir, instruction, live);
+      }
+    }
+    return changes;
+  }
+
+  private static int globals(IR ir) {
+    int changes = 0;
+    for (IR.Block block : ir.blocks) {
+      if (!block.reachable) continue;
+      List<IR.Instruction> instructions = block.instructions;
+      for (int i = 0; i < instructions.size(); i++) {
+        IR.Instruction instruction = instructions.get(i);
+        if (instruction.dead || instruction.global == null) continue;
+        if (overwritten(ir, instructions, i) && remove(ir, instruction)) changes++;
+      }
+    }
+    return changes;
+  }
+
+  // Whether the global instruction i sets is set again later in the block before anything could
+  // read it.
+  private static boolean overwritten(IR ir, List<IR.Instruction> instructions, int i) {
+    String global = instructions.get(i).global;
+    for (int j = i + 1; j < instructions.size(); j++) {
+      IR.Instruction next = instructions.get(j);
+      Statement.Kind kind = next.statement.kind;
+      if (kind == Statement.Kind.CALL
+          || kind == Statement.Kind.RETURN
+          || kind == Statement.Kind.EXIT
+          || kind == Statement.Kind.FOR
+          || kind == Statement.Kind.ENDFOR) return false;
+      Set<String> read = new HashSet<>();
+      ir.reads(next, reader(new BitSet(), read, new boolean[1]));
+      if (read.contains(global)) return false;
+      if (global.equals(next.global) && !next.statement.indexed) return true;
+    }
+    return false;
+  }
+
+  // Mark an instruction dead if it is a set that can't fail, keeping the variables it reads that
+  // might not have a value as its guards.
+  private static boolean remove(IR ir, IR.Instruction instruction) {
+    Statement statement = instruction.statement;
+    if (statement.kind != Statement.Kind.SET || statement.indexed || !statement.checked)
+      return false;
+    Conversion conversion = statement.conversions[0];
+    if (conversion != Conversion.NONE && !(conversion instanceof Conversion.To)) return false;
+    if (!safe(instruction.operands[0])) return false;
+
+    BitSet slots = new BitSet();
+    Set<String> globals = new HashSet<>();
+    boolean[] elements = new boolean[1];
+    List<IR.Value> guards = new ArrayList<>();
+    Set<String> defined = defined(ir, instruction);
+    IR.read(
+        instruction,
+        instruction.operands[0],
+        new IR.Reader() {
+          public void local(int slot, IR.Value value) {
+            if (undefined(ir, value, new HashSet<>()) && !slots.get(slot)) {
+              slots.set(slot);
+              guards.add(value);
+            }
+          }
+
+          public void global(String name) {
+            if (ir.subprogram.isAlwaysDefined(name) || defined.contains(name)) return;
+            if (globals.add(name)) guards.add(read(name));
+          }
+
+          public void element() {
+            elements[0] = true;
+          }
+        });
+    if (elements[0]) return false;
+
+    instruction.dead = true;
+    instruction.guards = guards;
+    return true;
+  }
+
+  // A read of a global, for a guard.
+  private static IR.Value read(String name) {
+    IR.Value value = new IR.Value(-1, IR.Value.Kind.GLOBAL, null);
+    value.name = name;
+    return value;
+  }
+
+  // Whether computing a value can only fail by reading a variable without a value.
+  private static boolean safe(IR.Value value) {
+    value = value.find();
+    switch (value.kind) {
+      case BINARY:
+      case NEGATE:
+        if (value.type == null || value.type == SCLTypes.BYTE_ARRAY) return false;
+        for (IR.Value arg : value.args) if (!safe(arg)) return false;
+        return true;
+      case ELEMENT:
+      case LENGTH:
+        return false;
+      default:
+        return true;
+    }
+  }
+
+  // Whether a slot's value might not have a value, which is only the case for local variables that
+  // might not have been set yet.
+  private static boolean undefined(IR ir, IR.Value value, Set<IR.Value> seen) {
+    value = value.find();
+    if (!seen.add(value)) return false;
+    switch (value.kind) {
+      case ENTRY:
+        return value.slot >= ir.subprogram.getParameterCount()
+            && !ir.subprogram.getInitialSlots()[value.slot].hasValue();
+      case PHI:
+        for (IR.Value arg : value.args) if (undefined(ir, arg, seen)) return true;
+        return false;
+      default:
+        return false;
+    }
+  }
+
+  // The globals that are known to have a value when an instruction runs: the ones that always do,
+  // and the ones something earlier in the block read or set (a dead instruction's reads still
+  // count, since the first read of each global in the block is always either run or guarded).
+  private static Set<String> defined(IR ir, IR.Instruction instruction) {
+    Set<String> defined = new HashSet<>();
+    for (IR.Instruction earlier : instruction.block.instructions) {
+      if (earlier == instruction) break;
+      if (earlier.global != null) defined.add(earlier.global);
+      ir.reads(earlier, reader(new BitSet(), defined, new boolean[1]));
+    }
+    return defined;
+  }
+
+  private static IR.Reader reader(BitSet slots, Set<String> globals, boolean[] elements) {
+    return new IR.Reader() {
+      public void local(int slot, IR.Value value) {
+        slots.set(slot);
+      }
+
+      public void global(String name) {
+        globals.add(name);
+      }
+
+      public void element() {
+        elements[0] = true;
+      }
+    };
+  }
+
+  // The slots that are live at the start of each block: read before they are set on some path
+  // from there.
+  private static Map<IR.Block, BitSet> liveness(IR ir) {
+    Map<IR.Block, BitSet> liveIn = new HashMap<>();
+    for (IR.Block block : ir.blocks) liveIn.put(block, new BitSet());
+    boolean changed = true;
+    while (changed) {
+      changed = false;
+      for (int b = ir.blocks.size() - 1; b >= 0; b--) {
+        IR.Block block = ir.blocks.get(b);
+        if (!block.reachable) continue;
+        BitSet live = liveOut(block, liveIn);
+        for (int i = block.instructions.size() - 1; i >= 0; i--)
+          transfer(ir, block.instructions.get(i), live);
+        if (!live.equals(liveIn.get(block))) {
+          liveIn.put(block, live);
+          changed = true;
+        }
+      }
+    }
+    return liveIn;
+  }
+
+  private static BitSet liveOut(IR.Block block, Map<IR.Block, BitSet> liveIn) {
+    BitSet live = new BitSet();
+    for (IR.Block successor : block.successors) live.or(liveIn.get(successor));
+    return live;
+  }
+
+  // Step liveness back over an instruction: the slot it sets is dead before it, unless the
+  // instruction reads it.
+  private static void transfer(IR ir, IR.Instruction instruction, BitSet live) {
+    if (!instruction.dead && instruction.slot >= 0 && instruction.readSlot != instruction.slot)
+      live.clear(instruction.slot);
+    ir.reads(instruction, reader(live, new HashSet<>(), new boolean[1]));
+  }
+}
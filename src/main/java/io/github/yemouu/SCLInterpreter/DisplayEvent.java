@@ -0,0 +1,25 @@
+package io.github.yemouu.SCLInterpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.yemouu.SCLInterpreter.Display")
+@Label("SCL Display")
+@Description("A display statement writing its line and flushing it")
+@Category("SCL")
+@Enabled(false)
+@StackTrace(false)
+class DisplayEvent extends Event {
+  @Label("Subprogram")
+  String subprogram;
+
+  @Label("Bytes")
+  @DataAmount
+  long bytes;
+}
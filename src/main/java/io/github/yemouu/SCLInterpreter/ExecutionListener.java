@@ -0,0 +1,73 @@
+package io.github.yemouu.SCLInterpreter;
+
+// Sees a program while it runs, for debuggers, watchpoints, and tracing. A listener given to
+// Interpreter.setListener() sees every statement of every subprogram, one given to
+// Interpreter.listen() only sees one statement, and one given to Interpreter.watch() only sees the
+// assignments to one variable. Every method does nothing unless it is overridden.
+//
+// Listeners are called on the thread running the program, in the middle of a statement, so a
+// debugger can single step by blocking in beforeStatement. Anything a listener throws ends the
+// program the same way an error in the program would.
+//
+// A subprogram without listeners costs nothing extra: the main loop only checks whether the
+// running frame has any. Subprograms with listeners are always interpreted, never compiled, so
+// that every statement (including the ones the optimizer would have removed) is seen to run.
+public interface ExecutionListener {
+  // A statement is about to run. The statement is given by its index in the subprogram's body,
+  // which is also the number Interpreter.getStatementText() puts in front of its text.
+  default void beforeStatement(String subprogram, int statement) {}
+
+  // A variable was given a value, by a set statement, a for loop counting, or a call returning
+  // its value. Setting an element of an array gives the whole array.
+  default void afterAssignment(String name, TypedValue value) {}
+
+  // A display statement wrote a line, given without the line separator.
+  default void onDisplay(String line) {}
+
+  // A subprogram was called, or returned (or was ended by exit). depth is the number of calls in
+  // progress, counting this one, so main is 1. Only the listener given to setListener() sees these.
+  default void enterSubprogram(String subprogram, int depth) {}
+
+  default void exitSubprogram(String subprogram, int depth) {}
+
+  // A listener that passes everything on to two others, for statements more than one listener was
+  // installed on.
+  static ExecutionListener both(ExecutionListener first, ExecutionListener second) {
+    if (first == null) return second;
+    return new ExecutionListener() {
+      public void beforeStatement(String subprogram, int statement) {
+        first.beforeStatement(subprogram, statement);
+        second.beforeStatement(subprogram, statement);
+      }
+
+      public void afterAssignment(String name, TypedValue value) {
+        first.afterAssignment(name, value);
+        second.afterAssignment(name, value);
+      }
+
+      public void onDisplay(String line) {
+        first.onDisplay(line);
+        second.onDisplay(line);
+      }
+
+      public void enterSubprogram(String subprogram, int depth) {
+        first.enterSubprogram(subprogram, depth);
+        second.enterSubprogram(subprogram, depth);
+      }
+
+      public void exitSubprogram(String subprogram, int depth) {
+        first.exitSubprogram(subprogram, depth);
+        second.exitSubprogram(subprogram, depth);
+      }
+    };
+  }
+
+  // Only pass on the assignments to one variable, for watch().
+  static ExecutionListener watching(String name, ExecutionListener listener) {
+    return new ExecutionListener() {
+      public void afterAssignment(String assigned, TypedValue value) {
+        if (assigned.equals(name)) listener.afterAssignment(assigned, value);
+      }
+    };
+  }
+}
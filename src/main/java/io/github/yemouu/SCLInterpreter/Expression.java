@@ -0,0 +1,332 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.List;
+import java.util.Map;
+
+// A compiled expression. Where the interpreter evaluates an expression by walking its tokens every
+// time, an Expression is a tree that was built from the tokens once: constants are already parsed
+// into values, variables are already resolved to a slot in the frame (or to a global), and the
+// structure of the expression doesn't need to be rediscovered on every evaluation.
+abstract class Expression {
+  // Evaluate the expression with the given frame slots and global identifiers.
+  abstract TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals);
+
+  // The type of every value the expression evaluates to, or null if that can't be told before it
+  // runs.
+  SCLTypes type() {
+    return null;
+  }
+
+  // Build the tree for the tokens of an expression. Locals are looked up in the subprogram the
+  // expression belongs to, everything else is a global with the type the TypeChecker found for it.
+  // The grammar is the same one the interpreter walks: operands separated by operators applied from
+  // left to right, where an operand is a value, an element of an array, an expression in
+  // parenthesis, or any of those with negate or length in front.
+  static Expression compile(List<Token> tokens, Subprogram subprogram) {
+    return compile(tokens, 0, tokens.size(), subprogram);
+  }
+
+  private static Expression compile(List<Token> tokens, int start, int end, Subprogram subprogram) {
+    if (start == end) throw new UnexpectedTokenException("Expected an expression");
+
+    int operandEnd = operandEnd(tokens, start, end);
+    Expression result = operand(tokens, start, operandEnd, subprogram);
+    while (operandEnd < end) {
+      Token operator = tokens.get(operandEnd);
+      Token.expectOrError(TokenType.OPERATOR, operator);
+      int rhsStart = operandEnd + 1;
+      if (rhsStart == end)
+        throw new UnexpectedTokenException("Expected a value after " + operator.VALUE);
+
+      operandEnd = operandEnd(tokens, rhsStart, end);
+      Expression rhs = operand(tokens, rhsStart, operandEnd, subprogram);
+      result = binary(Operators.operator(operator), result, rhs);
+    }
+
+    return result;
+  }
+
+  // Find where the operand that begins at start ends.
+  static int operandEnd(List<Token> tokens, int start, int end) {
+    int i = start;
+    while (i < end && prefix(tokens.get(i))) i++;
+    if (i == end) throw new UnexpectedTokenException("Expected a value after negate or length");
+    if (Token.expect(TokenType.SPECIAL_SYMBOL, "(", tokens.get(i)))
+      return Statement.closing(tokens, i, end) + 1;
+    // An element of an array, name [ index ].
+    if (i + 1 < end && Token.expect(TokenType.SPECIAL_SYMBOL, "[", tokens.get(i + 1)))
+      return Statement.closing(tokens, i + 1, end) + 1;
+    return i + 1;
+  }
+
+  // Whether a token is an operator that goes in front of a single value.
+  static boolean prefix(Token token) {
+    return Token.expect(TokenType.OPERATOR, "negate", token)
+        || Token.expect(TokenType.OPERATOR, "length", token);
+  }
+
+  private static Expression operand(
+      List<Token> tokens, int start, int end, Subprogram subprogram) {
+    Token token = tokens.get(start);
+    switch (token.TYPE) {
+      case IDENTIFIER:
+        Integer slot = subprogram.getSlot(token.VALUE);
+        Expression variable =
+            slot != null
+                ? new Local(token.VALUE, slot, subprogram.getInitialSlots()[slot].TYPE)
+                : new Global(token.VALUE, subprogram.getGlobalType(token.VALUE));
+        if (end - start == 1) return variable;
+        return new Element(token.VALUE, variable, compile(tokens, start + 2, end - 1, subprogram));
+      case CONSTANT:
+      case LITERAL:
+        return new Constant(TypedValue.toTypedValue(token));
+      case OPERATOR:
+        if (Token.expect(TokenType.OPERATOR, "length", token))
+          return new Length(operand(tokens, start + 1, end, subprogram));
+        Token.expectOrError(TokenType.OPERATOR, "negate", token);
+        Expression operand = operand(tokens, start + 1, end, subprogram);
+        if (operand instanceof Constant)
+          return new Constant(numeric(((Constant) operand).value).negate());
+        return new Negate(operand);
+      case SPECIAL_SYMBOL:
+        Token.expectOrError(TokenType.SPECIAL_SYMBOL, "(", token);
+        return compile(tokens, start + 1, end - 1, subprogram);
+      default:
+        throw new UnexpectedTokenException("Unexpected token " + token);
+    }
+  }
+
+  // An operator applied to two constants always gives the same value, so we apply it now. It goes
+  // straight to the kernel since the metrics only count operations a program runs. When the types
+  // of both sides are known the kernel for them is found now too, otherwise it is found by the
+  // types of the values every time.
+  static Expression binary(int operator, Expression lhs, Expression rhs) {
+    if (lhs instanceof Constant && rhs instanceof Constant) {
+      TypedValue left = ((Constant) lhs).value;
+      TypedValue right = ((Constant) rhs).value;
+      return new Constant(Operators.kernel(operator, left.TYPE, right.TYPE).apply(left, right));
+    }
+
+    SCLTypes lhsType = lhs.type();
+    SCLTypes rhsType = rhs.type();
+    if (lhsType != null && rhsType != null)
+      return new Resolved(
+          operator,
+          Operators.kernel(operator, lhsType, rhsType),
+          Operators.type(operator, lhsType, rhsType),
+          lhs,
+          rhs);
+    return new Binary(operator, lhs, rhs);
+  }
+
+  // Apply negate to a value.
+  static TypedValue negate(TypedValue value) {
+    if (value.TYPE == SCLTypes.BYTE_ARRAY) return ((SCLByteArray) value).negate();
+    TypedNumericValue operand = numeric(value);
+    InterpreterMetrics.operation(InterpreterMetrics.NEGATE);
+    return operand.negate();
+  }
+
+  // Get an element of a byte array or byte file.
+  static TypedValue element(String name, TypedValue array, TypedValue index) {
+    if (array.TYPE == SCLTypes.BYTE_FILE)
+      return ((SCLByteFile) array).get(numeric(index).longValue());
+    if (array.TYPE != SCLTypes.BYTE_ARRAY)
+      throw new TypeMismatchException(
+          "Tried to get an element of " + name + " but it isn't an array");
+    return ((SCLByteArray) array).get(numeric(index).longValue());
+  }
+
+  // Set an element of a byte array or byte file.
+  static void setElement(String name, TypedValue array, TypedValue index, TypedValue value) {
+    if (array.TYPE == SCLTypes.BYTE_FILE) {
+      ((SCLByteFile) array).set(numeric(index).longValue(), value);
+      return;
+    }
+    if (array.TYPE != SCLTypes.BYTE_ARRAY)
+      throw new TypeMismatchException(
+          "Tried to set an element of " + name + " but it isn't an array");
+    ((SCLByteArray) array).set(numeric(index).longValue(), value);
+  }
+
+  // The number of elements of a byte array or byte file, as an unsigned long.
+  static TypedValue length(TypedValue value) {
+    if (value.TYPE == SCLTypes.BYTE_FILE)
+      return SCLUnsignedLong.of(((SCLByteFile) value).length());
+    if (value.TYPE == SCLTypes.BYTE_ARRAY)
+      return SCLUnsignedLong.of(((SCLByteArray) value).length());
+    throw new TypeMismatchException(
+        "Tried to get the length of " + value + " but it isn't an array");
+  }
+
+  // Only numbers can be operated on.
+  static TypedNumericValue numeric(TypedValue value) {
+    if (!(value instanceof TypedNumericValue))
+      throw new TypeMismatchException("Expected a number but got " + value);
+    return (TypedNumericValue) value;
+  }
+
+  static final class Constant extends Expression {
+    final TypedValue value;
+
+    Constant(TypedValue value) {
+      this.value = value;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      return value;
+    }
+
+    SCLTypes type() {
+      return value.TYPE;
+    }
+  }
+
+  // A parameter or local variable of the subprogram.
+  static final class Local extends Expression {
+    final String name;
+    final int slot;
+
+    // Every value stored in a slot is converted to the type the slot was declared with.
+    final SCLTypes type;
+
+    Local(String name, int slot, SCLTypes type) {
+      this.name = name;
+      this.slot = slot;
+      this.type = type;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      TypedValue value = slots[slot];
+      if (!value.hasValue())
+        throw new VariableIsNullException("Tried to use " + name + " before it had a value");
+      return value;
+    }
+
+    SCLTypes type() {
+      return type;
+    }
+  }
+
+  // A global identifier. The interpreter converts every value a global is given (by a set, an
+  // embedder's bindings, or a record) to the type it was declared with, so that is the type of the
+  // global whenever it can be read. It is null if the TypeChecker couldn't tell.
+  static final class Global extends Expression {
+    final String name;
+    final SCLTypes type;
+
+    Global(String name, SCLTypes type) {
+      this.name = name;
+      this.type = type;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      TypedValue value = globals.get(name);
+      if (value == null)
+        throw new VariableNotDefinedException("Tried to use " + name + " before defining it");
+      if (!value.hasValue())
+        throw new VariableIsNullException("Tried to use " + name + " before it had a value");
+      return value;
+    }
+
+    SCLTypes type() {
+      return type;
+    }
+  }
+
+  static final class Element extends Expression {
+    final String name;
+    final Expression array;
+    final Expression index;
+
+    Element(String name, Expression array, Expression index) {
+      this.name = name;
+      this.array = array;
+      this.index = index;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      return element(name, array.evaluate(slots, globals), index.evaluate(slots, globals));
+    }
+
+    SCLTypes type() {
+      return SCLTypes.BYTE;
+    }
+  }
+
+  static final class Negate extends Expression {
+    final Expression operand;
+
+    Negate(Expression operand) {
+      this.operand = operand;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      return negate(operand.evaluate(slots, globals));
+    }
+
+    SCLTypes type() {
+      return operand.type();
+    }
+  }
+
+  static final class Length extends Expression {
+    final Expression operand;
+
+    Length(Expression operand) {
+      this.operand = operand;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      return length(operand.evaluate(slots, globals));
+    }
+
+    SCLTypes type() {
+      return SCLTypes.UNSIGNED_LONG;
+    }
+  }
+
+  // An operator whose kernel is looked up by the types of the values.
+  static final class Binary extends Expression {
+    final int operator;
+    final Expression lhs;
+    final Expression rhs;
+
+    Binary(int operator, Expression lhs, Expression rhs) {
+      this.operator = operator;
+      this.lhs = lhs;
+      this.rhs = rhs;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      return Operators.apply(operator, lhs.evaluate(slots, globals), rhs.evaluate(slots, globals));
+    }
+  }
+
+  // An operator whose operands' types were known when it was compiled, so its kernel was found
+  // then.
+  static final class Resolved extends Expression {
+    final int operator;
+    final Operators.Kernel kernel;
+    final SCLTypes type;
+    final Expression lhs;
+    final Expression rhs;
+
+    Resolved(int operator, Operators.Kernel kernel, SCLTypes type, Expression lhs, Expression rhs) {
+      this.operator = operator;
+      this.kernel = kernel;
+      this.type = type;
+      this.lhs = lhs;
+      this.rhs = rhs;
+    }
+
+    TypedValue evaluate(TypedValue[] slots, Map<String, TypedValue> globals) {
+      InterpreterMetrics.operation(operator);
+      return kernel.apply(lhs.evaluate(slots, globals), rhs.evaluate(slots, globals));
+    }
+
+    SCLTypes type() {
+      return type;
+    }
+  }
+}
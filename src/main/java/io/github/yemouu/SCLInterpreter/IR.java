@@ -0,0 +1,703 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+// A subprogram in static single assignment form, which is what tier 1 optimizes before it compiles
+// a subprogram (see PassManager). Every value the subprogram computes is a Value that is computed
+// once and never changes. A local variable is not a place here but a name for whichever value was
+// last assigned to it, so `set b = a` doesn't compute anything, it only makes b another name for
+// a's value, and where two paths that assigned a variable differently meet, the variable's value
+// is a phi that picks one of them by the path that was taken. Globals and the elements of arrays
+// can be changed by calls and by other subprograms, so every read of one is a value of its own,
+// tagged with the version of memory it was read in.
+//
+// The statements stay exactly as they are. Each one gets an Instruction holding the values of its
+// expressions and of every local variable just before it runs, and the passes work on those. Once
+// they are done, lower() turns the values back into Expressions that run in the subprogram's own
+// frame: a value that some local variable holds at that point is read from that variable, anything
+// else is computed again from the values it was computed from. The statements of a loop's header
+// run again at the end of every iteration, so their expressions are always compiled straight from
+// their tokens.
+final class IR {
+  static final class Value {
+    enum Kind {
+      CONSTANT,
+      // The value a slot has when the subprogram is called.
+      ENTRY,
+      GLOBAL,
+      BINARY,
+      NEGATE,
+      // The number of elements of an array or byte file.
+      LENGTH,
+      ELEMENT,
+      // A value converted to the type of the variable it is assigned to.
+      CONVERT,
+      // A value that comes from somewhere the IR doesn't look into: what a call returned, the
+      // counter of a for loop, or an array after one of its elements was set.
+      RESULT,
+      PHI
+    }
+
+    final int id;
+    final Kind kind;
+
+    // The type the value always has, or null if it isn't known before the subprogram runs.
+    final SCLTypes type;
+
+    Value[] args = new Value[0];
+    int operator;
+    int slot = -1;
+    String name;
+    TypedValue constant;
+    Conversion conversion;
+    int memory;
+
+    // The value a pass found this one to always be equal to.
+    Value replacement;
+
+    Value(int id, Kind kind, SCLTypes type) {
+      this.id = id;
+      this.kind = kind;
+      this.type = type;
+    }
+
+    Value find() {
+      Value value = this;
+      while (value.replacement != null) value = value.replacement;
+      return value;
+    }
+
+    public String toString() {
+      return "v" + id;
+    }
+  }
+
+  // Statements that always run one after the other.
+  static final class Block {
+    final int id;
+
+    // The statements in the block, from start up to but not including end.
+    final int start;
+    int end;
+
+    final List<Block> predecessors = new ArrayList<>();
+    final List<Block> successors = new ArrayList<>();
+    final List<Instruction> instructions = new ArrayList<>();
+    final List<Value> phis = new ArrayList<>();
+    boolean reachable;
+
+    Block(int id, int start) {
+      this.id = id;
+      this.start = start;
+    }
+
+    public String toString() {
+      return "b" + id;
+    }
+  }
+
+  static final class Instruction {
+    final Statement statement;
+    final Block block;
+
+    // The values of the statement's operands, or null if they are compiled from the tokens.
+    Value[] operands;
+
+    // The value of every slot just before the statement runs.
+    Value[] state;
+
+    // The local variable the statement gives a new value, and that value.
+    int slot = -1;
+    Value def;
+
+    // A local variable (an array having an element set, or a for loop's counter) or a global the
+    // statement reads on top of its operands.
+    int readSlot = -1;
+    String readGlobal;
+
+    // The global the statement assigns as a whole, or null.
+    String global;
+
+    // Whether the statement can change globals or the elements of an array.
+    boolean clobbers;
+
+    // For statements whose operands are compiled from the tokens, the variables those read.
+    final BitSet exactSlots = new BitSet();
+    final Set<String> exactGlobals = new HashSet<>();
+
+    // Set by DeadStoreElimination when the statement doesn't need to run. The guards are the
+    // variables it would have failed on if they didn't have a value, which still get checked.
+    boolean dead;
+    List<Value> guards = List.of();
+
+    Instruction(Statement statement, Block block) {
+      this.statement = statement;
+      this.block = block;
+    }
+  }
+
+  // Called for every variable an instruction's lowered operands read, in the order they are read.
+  interface Reader {
+    void local(int slot, Value value);
+
+    void global(String name);
+
+    void element();
+  }
+
+  final Subprogram subprogram;
+  final List<Block> blocks = new ArrayList<>();
+  final Instruction[] instructions;
+  final List<Value> phis = new ArrayList<>();
+  final int slots;
+
+  private int values;
+  private int memory;
+  private final Value[] entries;
+  private final Block[] blockOf;
+
+  // Braun et al.'s construction: the value each block last gave each slot, and the phis made for
+  // blocks whose predecessors weren't all filled in yet.
+  private final Value[][] current;
+  private final boolean[] sealed;
+  private final boolean[] filled;
+  private final List<Map<Integer, Value>> incomplete = new ArrayList<>();
+
+  IR(Subprogram subprogram) {
+    this.subprogram = subprogram;
+    this.slots = subprogram.getFrameSize();
+    this.entries = new Value[slots];
+
+    List<Statement> statements = subprogram.getStatements();
+    int count = statements.size();
+    this.instructions = new Instruction[count];
+    this.blockOf = new Block[count];
+
+    // A block starts at the first statement, at every jump target, and after every statement that
+    // can jump.
+    boolean[] leader = new boolean[count + 1];
+    leader[0] = true;
+    for (Statement statement : statements) {
+      if (statement.jump >= 0) leader[statement.jump] = true;
+      if (statement.jump >= 0 || ends(statement)) leader[statement.id + 1] = true;
+    }
+    Block block = null;
+    for (int i = 0; i < count; i++) {
+      if (leader[i]) blocks.add(block = new Block(blocks.size(), i));
+      blockOf[i] = block;
+      block.end = i + 1;
+    }
+    for (Block each : blocks) {
+      Statement last = statements.get(each.end - 1);
+      if (last.kind == Statement.Kind.ELSE) {
+        link(each, last.jump);
+      } else if (last.kind == Statement.Kind.ENDWHILE || last.kind == Statement.Kind.ENDFOR) {
+        link(each, last.jump);
+        link(each, last.id + 1);
+      } else if (!ends(last)) {
+        link(each, last.id + 1);
+        if (last.jump >= 0) link(each, last.jump);
+      }
+    }
+    if (!blocks.isEmpty()) reach(blocks.get(0));
+    // Edges from code that never runs don't bring any values with them.
+    for (Block each : blocks) each.predecessors.removeIf(predecessor -> !predecessor.reachable);
+
+    this.current = new Value[blocks.size()][slots];
+    this.sealed = new boolean[blocks.size()];
+    this.filled = new boolean[blocks.size()];
+    for (int i = 0; i < blocks.size(); i++) incomplete.add(new HashMap<>());
+    for (Block each : blocks) {
+      seal();
+      fill(each, statements);
+    }
+    seal();
+  }
+
+  private static boolean ends(Statement statement) {
+    return statement.kind == Statement.Kind.RETURN || statement.kind == Statement.Kind.EXIT;
+  }
+
+  private void link(Block from, int to) {
+    if (to >= blockOf.length) return;
+    from.successors.add(blockOf[to]);
+    blockOf[to].predecessors.add(from);
+  }
+
+  private static void reach(Block block) {
+    if (block.reachable) return;
+    block.reachable = true;
+    for (Block successor : block.successors) reach(successor);
+  }
+
+  private Value value(Value.Kind kind, SCLTypes type, Value... args) {
+    Value value = new Value(values++, kind, type);
+    value.args = args;
+    return value;
+  }
+
+  private void seal() {
+    for (Block block : blocks) {
+      if (sealed[block.id]) continue;
+      boolean ready = true;
+      for (Block predecessor : block.predecessors) ready &= filled[predecessor.id];
+      if (!ready) continue;
+      sealed[block.id] = true;
+      for (Map.Entry<Integer, Value> phi : incomplete.get(block.id).entrySet())
+        complete(block, phi.getKey(), phi.getValue());
+      incomplete.get(block.id).clear();
+    }
+  }
+
+  private Value read(Block block, int slot) {
+    Value value = current[block.id][slot];
+    if (value != null) return value;
+
+    if (block.predecessors.isEmpty()) {
+      value = entry(slot);
+    } else if (!sealed[block.id]) {
+      value = phi(block, slot);
+      incomplete.get(block.id).put(slot, value);
+    } else if (block.predecessors.size() == 1) {
+      value = read(block.predecessors.get(0), slot);
+    } else {
+      value = phi(block, slot);
+      // Written before the operands are read so that a loop reading the slot finds the phi.
+      current[block.id][slot] = value;
+      complete(block, slot, value);
+    }
+    return current[block.id][slot] = value;
+  }
+
+  private Value entry(int slot) {
+    if (entries[slot] == null) {
+      entries[slot] = value(Value.Kind.ENTRY, slotType(slot));
+      entries[slot].slot = slot;
+    }
+    return entries[slot];
+  }
+
+  private Value phi(Block block, int slot) {
+    Value phi = value(Value.Kind.PHI, slotType(slot));
+    phi.slot = slot;
+    block.phis.add(phi);
+    phis.add(phi);
+    return phi;
+  }
+
+  private void complete(Block block, int slot, Value phi) {
+    Value[] args = new Value[block.predecessors.size()];
+    for (int i = 0; i < args.length; i++) args[i] = read(block.predecessors.get(i), slot);
+    phi.args = args;
+  }
+
+  private Value result(int slot) {
+    Value result = value(Value.Kind.RESULT, slotType(slot));
+    result.slot = slot;
+    return result;
+  }
+
+  SCLTypes slotType(int slot) {
+    return subprogram.getInitialSlots()[slot].TYPE;
+  }
+
+  private void fill(Block block, List<Statement> statements) {
+    memory++;
+    for (int i = block.start; i < block.end; i++) {
+      Statement statement = statements.get(i);
+      Instruction instruction = new Instruction(statement, block);
+      instructions[i] = instruction;
+      block.instructions.add(instruction);
+      if (!block.reachable) continue;
+
+      instruction.state = new Value[slots];
+      for (int slot = 0; slot < slots; slot++) instruction.state[slot] = read(block, slot);
+      build(instruction, statements);
+      if (instruction.clobbers) memory++;
+    }
+    filled[block.id] = true;
+  }
+
+  private void build(Instruction instruction, List<Statement> statements) {
+    Statement statement = instruction.statement;
+    Block block = instruction.block;
+    // endfor counts with the variable of its for statement.
+    String variable =
+        statement.kind == Statement.Kind.ENDFOR
+            ? statements.get(statement.jump - 1).target
+            : statement.target;
+    Integer target = variable == null ? null : subprogram.getSlot(variable);
+    switch (statement.kind) {
+      case WHILE:
+      case FOR:
+        exact(instruction, statement.operands);
+        break;
+      case ENDWHILE:
+        exact(instruction, statements.get(statement.jump - 1).operands);
+        break;
+      case ENDFOR:
+        Statement header = statements.get(statement.jump - 1);
+        exact(instruction, header.operands.subList(1, 2));
+        if (target != null) instruction.readSlot = target;
+        else instruction.readGlobal = variable;
+        break;
+      case EXIT:
+      case ELSE:
+      case ENDIF:
+        instruction.operands = new Value[0];
+        break;
+      default:
+        instruction.operands = new Value[statement.operands.size()];
+        for (int i = 0; i < instruction.operands.length; i++)
+          instruction.operands[i] =
+              value(block, Expression.compile(statement.operands.get(i), subprogram));
+        break;
+    }
+
+    switch (statement.kind) {
+      case SET:
+        if (statement.indexed) {
+          instruction.clobbers = true;
+          if (target == null) {
+            instruction.readGlobal = statement.target;
+          } else {
+            // Setting an element changes the array in place, so from here on it is a new value.
+            instruction.readSlot = target;
+            define(instruction, target, result(target));
+          }
+        } else if (target == null) {
+          instruction.global = statement.target;
+          instruction.clobbers = true;
+        } else {
+          Value value = instruction.operands[0];
+          Conversion conversion = statement.conversions[0];
+          if (conversion != Conversion.NONE) {
+            value = value(Value.Kind.CONVERT, slotType(target), value);
+            value.conversion = conversion;
+          }
+          define(instruction, target, value);
+        }
+        break;
+      case CALL:
+        instruction.clobbers = true;
+        if (target != null) define(instruction, target, result(target));
+        else instruction.global = statement.target;
+        break;
+      case FOR:
+      case ENDFOR:
+        if (target != null) {
+          define(instruction, target, result(target));
+        } else {
+          instruction.global = variable;
+          instruction.clobbers = true;
+        }
+        break;
+      default:
+        break;
+    }
+  }
+
+  private void define(Instruction instruction, int slot, Value value) {
+    instruction.slot = slot;
+    instruction.def = value;
+    current[instruction.block.id][slot] = value;
+  }
+
+  private void exact(Instruction instruction, List<List<Token>> operands) {
+    for (List<Token> operand : operands)
+      variables(Expression.compile(operand, subprogram), instruction);
+  }
+
+  private static void variables(Expression expression, Instruction instruction) {
+    if (expression instanceof Expression.Local) {
+      instruction.exactSlots.set(((Expression.Local) expression).slot);
+    } else if (expression instanceof Expression.Global) {
+      instruction.exactGlobals.add(((Expression.Global) expression).name);
+    } else if (expression instanceof Expression.Element) {
+      variables(((Expression.Element) expression).array, instruction);
+      variables(((Expression.Element) expression).index, instruction);
+    } else if (expression instanceof Expression.Negate) {
+      variables(((Expression.Negate) expression).operand, instruction);
+    } else if (expression instanceof Expression.Length) {
+      variables(((Expression.Length) expression).operand, instruction);
+    } else if (expression instanceof Expression.Binary) {
+      variables(((Expression.Binary) expression).lhs, instruction);
+      variables(((Expression.Binary) expression).rhs, instruction);
+    } else if (expression instanceof Expression.Resolved) {
+      variables(((Expression.Resolved) expression).lhs, instruction);
+      variables(((Expression.Resolved) expression).rhs, instruction);
+    }
+  }
+
+  // The value of a compiled expression, in terms of the values the block has so far.
+  private Value value(Block block, Expression expression) {
+    if (expression instanceof Expression.Constant) {
+      TypedValue constant = ((Expression.Constant) expression).value;
+      Value value = value(Value.Kind.CONSTANT, constant.TYPE);
+      value.constant = constant;
+      return value;
+    }
+    if (expression instanceof Expression.Local)
+      return read(block, ((Expression.Local) expression).slot);
+    if (expression instanceof Expression.Global) {
+      String name = ((Expression.Global) expression).name;
+      Value value = value(Value.Kind.GLOBAL, subprogram.getGlobalType(name));
+      value.name = name;
+      value.memory = memory;
+      return value;
+    }
+    if (expression instanceof Expression.Element) {
+      Expression.Element element = (Expression.Element) expression;
+      Value value =
+          value(
+              Value.Kind.ELEMENT,
+              SCLTypes.BYTE,
+              value(block, element.array),
+              value(block, element.index));
+      value.name = element.name;
+      value.memory = memory;
+      return value;
+    }
+    if (expression instanceof Expression.Negate) {
+      Value operand = value(block, ((Expression.Negate) expression).operand);
+      return value(Value.Kind.NEGATE, operand.type, operand);
+    }
+    if (expression instanceof Expression.Length) {
+      Value operand = value(block, ((Expression.Length) expression).operand);
+      return value(Value.Kind.LENGTH, SCLTypes.UNSIGNED_LONG, operand);
+    }
+    int operator;
+    Expression lhs;
+    Expression rhs;
+    if (expression instanceof Expression.Binary) {
+      operator = ((Expression.Binary) expression).operator;
+      lhs = ((Expression.Binary) expression).lhs;
+      rhs = ((Expression.Binary) expression).rhs;
+    } else {
+      operator = ((Expression.Resolved) expression).operator;
+      lhs = ((Expression.Resolved) expression).lhs;
+      rhs = ((Expression.Resolved) expression).rhs;
+    }
+    Value left = value(block, lhs);
+    Value right = value(block, rhs);
+    SCLTypes type =
+        left.type == null || right.type == null
+            ? null
+            : Operators.type(operator, left.type, right.type);
+    Value value = value(Value.Kind.BINARY, type, left, right);
+    value.operator = operator;
+    return value;
+  }
+
+  // The slot that holds a value just before an instruction runs, or -1 if none does.
+  static int home(Instruction instruction, Value value) {
+    value = value.find();
+    if (value.kind == Value.Kind.CONSTANT) return -1;
+    for (int slot = 0; slot < instruction.state.length; slot++)
+      if (instruction.state[slot].find() == value) return slot;
+    return -1;
+  }
+
+  // Walk the variables the lowered form of a value reads at an instruction.
+  static void read(Instruction instruction, Value value, Reader reader) {
+    value = value.find();
+    if (value.kind == Value.Kind.CONSTANT) return;
+    int home = home(instruction, value);
+    if (home >= 0) {
+      reader.local(home, value);
+      return;
+    }
+    switch (value.kind) {
+      case GLOBAL:
+        reader.global(value.name);
+        return;
+      case ELEMENT:
+        reader.element();
+        // fallthrough
+      case BINARY:
+      case NEGATE:
+      case LENGTH:
+        for (Value arg : value.args) read(instruction, arg, reader);
+        return;
+      default:
+        throw new IllegalStateException(
+            value + " isn't available at " + instruction.statement);
+    }
+  }
+
+  // Walk every variable an instruction reads, including the ones its operands are compiled from
+  // the tokens for. Dead instructions only read their guards.
+  void reads(Instruction instruction, Reader reader) {
+    if (instruction.dead) {
+      for (Value guard : instruction.guards) read(instruction, guard, reader);
+      return;
+    }
+    if (instruction.operands == null) {
+      instruction.exactSlots.stream().forEach(slot -> reader.local(slot, null));
+      instruction.exactGlobals.forEach(reader::global);
+    } else {
+      for (Value operand : instruction.operands) read(instruction, operand, reader);
+    }
+    if (instruction.readSlot >= 0) reader.local(instruction.readSlot, null);
+    if (instruction.readGlobal != null) reader.global(instruction.readGlobal);
+  }
+
+  // The expression that computes a value at an instruction.
+  Expression lower(Instruction instruction, Value value) {
+    value = value.find();
+    if (value.kind == Value.Kind.CONSTANT) return new Expression.Constant(value.constant);
+    int home = home(instruction, value);
+    if (home >= 0)
+      return new Expression.Local(subprogram.getSlotName(home), home, slotType(home));
+    switch (value.kind) {
+      case GLOBAL:
+        return new Expression.Global(value.name, value.type);
+      case ELEMENT:
+        return new Expression.Element(
+            value.name, lower(instruction, value.args[0]), lower(instruction, value.args[1]));
+      case NEGATE:
+        return new Expression.Negate(lower(instruction, value.args[0]));
+      case LENGTH:
+        return new Expression.Length(lower(instruction, value.args[0]));
+      case BINARY:
+        return Expression.binary(
+            value.operator, lower(instruction, value.args[0]), lower(instruction, value.args[1]));
+      default:
+        throw new IllegalStateException(
+            value + " isn't available at " + instruction.statement);
+    }
+  }
+
+  public String toString() {
+    StringBuilder string = new StringBuilder();
+    string.append("subprogram ").append(subprogram.getName()).append('\n');
+    Set<Value> printed = new HashSet<>();
+    for (Block block : blocks) {
+      string.append(block).append(':');
+      if (!block.predecessors.isEmpty()) string.append(" from ");
+      join(string, block.predecessors);
+      if (!block.reachable) string.append(" (never runs)");
+      string.append('\n');
+      for (Value phi : block.phis) {
+        if (phi.replacement != null) continue;
+        printed.add(phi);
+        string.append("    ").append(phi).append(" = phi ");
+        List<Value> args = new ArrayList<>();
+        for (Value arg : phi.args) args.add(arg.find());
+        join(string, args);
+        string.append('\n');
+      }
+      for (Instruction instruction : block.instructions) print(string, instruction, printed);
+    }
+    return string.toString();
+  }
+
+  private void print(StringBuilder string, Instruction instruction, Set<Value> printed) {
+    Statement statement = instruction.statement;
+    string.append("  ").append(statement);
+    if (instruction.dead) string.append("    (dead)");
+    string.append('\n');
+    if (instruction.state == null) return;
+
+    Consumer<Value> define = value -> print(string, value.find(), printed);
+    if (instruction.dead) {
+      instruction.guards.forEach(define);
+      if (!instruction.guards.isEmpty()) {
+        string.append("    check ");
+        join(string, instruction.guards);
+        string.append('\n');
+      }
+      return;
+    }
+    if (instruction.operands == null) {
+      string.append("    (compiled from its tokens)\n");
+    } else {
+      for (Value operand : instruction.operands) define.accept(operand);
+      List<Value> operands = new ArrayList<>();
+      for (Value operand : instruction.operands) operands.add(operand.find());
+      switch (statement.kind) {
+        case SET:
+          if (statement.indexed)
+            string.append("    ").append(statement.target).append('[').append(operands.get(1))
+                .append("] <- ").append(operands.get(0)).append('\n');
+          else if (instruction.global != null)
+            string.append("    store ").append(statement.target).append(" <- ")
+                .append(operands.get(0)).append('\n');
+          break;
+        case CALL:
+          string.append("    call ").append(statement.callee).append('(');
+          join(string, operands);
+          string.append(")\n");
+          break;
+        case DISPLAY:
+        case RETURN:
+        case IF:
+          string.append("    ").append(statement.kind.name().toLowerCase()).append(' ');
+          join(string, operands);
+          string.append('\n');
+          break;
+        default:
+          break;
+      }
+    }
+    if (instruction.def != null) {
+      define.accept(instruction.def);
+      string.append("    ").append(subprogram.getSlotName(instruction.slot)).append(" <- ")
+          .append(instruction.def.find()).append('\n');
+    }
+  }
+
+  private void print(StringBuilder string, Value value, Set<Value> printed) {
+    if (value.kind == Value.Kind.PHI || !printed.add(value)) return;
+    for (Value arg : value.args) print(string, arg.find(), printed);
+
+    string.append("    ").append(value).append(" = ");
+    switch (value.kind) {
+      case CONSTANT:
+        string.append(value.constant.getText());
+        break;
+      case ENTRY:
+        string.append("entry ").append(subprogram.getSlotName(value.slot));
+        break;
+      case RESULT:
+        string.append("result ").append(subprogram.getSlotName(value.slot));
+        break;
+      case GLOBAL:
+        string.append("global ").append(value.name).append(" @").append(value.memory);
+        break;
+      case ELEMENT:
+        string.append("element ").append(value.name).append(" @").append(value.memory).append(' ');
+        break;
+      case BINARY:
+        string.append(Operators.name(value.operator)).append(' ');
+        break;
+      case NEGATE:
+        string.append("negate ");
+        break;
+      case LENGTH:
+        string.append("length ");
+        break;
+      default:
+        string.append("convert to ").append(value.type).append(' ');
+        break;
+    }
+    List<Value> args = new ArrayList<>();
+    for (Value arg : value.args) args.add(arg.find());
+    join(string, args);
+    string.append('\n');
+  }
+
+  private static void join(StringBuilder string, List<?> items) {
+    for (int i = 0; i < items.size(); i++) {
+      if (i != 0) string.append(", ");
+      string.append(items.get(i));
+    }
+  }
+}
@@ -1,37 +1,177 @@
 package io.github.yemouu.SCLInterpreter;
 
 import java.io.File;
-import java.io.FileNotFoundException;
-import java.util.ArrayList;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import jdk.jfr.FlightRecorder;
 
 public class Interpreter {
-  // This is the list of statements from our parser. We use the index combined with
-  // getNextStatement() and peekNextStatement() to traverse this list and interpret the file
-  private final List<List<Token>> statements;
-  private int index = -1;
+  // The program we are executing. The program is never modified, everything that changes while
+  // the program runs is stored in this class instead. This means that creating an Interpreter is
+  // cheap and many Interpreters can run the same program at the same time.
+  private final SCLProgram program;
 
   // HashMap storing all of our identifiers and their values. Our custom TypedValue class holds the
   // type information and value information allowing us to be type aware while handling operation.
   private Map<String, TypedValue> identifiers = new HashMap<>();
 
-  // Stores a subprogram which is a list of statements. Although our current implementation only
-  // supports executing main, if we were to enable the interpreter to execute other subprograms,
-  // they would be stored in this data structure alongside main.
-  private List<List<List<Token>>> subprograms = new ArrayList<>();
-  private List<List<Token>> subprogramBuilder = new ArrayList<>();
-
   // Boolean flag to control if log messages should be printed to stderr.
   private boolean verbose = false;
 
-  // Constructor. Creates a parser object that will parse our file and return to us the statements
-  // for us to interpret.
+  // Where display statements write to. This is stdout unless an embedder (such as the script
+  // engine) redirects it with setOutput().
+  private PrintWriter out = new PrintWriter(System.out, true);
+
+  // Values supplied by an embedder for variables declared in the program. They are assigned after
+  // all of the declarations have been interpreted and before main is called.
+  private Map<String, Object> bindings = new HashMap<>();
+
+  // The names of the global variables declared by the program and its modules, in the order they
+  // were declared.
+  private Set<String> variables = new LinkedHashSet<>();
+
+  // The modules whose declarations we have already interpreted. When two modules import the same
+  // module, its declarations must only be interpreted once.
+  private Set<SCLProgram> importedModules = new HashSet<>();
+
+  // The call stack. Calls don't recurse on the Java stack, each call pushes a frame here and the
+  // main loop in run() always executes the frame on top. Frames that are popped stay in the array
+  // and are reused by the next call at that depth, so a program that calls subprograms in a loop
+  // doesn't allocate a frame (or, usually, a slots array) per call.
+  private Frame[] stack = new Frame[16];
+  private int depth = 0;
+
+  // Whether an exit statement ended the program, which also ends a stream of records.
+  private boolean exited = false;
+
+  // How deep the call stack may get before we give up. Without a limit, runaway recursion would
+  // keep growing the stack until the JVM runs out of memory.
+  static final int DEFAULT_MAX_CALL_DEPTH = 1 << 20;
+  private int maxCallDepth = DEFAULT_MAX_CALL_DEPTH;
+
+  // A subprogram call that is in progress.
+  private static final class Frame {
+    Subprogram subprogram;
+
+    // The values of the subprogram's parameters and local variables, indexed by slot. The array
+    // can be longer than the subprogram needs when it was left behind by a bigger subprogram.
+    TypedValue[] slots = new TypedValue[0];
+
+    // The index of the next statement to execute in the subprogram's body.
+    int pc;
+
+    // The caller's variable that receives the value this call returns, or null if the value isn't
+    // used, and how the value is converted to the variable's type.
+    String returnTarget;
+    Conversion returnConversion;
+
+    // The compiled form of the subprogram, or null while the frame is interpreting it.
+    CompiledSubprogram code;
+
+    // Where the profiler records this call's statements. Only used while profiling.
+    Profiler.Node node;
+
+    // The flight recorder event for this call, or null when call events aren't being recorded.
+    CallEvent event;
+
+    // The listener of each of the subprogram's statements, or null if none of them have one. The
+    // main loop only checks this, so a frame without listeners doesn't pay anything else for them.
+    ExecutionListener[] hooks;
+  }
+
+  // Records the time spent in each statement, or null when we aren't profiling.
+  private Profiler profiler = null;
+
+  // The profiler's node for main in this run. A streamed program runs main once for every record,
+  // and every one of those counts as another call of the same node.
+  private Profiler.Node profiled = null;
+
+  // Listeners installed by tools, see ExecutionListener. listener sees every statement, the others
+  // are only installed on some statements: by subprogram name and statement index, or on the
+  // statements that assign a variable.
+  private ExecutionListener listener = null;
+  private Map<String, Map<Integer, ExecutionListener>> statementListeners = new HashMap<>();
+  private Map<String, ExecutionListener> watchers = new HashMap<>();
+
+  // The listener of each statement of every subprogram called so far, worked out on the first
+  // call, or NO_HOOKS if none of its statements have one. Null while no listener is installed, so
+  // calls don't look anything up.
+  private Map<Subprogram, ExecutionListener[]> hooks = null;
+  private static final ExecutionListener[] NO_HOOKS = new ExecutionListener[0];
+
+  // What this execution has done so far, counted in plain fields while the program runs and handed
+  // to InterpreterMetrics once it is done.
+  private long statementsExecuted = 0;
+  private long displayBytes = 0;
+
+  // Limits on what one execution may use, see setMaxStatements() and the rest. The defaults come
+  // from system properties, so every Interpreter in a JVM that runs other people's programs (a
+  // daemon or a batch) can be limited without changing the code that creates them.
+  private long maxStatements = Long.getLong("scl.limit.statements", Long.MAX_VALUE);
+  private long timeLimit = Long.getLong("scl.limit.time", 0L);
+  private long maxDisplayBytes = Long.getLong("scl.limit.output", Long.MAX_VALUE);
+  private long maxLiveValues = Long.getLong("scl.limit.values", Long.MAX_VALUE);
+  private long maxLiveBytes = Long.getLong("scl.limit.memory", Long.MAX_VALUE);
+  private static final List<String> LIMIT_PROPERTIES =
+      List.of(
+          "scl.limit.statements",
+          "scl.limit.time",
+          "scl.limit.output",
+          "scl.limit.values",
+          "scl.limit.memory");
+
+  // The statement count and time limits are only checked on calls and at the end of every loop
+  // iteration, which every run that goes on for long has to pass through, and even there only
+  // once statementsExecuted reaches nextCheck. Without a time limit that is the statement limit
+  // itself, with one it comes around every TIME_CHECK_INTERVAL statements so the clock isn't read
+  // all the time.
+  private static final long TIME_CHECK_INTERVAL = 1 << 12;
+  private long nextCheck = Long.MAX_VALUE;
+  private long deadline;
+
+  // The variables of every global and every call in progress, and the bytes their byte arrays
+  // take up. Temporary values a statement computes with aren't counted, they are garbage as soon
+  // as the statement is done.
+  private long liveValues = 0;
+  private long liveBytes = 0;
+
+  // The flags that limit what a run can use, see limit().
+  private static final List<String> LIMITS =
+      List.of("--max-statements", "--time-limit", "--max-output", "--max-values", "--max-memory");
+
+  private static final String USAGE =
+      String.join(
+          "\n",
+          "Usage: java Interpreter [--tier-threshold <count>] [--tier-log] [--profile]",
+          "                        [--dump-ir] [--no-optimize] [--cache]",
+          "                        [--stream <name>[,<name>...] [--binary] [--input <file>]]",
+          "                        [--max-statements <count>] [--time-limit <ms>]",
+          "                        [--max-output <bytes>] [--max-values <count>]",
+          "                        [--max-memory <bytes>] [--watch]",
+          "                        <filename>",
+          "       java Interpreter --daemon [--socket <path>]",
+          "       java Interpreter --client [--socket <path>] <filename | -> [name=value ...]",
+          "       java Interpreter --stop [--socket <path>]",
+          "       " + BatchRunner.USAGE.substring("Usage: ".length()));
+
+  // Constructor. Parses our file into a program for us to interpret.
   public Interpreter(File file) {
-    Parser parser = new Parser(file);
-    parser.begin();
-    this.statements = parser.getStatements();
+    this(new SCLProgram(file));
   }
 
   // Same as above but gives control over the verbose flag.
@@ -40,68 +180,306 @@ public class Interpreter {
     this.verbose = verbose;
   }
 
-  // Print messages to stderr based on the verbose flag.
-  private void log(String message) {
-    if (!verbose) return;
-    System.err.println(message);
+  // Interpret a program that is already in memory instead of a file.
+  public Interpreter(String source) {
+    this(new SCLProgram(source));
+  }
+
+  // Interpret a program read from a Reader.
+  public Interpreter(Reader source) {
+    this(new SCLProgram(source));
+  }
+
+  // Interpret a UTF-8 encoded program held in a buffer.
+  public Interpreter(ByteBuffer source) {
+    this(new SCLProgram(source));
+  }
+
+  // Interpret a program that was already parsed. This is how a program gets executed more than
+  // once (or by more than one thread) without parsing it again.
+  public Interpreter(SCLProgram program) {
+    this.program = program;
+  }
+
+  // Redirect the output of display statements.
+  public void setOutput(Writer writer) {
+    out = writer instanceof PrintWriter ? (PrintWriter) writer : new PrintWriter(writer, true);
+  }
+
+  // Provide values for declared variables. Names that the program doesn't declare are ignored.
+  public void setBindings(Map<String, Object> bindings) {
+    this.bindings = bindings;
+  }
+
+  // Profile the execution. Profiling uses its own copy of the main loop, so an Interpreter without
+  // a profiler doesn't pay anything for it.
+  public void setProfiler(Profiler profiler) {
+    this.profiler = profiler;
+  }
+
+  // See every statement the program runs, every assignment, display, call, and return. Null
+  // removes the listener.
+  public void setListener(ExecutionListener listener) {
+    this.listener = listener;
+    installHooks();
+  }
+
+  // See one statement run, with the assignments and the line it displays. Statements are numbered
+  // from 0 in the order they appear in the subprogram's body, see getStatementText(). Unlike
+  // setListener(), the subprogram's other statements and every other subprogram keep running at
+  // full speed.
+  public void listen(String subprogram, int statement, ExecutionListener listener) {
+    statementListeners
+        .computeIfAbsent(subprogram, name -> new HashMap<>())
+        .merge(statement, listener, ExecutionListener::both);
+    installHooks();
+  }
+
+  // See every assignment to a variable (a global, or a parameter or local variable of any
+  // subprogram). The listener is installed on the statements that assign the variable, so only
+  // those are slowed down.
+  public void watch(String name, ExecutionListener listener) {
+    watchers.merge(
+        name, ExecutionListener.watching(name, listener), ExecutionListener::both);
+    installHooks();
+  }
+
+  // The text of a statement, starting with its number, e.g. "3: set x = x band 0Fh". Null if the
+  // program or its modules have no such subprogram.
+  public String getStatementText(String subprogram, int statement) {
+    Subprogram found = findSubprogram(program, subprogram, new HashSet<>());
+    if (found == null) return null;
+    return found.getStatements().get(statement).toString();
+  }
+
+  private static Subprogram findSubprogram(SCLProgram program, String name, Set<SCLProgram> seen) {
+    if (!seen.add(program)) return null;
+    Integer index = program.getSubprogramIndex(name);
+    if (index != null) return program.getSubprogram(index);
+    for (SCLProgram module : program.getModules()) {
+      Subprogram found = findSubprogram(module, name, seen);
+      if (found != null) return found;
+    }
+    return null;
+  }
+
+  // Start over working out which statements have listeners. A tool can install listeners while
+  // the program is paused in one, so the calls in progress pick them up too.
+  private void installHooks() {
+    boolean any = listener != null || !statementListeners.isEmpty() || !watchers.isEmpty();
+    hooks = any ? new IdentityHashMap<>() : null;
+    for (int i = 0; i < depth; i++) {
+      Frame frame = stack[i];
+      frame.hooks = hooks(frame.subprogram);
+      // Frames with listeners are interpreted, see ExecutionListener. A compiled frame can switch
+      // back since both tiers keep every variable in the same slots.
+      if (frame.hooks != null) frame.code = null;
+    }
+  }
+
+  // The listener of each statement of a subprogram, or null if there aren't any.
+  private ExecutionListener[] hooks(Subprogram subprogram) {
+    if (hooks == null) return null;
+    ExecutionListener[] found =
+        hooks.computeIfAbsent(
+            subprogram,
+            key -> {
+              List<Statement> statements = key.getStatements();
+              ExecutionListener[] listeners = new ExecutionListener[statements.size()];
+              boolean any = listener != null;
+              if (any) Arrays.fill(listeners, listener);
+
+              Map<Integer, ExecutionListener> installed = statementListeners.get(key.getName());
+              if (installed != null)
+                for (Map.Entry<Integer, ExecutionListener> entry : installed.entrySet()) {
+                  int index = entry.getKey();
+                  if (index < 0 || index >= listeners.length) continue;
+                  listeners[index] = ExecutionListener.both(listeners[index], entry.getValue());
+                  any = true;
+                }
+
+              for (Statement statement : statements) {
+                ExecutionListener watcher = watchers.get(assigned(statements, statement));
+                if (watcher == null) continue;
+                listeners[statement.id] = ExecutionListener.both(listeners[statement.id], watcher);
+                any = true;
+              }
+              return any ? listeners : NO_HOOKS;
+            });
+    return found == NO_HOOKS ? null : found;
+  }
+
+  // The variable a statement assigns, or null if it doesn't.
+  private static String assigned(List<Statement> statements, Statement statement) {
+    switch (statement.kind) {
+      case SET:
+      case CALL:
+      case FOR:
+        return statement.target;
+      case ENDFOR:
+        return statements.get(statement.jump - 1).target;
+      default:
+        return null;
+    }
+  }
+
+  // Limit how many subprogram calls can be in progress at the same time.
+  public void setMaxCallDepth(int maxCallDepth) {
+    this.maxCallDepth = maxCallDepth;
+  }
+
+  // Limit how many statements an execution can run before it fails with StatementLimitException.
+  // The count is checked on every call and loop iteration, so a run can go past the limit by the
+  // statements between two of those.
+  public void setMaxStatements(long maxStatements) {
+    this.maxStatements = maxStatements;
+  }
+
+  // Limit how long an execution can take before it fails with TimeLimitException. Zero means no
+  // limit. The clock is checked every few thousand statements.
+  public void setTimeLimit(Duration timeLimit) {
+    this.timeLimit = timeLimit.toNanos();
+  }
+
+  // Limit how many bytes (in UTF-8) display statements can write before the run fails with
+  // OutputLimitException. Nothing past the limit is written.
+  public void setMaxDisplayBytes(long maxDisplayBytes) {
+    this.maxDisplayBytes = maxDisplayBytes;
+  }
+
+  // Limit how many variables can exist at once, counting every global and every parameter and
+  // local variable of the calls in progress, and how many bytes their byte arrays can take up.
+  // Going over either fails with MemoryLimitException before the values are made.
+  public void setMaxLiveValues(long maxLiveValues) {
+    this.maxLiveValues = maxLiveValues;
   }
 
-  // Check for and return the value of the next statement. This doesn't advance the index.
-  private List<Token> peekNextStatement() {
-    if (index + 1 >= 0 && index + 1 < statements.size()) return statements.get(index + 1);
-    else return null;
+  public void setMaxLiveBytes(long maxLiveBytes) {
+    this.maxLiveBytes = maxLiveBytes;
   }
 
-  // Similar to the above function but advances the index. If there isn't a next statement, throws
-  // an exception instead.
-  private List<Token> getNextStatement() {
-    if (index + 1 >= 0 && index + 1 < statements.size()) return statements.get(++index);
-    else throw new StatementNotFoundException();
+  // Whether the system properties give every Interpreter limits.
+  static boolean limitedByDefault() {
+    for (String property : LIMIT_PROPERTIES) if (System.getProperty(property) != null) return true;
+    return false;
   }
 
-  // Does an inplace mutation of the statement provided. Each identifier token is replaced with its
-  // real value. This doesn't work for identifiers that are subprograms.
-  private void replaceIdentifiers(List<Token> statement) {
-    for (int i = 0; i < statement.size(); i++) {
-      Token token = statement.get(i);
-      if (Token.expect(TokenType.IDENTIFIER, token)) {
-        Token identifier = identifiers.get(token.VALUE).toToken();
-        if (identifier.VALUE == null)
-          throw new VariableIsNullException(
-              "Tried to use " + token.VALUE + " before it had a value");
+  // Check the statement count and time limits, and work out when to check them next.
+  private void checkLimits() {
+    if (statementsExecuted >= maxStatements)
+      throw new StatementLimitException(
+          "Ran " + statementsExecuted + " statements, the limit is " + maxStatements);
+    if (timeLimit > 0) {
+      if (System.nanoTime() - deadline > 0)
+        throw new TimeLimitException(
+            "Ran for more than " + Duration.ofNanos(timeLimit).toMillis() + " ms");
+      nextCheck = Math.min(maxStatements, statementsExecuted + TIME_CHECK_INTERVAL);
+    } else nextCheck = maxStatements;
+  }
+
+  // Count values becoming live, failing if that goes over the limits.
+  private void allocate(long values, long bytes) {
+    if (liveValues + values > maxLiveValues)
+      throw new MemoryLimitException(
+          "Tried to have more than " + maxLiveValues + " variables at once");
+    if (liveBytes + bytes > maxLiveBytes)
+      throw new MemoryLimitException(
+          "Tried to have byte arrays of more than " + maxLiveBytes + " bytes at once");
+    liveValues += values;
+    liveBytes += bytes;
+  }
+
+  // Look up the current value of a global identifier. Returns null if it was never defined.
+  public TypedValue getValue(String name) {
+    return identifiers.get(name);
+  }
+
+  // Get the names of the global variables that have been declared. Symbols and subprograms aren't
+  // included.
+  public Set<String> getVariableNames() {
+    return Collections.unmodifiableSet(variables);
+  }
+
+  // Look up the value of an identifier the way the running subprogram sees it. Parameters and
+  // local variables of the subprogram come first, then the global identifiers.
+  private TypedValue lookup(String name) {
+    if (depth > 0) {
+      Frame frame = stack[depth - 1];
+      Integer slot = frame.subprogram.getSlot(name);
+      if (slot != null) return frame.slots[slot];
+    }
+    return identifiers.get(name);
+  }
 
-        statement.set(i, identifier);
-        log(token + " replaced with " + statement.get(i));
+  // Assign a value to an identifier the running subprogram can see.
+  private void store(String name, TypedValue value) {
+    if (depth > 0) {
+      Frame frame = stack[depth - 1];
+      Integer slot = frame.subprogram.getSlot(name);
+      if (slot != null) {
+        frame.slots[slot] = value;
+        return;
       }
     }
+    identifiers.replace(name, value);
+  }
+
+  // Print messages to stderr based on the verbose flag.
+  private void log(String message) {
+    if (!verbose) return;
+    System.err.println(message);
+  }
+
+  // Get the value of an identifier used in an expression. Unlike lookup(), it is an error for the
+  // identifier to not be defined or to not have a value yet.
+  private TypedValue value(String name) {
+    TypedValue value = lookup(name);
+    if (value == null)
+      throw new VariableNotDefinedException("Tried to use " + name + " before defining it");
+    if (!value.hasValue())
+      throw new VariableIsNullException("Tried to use " + name + " before it had a value");
+    return value;
   }
 
-  // Start the interpretation process. We loop over all of the statements and interpret each line by
-  // line. In this specific method, we look for top level statements (import, symbol, global, and
-  // implementations) and call the corresponding methods to interpret each statement. The methods we
-  // call here will call other methods as needed to interpret everything
+  // Start the interpretation process. We interpret all of the program's declarations to define
+  // its identifiers and then call main. The bodies of the subprograms were already separated out
+  // by SCLProgram.
   public void execute() {
-    while (peekNextStatement() != null) {
-      List<Token> statement = getNextStatement();
-      Token startToken = statement.get(0);
+    measure(() -> runMain(declareMain()));
+  }
 
-      switch (startToken.VALUE) {
-        case "import":
-          _import(statement);
-          break;
-        case "symbol":
-          symbol(statement);
-          break;
-        case "global":
-          global(statement);
-          break;
-        case "implementations":
-          implementations(statement);
-          break;
-        default:
-          throw new UnexpectedTokenException("Unexpected token " + startToken);
-      }
+  // Run main once for every record of a stream, see RecordStream. The declarations only run once,
+  // so globals keep their values from one record to the next.
+  void stream(RecordStream records) {
+    measure(
+        () -> {
+          Subprogram main = declareMain();
+          while (!exited && records.next(this)) runMain(main);
+        });
+  }
+
+  private void measure(Runnable execution) {
+    long start = System.nanoTime();
+    deadline = start + timeLimit;
+    checkLimits();
+    try {
+      execution.run();
+    } catch (RuntimeException | Error error) {
+      InterpreterMetrics.exception(error);
+      throw error;
+    } finally {
+      InterpreterMetrics.executed(System.nanoTime() - start, statementsExecuted, displayBytes);
+      statementsExecuted = 0;
+      displayBytes = 0;
+      liveValues = 0;
+      liveBytes = 0;
+      profiled = null;
     }
+  }
+
+  // Interpret the program's declarations and find main.
+  private Subprogram declareMain() {
+    declare(program);
 
     log("Done interpreting");
 
@@ -116,23 +494,70 @@ public class Interpreter {
     if (main.TYPE != SCLTypes.SUBPROGRAM)
       throw new NotASubprogramException("Tried to execute main, but it was not a subprogram");
 
-    callSubprogram(Integer.parseInt(main.VALUE));
+    // Now that every variable is declared, apply the values the embedder gave us.
+    for (Map.Entry<String, Object> binding : bindings.entrySet())
+      bind(binding.getKey(), binding.getValue());
+    return ((SCLSubprogram) main).getSubprogram();
+  }
+
+  private void runMain(Subprogram main) {
+    Frame frame = nextFrame(main, null);
+    depth++;
+    if (listener != null) listener.enterSubprogram(main.getName(), depth);
+    if (profiler == null) run();
+    else {
+      if (profiled == null) profiled = profiler.start(frame.subprogram);
+      else profiled.calls++;
+      frame.node = profiled;
+      runProfiled();
+    }
+  }
+
+  // Loop over the declarations of a program (import, symbol, define, and function statements) and
+  // call the corresponding methods to interpret each statement.
+  private void declare(SCLProgram program) {
+    for (List<Token> statement : program.getDeclarations()) {
+      Token startToken = statement.get(0);
+
+      switch (startToken.VALUE) {
+        case "import":
+          _import(program, statement);
+          break;
+        case "symbol":
+          symbol(statement);
+          break;
+        case "define":
+          define(program, statement);
+          break;
+        case "function":
+          function(program, statement);
+          break;
+        default:
+          throw new UnexpectedTokenException("Unexpected token " + startToken);
+      }
+    }
   }
 
   // Interpret import statements
-  private void _import(List<Token> statement) {
+  private void _import(SCLProgram program, List<Token> statement) {
     log("Processing import");
     if (statement.size() != 3)
       throw new UnexpectedNumberOfArgumentsException(
           "Expecting 1 argument but got " + (statement.size() - 2));
 
     Token module = statement.get(1);
+    String name = module.VALUE.substring(1, module.VALUE.length() - 1);
+
+    // The module was already found and parsed when the program was loaded. All that is left is to
+    // interpret its declarations so that its identifiers are defined for us. Modules that weren't
+    // found on the search path (like the sysplm.h our example imports) are skipped.
+    SCLProgram imported = program.getModule(name);
+    if (imported == null) {
+      log("Module " + module.VALUE + " not found, skipping");
+      return;
+    }
 
-    // There isn't any actual modules for us to import If we were to actually implement this, we
-    // would need to make sure that the module is a file, and that we can parse it. The module would
-    // need to be parsed, and interpreted and the results of that interpretation would need to be
-    // given back to us to use while interpreting this file
-
+    if (importedModules.add(imported)) declare(imported);
     log("Importing " + module.VALUE);
   }
 
@@ -148,340 +573,779 @@ public class Interpreter {
     if (identifiers.containsKey(identifier.VALUE))
       throw new VariableAlreadyDefinedException("Tried defining " + identifier.VALUE + " twice");
 
-    // Resolve the remaining portion of the statement to a single token
-    replaceIdentifiers(statement.subList(2, statement.size() - 1));
-    evaluateExpr(statement.subList(2, statement.size() - 1));
-
-    // Assign the value to the identifier inside of the identifiers HashMap
-    TypedValue value = TypedValue.toTypedValue(statement.get(2));
+    // Evaluate the remaining portion of the statement and assign the value to the identifier
+    // inside of the identifiers HashMap
+    TypedValue value = evaluate(statement.subList(2, statement.size() - 1));
     identifiers.put(identifier.VALUE, value);
 
     log("Defining symbol " + identifier + " with value " + value);
   }
 
-  // Evaluate arithmetic expressions
-  private void evaluateExpr(List<Token> expr) {
-    // Find the indexes of each opening and closing parenthesis and add them to an array
-    List<Integer> start = new ArrayList<>();
-    List<Integer> end = new ArrayList<>();
-    for (int i = 0; i < expr.size(); i++) {
-      Token token = expr.get(i);
-      if (Token.expect(TokenType.SPECIAL_SYMBOL, "(", token)) start.add(i);
-      else if (Token.expect(TokenType.SPECIAL_SYMBOL, ")", token)) end.add(i);
-    }
-
-    // Ensure that each each parenthesis has a matching pair.
-    if (start.size() != end.size())
-      throw new UnmatchedTokenException("Uneven amount of opening and closing parenthesis.");
-
-    // If we have indexes in our arrays, evaluate the expressions between the parenthesis.
-    while (start.size() != 0) {
-      List<Token> subExpr = expr.subList(start.get(start.size() - 1), end.get(0) + 1);
-
-      // After evaluating the expression, we need to shift the indexes of the closing parenthesis by
-      // the number of elements that were originally inside of expression before evaluation.
-      int shift = end.get(0) - start.get(start.size() - 1);
-      for (int i = 0; i < end.size(); i++) end.set(i, end.get(i) - shift);
-
-      // Evaluate the inner expression
-      evaluateGroup(subExpr);
+  // Evaluate an expression. Expressions are evaluated straight from the parsed tokens without
+  // changing them, so the statement they belong to can run again (even on another thread).
+  // Operators are applied from left to right and parenthesis group an expression into a single
+  // operand. Package-private so the benchmarks in bench/jmh can measure it.
+  TypedValue evaluate(List<Token> expr) {
+    return evaluate(expr, 0, expr.size());
+  }
 
-      // Remove the used indexes
-      start.remove(start.size() - 1);
-      end.remove(0);
+  // Evaluate the tokens between start and end.
+  private TypedValue evaluate(List<Token> expr, int start, int end) {
+    if (start == end) throw new UnexpectedTokenException("Expected an expression");
+
+    int operandEnd = operandEnd(expr, start, end);
+    TypedValue result = operand(expr, start, operandEnd);
+    while (operandEnd < end) {
+      Token operator = expr.get(operandEnd);
+      int rhsStart = operandEnd + 1;
+      if (rhsStart == end)
+        throw new UnexpectedTokenException("Expected a value after " + operator.VALUE);
+
+      Token.expectOrError(TokenType.OPERATOR, operator);
+      operandEnd = operandEnd(expr, rhsStart, end);
+      result =
+          Operators.apply(
+              Operators.operator(operator), result, operand(expr, rhsStart, operandEnd));
     }
 
-    // We have a flat expression now (no parenthesis) and we can evaluate the final expression
-    evaluate(expr);
+    return result;
   }
 
-  // Helper method for evaluating expressions inside of parenthesis
-  private void evaluateGroup(List<Token> expr) {
-    // Remove the parenthesis
-    expr.remove(expr.size() - 1);
-    expr.remove(0);
-
-    // Evaluate the expression
-    evaluate(expr);
+  // Find where the operand that begins at start ends. An operand is a single value, an element of
+  // an array, an expression in parenthesis, or any of those with negate or length in front of it.
+  private static int operandEnd(List<Token> expr, int start, int end) {
+    int i = start;
+    while (i < end && Expression.prefix(expr.get(i))) i++;
+    if (i == end) throw new UnexpectedTokenException("Expected a value after negate or length");
+    if (Token.expect(TokenType.SPECIAL_SYMBOL, "(", expr.get(i)))
+      return Statement.closing(expr, i, end) + 1;
+    // An element of an array, name [ index ].
+    if (i + 1 < end && Token.expect(TokenType.SPECIAL_SYMBOL, "[", expr.get(i + 1)))
+      return Statement.closing(expr, i + 1, end) + 1;
+    return i + 1;
   }
 
-  // Helper method for evaluating expressions.  The only operators we support right now are = and
-  // the bitwise operators (band, bor, bxor, negate, lshift, and rshift). We only use the equals
-  // operator in assigning values to  identifiers so we should never see it inside of an expression.
-  private void evaluate(List<Token> expr) {
-    // Quick check to make sure that we have the correct types of tokens
-    for (Token token : expr) {
-      switch (token.TYPE) {
-        case IDENTIFIER:
-        case OPERATOR:
-        case CONSTANT:
-          continue;
-        default:
-          throw new UnexpectedTokenException("Unexpected token " + token);
-      }
+  // Evaluate a single operand.
+  private TypedValue operand(List<Token> expr, int start, int end) {
+    Token token = expr.get(start);
+    switch (token.TYPE) {
+      case IDENTIFIER:
+        if (end - start == 1) return value(token.VALUE);
+        return Expression.element(
+            token.VALUE, value(token.VALUE), evaluate(expr, start + 2, end - 1));
+      case CONSTANT:
+      case LITERAL:
+        return TypedValue.toTypedValue(token);
+      case OPERATOR:
+        if (Token.expect(TokenType.OPERATOR, "length", token))
+          return Expression.length(operand(expr, start + 1, end));
+        Token.expectOrError(TokenType.OPERATOR, "negate", token);
+        return Expression.negate(operand(expr, start + 1, end));
+      case SPECIAL_SYMBOL:
+        Token.expectOrError(TokenType.SPECIAL_SYMBOL, "(", token);
+        return evaluate(expr, start + 1, end - 1);
+      default:
+        throw new UnexpectedTokenException("Unexpected token " + token);
     }
+  }
 
-    // If the expression is only one element, there is nothing to evaluate
-    if (expr.size() == 1) return;
-
-    // We define a custom TypedNumericValue class here. This class has type information for
-    // constants as well as provides the operations that we need while additionally doing proper
-    // type casting from byte to unsigned integer and unsigned integer to byte.
-    TypedNumericValue result;
+  // Get the value of one of a statement's expressions. Frames that run compiled code use the
+  // compiled expression, everything else walks the expression's tokens.
+  private TypedValue operand(Statement statement, int index) {
+    Frame frame = stack[depth - 1];
+    if (frame.code != null)
+      return frame.code.getOperand(statement, index).evaluate(frame.slots, identifiers);
+    return evaluate(statement.operands.get(index));
+  }
 
-    // If the first token is negate, run the second token's negate method to get the result.
-    // If the first token was anything else, we have a different bitwise operator.
-    Token first = expr.get(0);
-    if (Token.expect(TokenType.OPERATOR, "negate", first))
-      result = ((TypedNumericValue) TypedValue.toTypedValue(expr.get(1))).negate();
-    else {
-      // Get the lhs and rhs as TypedNumericValues
-      TypedNumericValue lhs = (TypedNumericValue) TypedValue.toTypedValue(first);
-      TypedNumericValue rhs = (TypedNumericValue) TypedValue.toTypedValue(expr.get(2));
-
-      // Figure out what operation we need to do
-      Token second = expr.get(1);
-      Token.expectOrError(TokenType.OPERATOR, second);
-      switch (second.VALUE) {
-        case "band":
-          result = lhs.bitwiseAnd(rhs);
-          break;
-        case "bor":
-          result = lhs.bitwiseOr(rhs);
-          break;
-        case "bxor":
-          result = lhs.bitwiseXor(rhs);
-          break;
-        case "lshift":
-          result = lhs.leftShift(rhs);
-          break;
-        case "rshift":
-          result = lhs.rightShift(rhs);
-          break;
-        default:
-          throw new UnexpectedTokenException("Unexpected token, " + second);
-      }
+  // Get the current value of a statement's target.
+  private TypedValue target(Statement statement) {
+    Frame frame = stack[depth - 1];
+    if (frame.code != null) {
+      int slot = frame.code.getTargetSlot(statement);
+      if (slot >= 0) return frame.slots[slot];
+      return identifiers.get(statement.target);
     }
-
-    // We have our result, so we can replace the expression with it. (In place mutation)
-    expr.clear();
-    expr.add(result.toToken());
+    return lookup(statement.target);
   }
 
-  // Interpret global statements
-  private void global(List<Token> statement) {
-    log("Processing global");
-    variables(getNextStatement());
+  // Assign a value to a statement's target.
+  private void assign(Statement statement, TypedValue value) {
+    Frame frame = stack[depth - 1];
+    if (frame.code != null) {
+      int slot = frame.code.getTargetSlot(statement);
+      if (slot >= 0) frame.slots[slot] = value;
+      else identifiers.replace(statement.target, value);
+      return;
+    }
+    store(statement.target, value);
   }
 
-  // Interpret variables statements
-  private void variables(List<Token> statement) {
-    log("Processing variables");
-
-    // Continuously grab the next token if its the define keyword
-    List<Token> nextStatement = peekNextStatement();
-    while (nextStatement.get(0).VALUE.equals("define")) {
-      define(getNextStatement());
+  // Check the condition of an if or while statement. A condition without a comparison is true
+  // when its value isn't zero. Numbers are compared by value no matter their types, strings can
+  // only be checked for equality.
+  private boolean test(Statement statement) {
+    TypedValue lhs = operand(statement, 0);
+    if (statement.relation == null) return Expression.numeric(lhs).longValue() != 0;
+
+    TypedValue rhs = operand(statement, 1);
+    if (lhs.TYPE == SCLTypes.STRING || rhs.TYPE == SCLTypes.STRING) {
+      if (lhs.TYPE != rhs.TYPE || !statement.relation.equals("equal"))
+        throw new TypeMismatchException(
+            "Tried comparing " + lhs + " " + statement.relation + " " + rhs);
+      return lhs.getText().equals(rhs.getText());
+    }
 
-      nextStatement = peekNextStatement();
-      if (nextStatement == null) break;
+    int comparison = TypedNumericValue.compare(Expression.numeric(lhs), Expression.numeric(rhs));
+    switch (statement.relation) {
+      case "equal":
+        return comparison == 0;
+      case "less":
+        return comparison < 0;
+      case "greater":
+        return comparison > 0;
+      default:
+        throw new UnexpectedTokenException("Unexpected comparison " + statement.relation);
     }
   }
 
-  // Interpret define statements
-  private void define(List<Token> statement) {
+  // Interpret define statements. A byte file's path is relative to the program declaring it.
+  private void define(SCLProgram program, List<Token> statement) {
     log("Processing define");
     Token identifier = statement.get(1);
 
     if (identifiers.containsKey(identifier.VALUE))
       throw new VariableAlreadyDefinedException("Tried defining " + identifier.VALUE + " twice");
 
-    // Some types are a combination of two tokens (e.g. unsigned integer) so we use this for loop to
-    // make sure that we get the entire type. We also need to make sure we get rid of the trialing
-    // space at the end of the type string we created.
-    String type = "";
-    for (int i = 4; i < statement.size() - 1; i++) type += statement.get(i).VALUE + " ";
-    type = type.substring(0, type.length() - 1);
-
-    // Based on the type we built above, make a TypedValue object. We currently only have three
-    // implemented, so if the type isnt a string or byte, we treat it as an unsigned integer.
+    // Some types are a combination of two tokens (e.g. unsigned integer) so we need every token
+    // between "type" and the end of the statement.
+    String type = Subprogram.typeName(statement, 4, statement.size() - 1);
+    allocate(1, type.startsWith("byte array ") ? SCLByteArray.length(type) : 0);
     TypedValue typedValue;
-    if (type.equals("string")) typedValue = new SCLString(null);
-    else if (type.equals("byte")) typedValue = new SCLByte(null);
-    else typedValue = new SCLUnsignedInteger(null);
+    if (SCLByteFile.isType(type)) {
+      Path path = program.getPath();
+      typedValue = SCLByteFile.ofType(type, path == null ? null : path.getParent());
+    } else typedValue = TypedValue.defaultValue(type);
 
     // Assign the identifier with its type information
     identifiers.put(identifier.VALUE, typedValue);
+    variables.add(identifier.VALUE);
     log("Defining variable " + identifier.VALUE + " with type " + type);
   }
 
-  // Interpret implementations statements Our parser supports multiple subprogram but our
-  // interpreter is only capable of running the subprogram main
-  private void implementations(List<Token> statement) {
-    log("Processing implementations");
-    function(getNextStatement());
-  }
-
-  // Interpret function statements
-  private void function(List<Token> statement) {
+  // Interpret function statements. The subprogram's body lives in the program, here we only
+  // define the identifier that refers to it.
+  private void function(SCLProgram program, List<Token> statement) {
     log("Processing function");
 
     Token identifier = statement.get(1);
-    TypedValue typedValue = new SCLSubprogram(Integer.toString(subprograms.size()));
+    TypedValue typedValue =
+        new SCLSubprogram(program, program.getSubprogramIndex(identifier.VALUE));
 
     identifiers.put(identifier.VALUE, typedValue);
     log("Defining " + identifier + " with " + typedValue);
-
-    variables(getNextStatement());
-    begin(getNextStatement());
-  }
-
-  // Interpret begin statements
-  private void begin(List<Token> statement) {
-    log("Processing begin");
-
-    // Continuously get the next statement if its either of endfun, set, exit, or display
-    List<Token> nextStatement = peekNextStatement();
-    while (Token.expect(TokenType.KEYWORD, "endfun", nextStatement.get(0))
-        || Token.expect(TokenType.KEYWORD, "set", nextStatement.get(0))
-        || Token.expect(TokenType.KEYWORD, "exit", nextStatement.get(0))
-        || Token.expect(TokenType.KEYWORD, "display", nextStatement.get(0))) {
-
-      // If the next statement starts with display, exit, or set, we add it to the subprogramBuilder
-      // array. When we reach the endfun keyword, we add the subprogramBuilder array to the
-      // subprograms array and create a new subprogramBuilder array. We also exit the while loop.
-      nextStatement = getNextStatement();
-      switch (nextStatement.get(0).VALUE) {
-        case "display":
-        case "exit":
-        case "set":
-          subprogramBuilder.add(nextStatement);
-          break;
-        case "endfun":
-          // If we want to allow nested subprograms, we need check the identifier that comes after
-          // endfun. Our parser currently doesn't accept function declarations within begin
-          // statements so this isn't a case we should run into. The first endfun we see should end
-          // the function we are in.
-          subprograms.add(subprogramBuilder);
-          subprogramBuilder = new ArrayList<>();
-          break;
-      }
-
-      nextStatement = peekNextStatement();
-      if (nextStatement == null) break;
-    }
   }
 
   // Interpret set statements
-  private void set(List<Token> statement) {
+  private void set(Statement statement) {
     log("Processing set");
 
-    Token identifier = statement.get(1);
-    TypedValue originalValue = identifiers.get(identifier.VALUE);
+    TypedValue originalValue = target(statement);
     if (originalValue == null)
       throw new VariableNotDefinedException(
-          "Tried to assign value to " + identifier.VALUE + " but it was not defined yet.");
-
-    replaceIdentifiers(statement.subList(3, statement.size() - 1));
-    evaluateExpr(statement.subList(3, statement.size() - 1));
-
-    // This is the value we are setting the identifier to. Based on the type of the identifier and
-    // the value, we may need to emit an error or perform a type conversion.
-    TypedValue newValue = TypedValue.toTypedValue(statement.get(3));
-    switch (originalValue.TYPE) {
-      case STRING:
-        if (newValue.TYPE != originalValue.TYPE)
-          throw new TypeMismatchException("Tried assigning " + newValue + " to " + originalValue);
-        originalValue = new SCLString(newValue.VALUE);
+          "Tried to assign value to " + statement.target + " but it was not defined yet.");
+
+    // Setting an element changes the array (or the file) in place. Every variable has an array of
+    // its own, so nothing else sees the change.
+    if (statement.indexed) {
+      Expression.setElement(
+          statement.target, originalValue, operand(statement, 1), operand(statement, 0));
+      log("Set an element of identifier " + statement.target);
+      return;
+    }
+
+    // This is the value we are setting the identifier to, converted to the identifier's type the
+    // way the TypeChecker worked out when the program was loaded.
+    TypedValue newValue = statement.conversions[0].apply(originalValue, operand(statement, 0));
+
+    // Update the identifier's information
+    assign(statement, newValue);
+
+    log("Set identifier " + statement.target + " to value " + newValue);
+  }
+
+  // Assign a value supplied by an embedder to a declared variable. Strings are bound to string
+  // variables as is, Java numbers keep their value, and everything else is treated as a constant
+  // (e.g. 42 or "0FFh"). Either way the value is converted the same way a set statement would
+  // convert it. A byte file always holds the file it was declared with.
+  private void bind(String name, Object value) {
+    TypedValue originalValue = identifiers.get(name);
+    if (originalValue == null
+        || originalValue.TYPE == SCLTypes.SUBPROGRAM
+        || originalValue.TYPE == SCLTypes.BYTE_FILE
+        || value == null) return;
+
+    if (value instanceof byte[] && originalValue.TYPE == SCLTypes.BYTE_ARRAY) {
+      identifiers.replace(
+          name, Conversion.convert(originalValue, new SCLByteArray((byte[]) value)));
+      return;
+    }
+
+    TypedValue typedValue;
+    if (originalValue.TYPE == SCLTypes.STRING)
+      typedValue = new SCLString("\"" + value + "\"");
+    else if (value instanceof Number) typedValue = SCLLong.of(((Number) value).longValue());
+    else typedValue = TypedValue.toTypedValue(new Token(TokenType.CONSTANT, value.toString()));
+
+    identifiers.replace(name, Conversion.convert(originalValue, typedValue));
+    log("Bound identifier " + name + " to value " + identifiers.get(name));
+  }
+
+  // Get and set the value of a global, for RecordStream to give the program each record.
+  TypedValue getGlobal(String name) {
+    return identifiers.get(name);
+  }
+
+  void setGlobal(String name, TypedValue value) {
+    identifiers.put(name, value);
+  }
+
+  // Interpret display statements. The line is also collected in line when it isn't null, for a
+  // listener.
+  private void display(Statement statement, StringBuilder line) {
+    log("Processing display");
+    DisplayEvent event = null;
+    if (FlightRecorder.isInitialized()) {
+      event = new DisplayEvent();
+      event.begin();
+    }
+    long startBytes = displayBytes;
+
+    for (int i = 0; i < statement.operands.size(); i++) {
+      TypedValue value = operand(statement, i);
+      // We doesn't currently handle escape sequences. If we were going to, we would need to search
+      // for the next backslash in the string and replace it with the character it is suppose to
+      // represent.
+      String text = value.getText();
+      if (value.TYPE == SCLTypes.STRING) text = text.substring(1, text.length() - 1);
+      else if (value.TYPE == SCLTypes.BYTE_ARRAY) text = ((SCLByteArray) value).display();
+      int bytes = utf8Length(text);
+      if (displayBytes + bytes > maxDisplayBytes) overOutputLimit();
+      out.print(text);
+      if (line != null) line.append(text);
+      displayBytes += bytes;
+    }
+
+    if (displayBytes + System.lineSeparator().length() > maxDisplayBytes) overOutputLimit();
+    out.println();
+    displayBytes += System.lineSeparator().length();
+
+    if (event != null && event.shouldCommit()) {
+      event.subprogram = stack[depth - 1].subprogram.getName();
+      event.bytes = displayBytes - startBytes;
+      event.commit();
+    }
+  }
+
+  private void overOutputLimit() {
+    out.flush();
+    throw new OutputLimitException(
+        "Tried to display more than " + maxDisplayBytes + " bytes, the limit");
+  }
+
+  // The number of bytes a string takes up in UTF-8, without encoding it.
+  private static int utf8Length(String text) {
+    int length = text.length();
+    for (int i = 0; i < text.length(); i++) {
+      char character = text.charAt(i);
+      if (character >= 0x800) length += Character.isSurrogate(character) ? 1 : 2;
+      else if (character >= 0x80) length++;
+    }
+    return length;
+  }
+
+  // Execute statements until the call stack is empty. Each iteration runs one statement of the
+  // subprogram on top of the stack. Calls push a frame and returns pop one, so the Java stack stays
+  // the same depth no matter how deep the SCL program recurses.
+  private void run() {
+    while (depth > 0) {
+      Frame frame = stack[depth - 1];
+      List<Statement> statements = frame.subprogram.getStatements();
+
+      // Running off the end of a subprogram returns without a value.
+      if (frame.pc == statements.size()) {
+        returnFromSubprogram(null);
+        continue;
+      }
+
+      // The only check a frame without listeners makes for them.
+      if (frame.hooks == null) step(frame, statements, statements.get(frame.pc++));
+      else hooked(frame, statements, statements.get(frame.pc++));
+      statementsExecuted++;
+    }
+  }
+
+  // Same as run() but records the time of every statement and follows calls into the profiler's
+  // calling context tree.
+  private void runProfiled() {
+    while (depth > 0) {
+      Frame frame = stack[depth - 1];
+      List<Statement> statements = frame.subprogram.getStatements();
+
+      if (frame.pc == statements.size()) {
+        returnFromSubprogram(null);
+        continue;
+      }
+
+      Statement statement = statements.get(frame.pc++);
+      Profiler.Node node = frame.node;
+      int callerDepth = depth;
+      long start = System.nanoTime();
+      if (frame.hooks == null) step(frame, statements, statement);
+      else hooked(frame, statements, statement);
+      node.record(statement.id, System.nanoTime() - start);
+      statementsExecuted++;
+
+      // The statement called a subprogram.
+      if (depth > callerDepth) {
+        Frame callee = stack[depth - 1];
+        callee.node = node.enter(callee.subprogram);
+      }
+    }
+  }
+
+  // Execute one statement of the frame on top of the stack.
+  private void step(Frame frame, List<Statement> statements, Statement statement) {
+    // The optimizer found that the statement's result is never used. All that is left of it is
+    // checking the variables it would have failed on.
+    if (frame.code != null && frame.code.isDead(statement)) {
+      frame.code.guard(statement, frame.slots, identifiers);
+      return;
+    }
+
+    switch (statement.kind) {
+      case SET:
+        set(statement);
+        break;
+      case CALL:
+        call(statement);
         break;
-      case BYTE:
-        if (newValue.TYPE != originalValue.TYPE)
-          originalValue = ((SCLUnsignedInteger) newValue).toSCLByte();
-        else originalValue = new SCLByte(newValue.VALUE);
+      case DISPLAY:
+        display(statement, null);
         break;
-      case UNSIGNED_INTEGER:
-        if (newValue.TYPE != originalValue.TYPE)
-          originalValue = ((SCLByte) newValue).toSCLUnsignedInteger();
-        else originalValue = new SCLUnsignedInteger(newValue.VALUE);
+      case RETURN:
+        _return(statement);
+        break;
+      case EXIT:
+        // exit ends the whole program, not only the subprogram it is in. The main loop stops once
+        // the stack is empty.
+        while (depth > 0) pop();
+        exited = true;
+        break;
+      case IF:
+      case WHILE:
+        if (!test(statement)) frame.pc = statement.jump;
+        break;
+      case ELSE:
+        // The end of the then block skips over the else block.
+        frame.pc = statement.jump;
+        break;
+      case ENDIF:
+        break;
+      case ENDWHILE:
+        // The condition is tested again here instead of going back to the while statement, so
+        // every iteration after the first is a single jump.
+        if (test(statements.get(statement.jump - 1))) backEdge(frame, statement);
+        break;
+      case FOR:
+        if (!startFor(statement)) frame.pc = statement.jump;
+        break;
+      case ENDFOR:
+        if (nextFor(statements.get(statement.jump - 1))) backEdge(frame, statement);
         break;
       default:
-        throw new NotImplementedException();
+        throw new UnexpectedTokenException("Unxpected statement, " + statement);
     }
+  }
 
-    // Update the identifier's information
-    identifiers.replace(identifier.VALUE, originalValue);
+  // Execute a statement of a frame with listeners, telling the statement's listener (if it has one)
+  // what it does.
+  private void hooked(Frame frame, List<Statement> statements, Statement statement) {
+    ExecutionListener listener = frame.hooks[statement.id];
+    if (listener == null) {
+      step(frame, statements, statement);
+      return;
+    }
+
+    listener.beforeStatement(frame.subprogram.getName(), statement.id);
+    if (statement.kind == Statement.Kind.DISPLAY) {
+      StringBuilder line = new StringBuilder();
+      display(statement, line);
+      listener.onDisplay(line.toString());
+      return;
+    }
+
+    int pc = frame.pc;
+    step(frame, statements, statement);
+    switch (statement.kind) {
+      case SET:
+      case FOR:
+        listener.afterAssignment(statement.target, target(statement));
+        break;
+      case ENDFOR:
+        // The counter only changes when the loop goes around again.
+        if (frame.pc != pc) {
+          Statement header = statements.get(statement.jump - 1);
+          listener.afterAssignment(header.target, target(header));
+        }
+        break;
+      default:
+        // A call's target is assigned when the call returns, see returnFromSubprogram().
+        break;
+    }
+  }
 
-    log("Set identifier " + identifier.VALUE + " to value " + originalValue);
+  // Go back to the start of a loop's body and count that we did. A frame that is still
+  // interpreting switches to the compiled form here as soon as there is one, so a long running
+  // loop doesn't have to wait for its subprogram to be called again.
+  private void backEdge(Frame frame, Statement statement) {
+    Subprogram subprogram = frame.subprogram;
+    subprogram.countBackEdge(statement.loop);
+    frame.pc = statement.jump;
+    if (statementsExecuted >= nextCheck) checkLimits();
+
+    // Frames with listeners stay interpreted.
+    if (frame.code == null
+        && frame.hooks == null
+        && (frame.code = subprogram.getCompiled()) == null) TieredExecution.warm(subprogram);
   }
 
-  // Interpret display statements
-  private void display(List<Token> statement) {
-    log("Processing display");
-    // Remove the end of statement token
-    statement.remove(statement.size() - 1);
-
-    // Remove the display keyword
-    statement.remove(0);
-
-    // Replace all identifiers
-    replaceIdentifiers(statement);
-
-    // This current method currently doesn't allow us to evaluate expressions before printing them
-    // if the expression is within the display statement. To do this, we would need to isolate each
-    // expression and send it to evaluateExpr(). The user would need to put the expression into a
-    // variable if they wish to display the expression.
-    for (Token token : statement) {
-      switch (token.TYPE) {
-        case LITERAL:
-          // We doesn't currently handle escape sequences. If we were going to, we would need to
-          // search for the next backslash in the string and replace it with the character it is
-          // suppose to represent.
-          System.out.print(token.VALUE.substring(1, token.VALUE.length() - 1));
-          break;
-        case CONSTANT:
-          System.out.print(token.VALUE);
-          break;
-        case SPECIAL_SYMBOL:
-          Token.expectOrError(TokenType.SPECIAL_SYMBOL, ",", token);
-          continue;
-        default:
-          throw new UnexpectedTokenException("Unxpected token, " + token);
-      }
+  // Give a for loop's variable its first value. Returns false if the loop shouldn't run at all
+  // because the first value is already past the last one.
+  private boolean startFor(Statement statement) {
+    TypedValue counter = target(statement);
+    if (counter == null)
+      throw new VariableNotDefinedException(
+          "Tried to count with " + statement.target + " but it was not defined yet.");
+
+    TypedValue first = statement.conversions[0].apply(counter, operand(statement, 0));
+    assign(statement, first);
+    TypedNumericValue last = Expression.numeric(operand(statement, 1));
+    return TypedNumericValue.compare(Expression.numeric(first), last) <= 0;
+  }
+
+  // Count a for loop's variable up by one. Returns false once the variable has reached the last
+  // value. We check before counting up so that a loop up to the largest value a type can hold
+  // doesn't wrap around and run forever.
+  private boolean nextFor(Statement statement) {
+    TypedNumericValue counter = Expression.numeric(target(statement));
+    TypedNumericValue last = Expression.numeric(operand(statement, 1));
+    if (TypedNumericValue.compare(counter, last) >= 0) return false;
+
+    assign(statement, TypedNumericValue.of(counter.TYPE, counter.longValue() + 1));
+    return true;
+  }
+
+  // Interpret call statements (and calls on the right hand side of set statements). The arguments
+  // are evaluated in the caller's frame, converted to the types of the parameters, and placed in
+  // the first slots of the new frame. The new frame starts running on the next iteration of run().
+  private void call(Statement statement) {
+    log("Processing call");
+    TypedValue callee = lookup(statement.callee);
+    if (callee == null || callee.TYPE != SCLTypes.SUBPROGRAM)
+      throw new NotASubprogramException(
+          "Tried to call " + statement.callee + " but it is not a subprogram");
+
+    Subprogram subprogram = ((SCLSubprogram) callee).getSubprogram();
+    List<List<Token>> arguments = statement.operands;
+    if (arguments.size() != subprogram.getParameterCount())
+      throw new UnexpectedNumberOfArgumentsException(
+          "Expecting "
+              + subprogram.getParameterCount()
+              + " arguments for "
+              + statement.callee
+              + " but got "
+              + arguments.size());
+
+    // The new frame isn't on the stack until its arguments are in place, so the arguments are
+    // evaluated with the caller's variables.
+    Frame frame = nextFrame(subprogram, statement.target);
+    TypedValue[] parameters = subprogram.getInitialSlots();
+    for (int i = 0; i < arguments.size(); i++)
+      frame.slots[i] = statement.conversions[i].apply(parameters[i], operand(statement, i));
+    frame.returnConversion = statement.result;
+    depth++;
+    if (listener != null) listener.enterSubprogram(subprogram.getName(), depth);
+
+    log("Called " + statement.callee);
+  }
+
+  // Interpret return statements
+  private void _return(Statement statement) {
+    log("Processing return");
+    if (statement.operands.isEmpty()) {
+      returnFromSubprogram(null);
+      return;
     }
 
-    System.out.println();
+    Subprogram subprogram = stack[depth - 1].subprogram;
+    if (subprogram.getReturnType() == null)
+      throw new TypeMismatchException(
+          "Tried returning a value from " + subprogram.getName() + " but it has no return type");
+
+    returnFromSubprogram(
+        statement.conversions[0].apply(subprogram.getReturnValue(), operand(statement, 0)));
   }
 
-  // Call subprograms. The index we take in is the subprogram's position in the subprograms array.
-  private void callSubprogram(int subprogram) {
-    log("Processing subprogram call");
-    for (List<Token> statement : subprograms.get(subprogram)) {
-      Token firstToken = statement.get(0);
-      switch (firstToken.VALUE) {
-        case "set":
-          set(statement);
-          break;
-        case "display":
-          display(statement);
-          break;
-        case "exit":
-          return;
-        default:
-          throw new UnexpectedTokenException("Unxpected token, " + firstToken);
+  // Pop the running subprogram and give the value it returned to the caller, if the caller wants
+  // one.
+  private void returnFromSubprogram(TypedValue value) {
+    Frame frame = stack[depth - 1];
+    String name = frame.subprogram.getName();
+    String returnTarget = frame.returnTarget;
+    Conversion conversion = frame.returnConversion;
+    pop();
+
+    if (returnTarget == null) return;
+    if (value == null)
+      throw new MissingReturnValueException(
+          "Tried to assign the value of " + name + " to " + returnTarget + " but it returned none");
+
+    store(returnTarget, conversion.apply(lookup(returnTarget), value));
+    log("Set identifier " + returnTarget + " to value " + value);
+
+    // The call statement is the caller's last one.
+    Frame caller = stack[depth - 1];
+    if (caller.hooks != null && caller.hooks[caller.pc - 1] != null)
+      caller.hooks[caller.pc - 1].afterAssignment(returnTarget, lookup(returnTarget));
+  }
+
+  // Get the frame for a call to the given subprogram ready. Every slot starts with its initial
+  // value. The frame is on top of the stack once depth is incremented.
+  private Frame nextFrame(Subprogram subprogram, String returnTarget) {
+    if (depth == maxCallDepth)
+      throw new CallStackOverflowException(
+          "Tried calling " + subprogram.getName() + " with " + depth + " calls in progress");
+    if (statementsExecuted >= nextCheck) checkLimits();
+    allocate(subprogram.getFrameSize(), subprogram.getArrayBytes());
+
+    if (depth == stack.length) stack = Arrays.copyOf(stack, Math.min(depth * 2, maxCallDepth));
+    Frame frame = stack[depth];
+    if (frame == null) frame = stack[depth] = new Frame();
+
+    int size = subprogram.getFrameSize();
+    if (frame.slots.length < size) frame.slots = new TypedValue[size];
+    System.arraycopy(subprogram.getInitialSlots(), 0, frame.slots, 0, size);
+    for (int slot : subprogram.getArraySlots())
+      frame.slots[slot] = ((SCLByteArray) frame.slots[slot]).copy();
+
+    frame.subprogram = subprogram;
+    frame.pc = 0;
+    frame.returnTarget = returnTarget;
+
+    // Calls always start in the best tier the subprogram has, unless it has listeners.
+    frame.hooks = hooks(subprogram);
+    frame.code = frame.hooks == null ? subprogram.getCompiled() : null;
+    if (frame.code == null) TieredExecution.warm(subprogram);
+
+    if (FlightRecorder.isInitialized()) {
+      CallEvent event = new CallEvent();
+      if (event.isEnabled()) {
+        event.begin();
+        event.subprogram = subprogram.getName();
+        event.depth = depth + 1;
+        event.startStatements = statementsExecuted;
+        frame.event = event;
       }
     }
+    return frame;
   }
 
-  public static void main(String[] args) throws FileNotFoundException {
-    if (args.length != 1) {
-      System.err.println("Usage: java SCLScanner <filename>");
+  // Pop the frame on top of the stack. The frame is kept for the next call at this depth, but we
+  // clear its values so they can be garbage collected.
+  private void pop() {
+    Frame frame = stack[--depth];
+    liveValues -= frame.subprogram.getFrameSize();
+    liveBytes -= frame.subprogram.getArrayBytes();
+    if (listener != null) listener.exitSubprogram(frame.subprogram.getName(), depth + 1);
+    if (frame.event != null) {
+      frame.event.statements = statementsExecuted - frame.event.startStatements;
+      frame.event.commit();
+      frame.event = null;
+    }
+    Arrays.fill(frame.slots, null);
+    frame.subprogram = null;
+    frame.returnTarget = null;
+    frame.returnConversion = null;
+    frame.code = null;
+    frame.hooks = null;
+  }
+
+  public static void main(String[] args) throws IOException, InterruptedException {
+    // --batch runs many programs in this JVM.
+    if (args.length > 0 && args[0].equals("--batch")) {
+      System.exit(BatchRunner.batch(Arrays.copyOfRange(args, 1, args.length)));
+    }
+
+    // --daemon, --client, and --stop talk to a long running interpreter over a Unix domain socket.
+    // Each of them can be given --socket <path> to use a socket other than the default one.
+    if (args.length > 0
+        && (args[0].equals("--daemon") || args[0].equals("--client") || args[0].equals("--stop"))) {
+      String mode = args[0];
+      int next = 1;
+      Path socket = SCLDaemon.defaultSocket();
+      if (args.length > 2 && args[1].equals("--socket")) {
+        socket = Path.of(args[2]);
+        next = 3;
+      }
+
+      if (mode.equals("--daemon")) new SCLDaemon(socket).serve();
+      else if (mode.equals("--stop")) System.exit(SCLDaemon.stop(socket));
+      else if (args.length <= next) System.err.println(USAGE);
+      else
+        System.exit(
+            SCLDaemon.client(
+                socket, args[next], Arrays.copyOfRange(args, next + 1, args.length)));
+      return;
+    }
+
+    // --tier-threshold and --tier-log control when subprograms get compiled and show when they do.
+    // --profile writes a report of where the program spent its time when it exits. --dump-ir
+    // prints the IR of every subprogram to stderr before and after each optimization pass, and
+    // --no-optimize has tier 1 compile subprograms without running the passes. --cache replays
+    // the output of a program that was already run (see ResultCache). --stream runs main once for
+    // every record of the input, read from stdin or the --input file as lines of text or, with
+    // --binary, as fixed size records (see RecordStream). --max-statements, --time-limit,
+    // --max-output, --max-values, and --max-memory limit what the program can use. --watch runs
+    // the program again every time it (or a module it imports) is saved, see Watcher.
+    int next = 0;
+    boolean watch = false;
+    boolean profile = false;
+    boolean dumpIr = false;
+    boolean cache = false;
+    List<String> stream = null;
+    RecordStream.Format format = RecordStream.Format.TEXT;
+    Path input = null;
+    Map<String, Long> limits = new HashMap<>();
+    while (next < args.length
+        && (args[next].startsWith("--tier-")
+            || LIMITS.contains(args[next])
+            || args[next].equals("--watch")
+            || args[next].equals("--profile")
+            || args[next].equals("--dump-ir")
+            || args[next].equals("--no-optimize")
+            || args[next].equals("--cache")
+            || args[next].equals("--stream")
+            || args[next].equals("--binary")
+            || args[next].equals("--input"))) {
+      if (args[next].equals("--profile")) profile = true;
+      else if (args[next].equals("--cache")) cache = true;
+      else if (args[next].equals("--dump-ir")) dumpIr = true;
+      else if (args[next].equals("--no-optimize")) PassManager.setEnabled(false);
+      else if (args[next].equals("--tier-log")) TieredExecution.setLogging(true);
+      else if (args[next].equals("--tier-threshold") && next + 1 < args.length)
+        TieredExecution.setThreshold(Integer.parseInt(args[++next]));
+      else if (args[next].equals("--stream") && next + 1 < args.length)
+        stream = Arrays.asList(args[++next].split(","));
+      else if (args[next].equals("--binary")) format = RecordStream.Format.BINARY;
+      else if (args[next].equals("--input") && next + 1 < args.length)
+        input = Path.of(args[++next]);
+      else if (LIMITS.contains(args[next]) && next + 1 < args.length)
+        limits.put(args[next], Long.parseLong(args[++next]));
+      else if (args[next].equals("--watch")) watch = true;
+      else break;
+      next++;
+    }
+
+    if (args.length - next != 1) {
+      System.err.println(USAGE);
       return;
     }
 
-    String filename = args[0];
+    String filename = args[next];
     File file = new File(filename);
 
+    // Watching runs the program over and over, so there is no single run to profile, stream into,
+    // or cache.
+    if (watch) {
+      if (profile || stream != null || cache) System.err.println(USAGE);
+      else Watcher.watch(file.toPath(), interpreter -> limit(interpreter, limits));
+      return;
+    }
+
+    // Profiling and dumping the IR are about running the program, so those always run it. A
+    // streamed program reads input, so its output can't be replayed, and a limited one might not
+    // be allowed to produce the output that was cached, whether its limits came from the command
+    // line or the system properties.
+    if (cache
+        && !profile
+        && !dumpIr
+        && stream == null
+        && limits.isEmpty()
+        && !limitedByDefault()) {
+      int status = ResultCache.open().run(file);
+      if (status != 0) System.exit(status);
+      return;
+    }
+
     Interpreter interpreter = new Interpreter(file);
-    interpreter.execute();
+    limit(interpreter, limits);
+    if (dumpIr) PassManager.dump(interpreter.program, System.err);
+    if (!profile) {
+      if (stream != null) RecordStream.run(interpreter, stream, format, input);
+      else interpreter.execute();
+      return;
+    }
+
+    Profiler profiler = new Profiler();
+    interpreter.setProfiler(profiler);
+    try {
+      if (stream != null) RecordStream.run(interpreter, stream, format, input);
+      else interpreter.execute();
+    } finally {
+      interpreter.out.flush();
+      writeProfile(profiler, file);
+    }
+  }
+
+  // Give an interpreter the limits from the command line, keyed by their flags.
+  private static void limit(Interpreter interpreter, Map<String, Long> limits) {
+    for (Map.Entry<String, Long> limit : limits.entrySet()) {
+      long value = limit.getValue();
+      switch (limit.getKey()) {
+        case "--max-statements":
+          interpreter.setMaxStatements(value);
+          break;
+        case "--time-limit":
+          interpreter.setTimeLimit(Duration.ofMillis(value));
+          break;
+        case "--max-output":
+          interpreter.setMaxDisplayBytes(value);
+          break;
+        case "--max-values":
+          interpreter.setMaxLiveValues(value);
+          break;
+        default:
+          interpreter.setMaxLiveBytes(value);
+          break;
+      }
+    }
+  }
+
+  // Write the profile next to where we were run, named after the program: <name>.profile.txt for
+  // the report and <name>.collapsed for flame graphs.
+  private static void writeProfile(Profiler profiler, File file) throws IOException {
+    String name = file.getName();
+    if (name.endsWith(".scl")) name = name.substring(0, name.length() - ".scl".length());
+
+    Path report = Path.of(name + ".profile.txt");
+    Path collapsed = Path.of(name + ".collapsed");
+    try (Writer writer = Files.newBufferedWriter(report)) {
+      profiler.writeReport(writer);
+    }
+    try (Writer writer = Files.newBufferedWriter(collapsed)) {
+      profiler.writeCollapsed(writer);
+    }
+    System.err.println("Profile written to " + report + " and " + collapsed);
   }
 }
@@ -1,5 +1,7 @@
 package io.github.yemouu.SCLInterpreter;
 
+import java.util.List;
+
 class MissingMainException extends RuntimeException {
   public MissingMainException(String errorMessage) {
     super(errorMessage);
@@ -75,3 +77,81 @@ class NotImplementedException extends RuntimeException {
 class StatementNotFoundException extends RuntimeException {
   public StatementNotFoundException() {}
 }
+
+class MissingReturnValueException extends RuntimeException {
+  public MissingReturnValueException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class CallStackOverflowException extends RuntimeException {
+  public CallStackOverflowException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class IndexOutOfRangeException extends RuntimeException {
+  public IndexOutOfRangeException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+// A run that went over one of the limits an Interpreter was given. Each limit has its own kind, so
+// an embedder can tell which one it was.
+class ResourceLimitException extends RuntimeException {
+  public ResourceLimitException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class StatementLimitException extends ResourceLimitException {
+  public StatementLimitException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class TimeLimitException extends ResourceLimitException {
+  public TimeLimitException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class OutputLimitException extends ResourceLimitException {
+  public OutputLimitException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+class MemoryLimitException extends ResourceLimitException {
+  public MemoryLimitException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+// A byte file (see SCLByteFile) that couldn't be opened, or a write to one opened for reading only.
+class FileAccessException extends RuntimeException {
+  public FileAccessException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+// A record in a stream (see RecordStream) that doesn't hold the values the program streams.
+class RecordFormatException extends RuntimeException {
+  public RecordFormatException(String errorMessage) {
+    super(errorMessage);
+  }
+}
+
+// Every type error TypeChecker found in a program, one per line of the message.
+class TypeCheckException extends TypeMismatchException {
+  private final List<String> errors;
+
+  public TypeCheckException(List<String> errors) {
+    super(String.join("\n", errors));
+    this.errors = List.copyOf(errors);
+  }
+
+  public List<String> getErrors() {
+    return errors;
+  }
+}
@@ -0,0 +1,207 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// Live numbers about every program this JVM scans, parses, and executes, published as a platform
+// MBean named io.github.yemouu.SCLInterpreter:type=InterpreterMetrics so that jconsole, VisualVM,
+// or any other JMX client can watch them.
+//
+// Many programs can run at the same time (batch mode, the daemon, the script engine), so every
+// counter is a LongAdder. Threads that add to the same counter at the same time each add to their
+// own cell instead of fighting over a single value. Statements and display bytes are counted in a
+// plain field of the Interpreter while it runs and added here once when it is done, so the only
+// counting on the hot path is one add per bitwise operation.
+public final class InterpreterMetrics implements InterpreterMetricsMXBean {
+  static final String NAME = "io.github.yemouu.SCLInterpreter:type=InterpreterMetrics";
+
+  // The operators counted by operation(). The indices match the constants below.
+  private static final String[] OPERATORS = {"band", "bor", "bxor", "lshift", "rshift", "negate"};
+  static final int BAND = 0;
+  static final int BOR = 1;
+  static final int BXOR = 2;
+  static final int LSHIFT = 3;
+  static final int RSHIFT = 4;
+  static final int NEGATE = 5;
+
+  static final InterpreterMetrics INSTANCE = new InterpreterMetrics();
+
+  static {
+    // Starting the platform MBean server takes longer than running a small program, so we
+    // register on a daemon thread instead of making every run wait for it. Registration can fail
+    // when the platform server isn't available or an MBean with our name is already registered
+    // (by another class loader). The counters still work, they just can't be seen over JMX, which
+    // is no reason to stop a program from running.
+    Thread registration =
+        new Thread(
+            () -> {
+              try {
+                ManagementFactory.getPlatformMBeanServer()
+                    .registerMBean(INSTANCE, new ObjectName(NAME));
+              } catch (JMException | SecurityException error) {
+              }
+            },
+            "scl-metrics");
+    registration.setDaemon(true);
+    registration.start();
+  }
+
+  private final Phase scan = new Phase();
+  private final Phase parse = new Phase();
+  private final Phase execute = new Phase();
+
+  private final LongAdder tokens = new LongAdder();
+  private volatile double lastTokensPerSecond;
+  private final LongAdder statements = new LongAdder();
+  private final LongAdder[] operations = new LongAdder[OPERATORS.length];
+  private final LongAdder displayBytes = new LongAdder();
+  private final Map<String, LongAdder> exceptions = new ConcurrentHashMap<>();
+
+  // The number of times something happened, how long it took altogether, and how long it took
+  // the last time.
+  private static final class Phase {
+    final LongAdder count = new LongAdder();
+    final LongAdder nanos = new LongAdder();
+    volatile long last;
+
+    void record(long elapsed) {
+      count.increment();
+      nanos.add(elapsed);
+      last = elapsed;
+    }
+
+    void reset() {
+      count.reset();
+      nanos.reset();
+      last = 0;
+    }
+  }
+
+  private InterpreterMetrics() {
+    for (int i = 0; i < operations.length; i++) operations[i] = new LongAdder();
+  }
+
+  // Called by the scanner once it has turned a program into tokens.
+  static void scanned(long elapsed, int tokenCount) {
+    INSTANCE.scan.record(elapsed);
+    INSTANCE.tokens.add(tokenCount);
+    INSTANCE.lastTokensPerSecond = perSecond(tokenCount, elapsed);
+  }
+
+  static void parsed(long elapsed) {
+    INSTANCE.parse.record(elapsed);
+  }
+
+  // Called by the interpreter once execute() is done, whether the program finished or failed.
+  static void executed(long elapsed, long statementCount, long displayByteCount) {
+    INSTANCE.execute.record(elapsed);
+    INSTANCE.statements.add(statementCount);
+    INSTANCE.displayBytes.add(displayByteCount);
+  }
+
+  // Called every time a bitwise operator is applied to a value.
+  static void operation(int operator) {
+    INSTANCE.operations[operator].increment();
+  }
+
+  // Called with every exception that stops a scan, a parse, or an execution.
+  static void exception(Throwable error) {
+    INSTANCE
+        .exceptions
+        .computeIfAbsent(error.getClass().getSimpleName(), key -> new LongAdder())
+        .increment();
+  }
+
+  private static double perSecond(long count, long nanos) {
+    return nanos == 0 ? 0 : count * 1e9 / nanos;
+  }
+
+  private static Map<String, Long> snapshot(Map<String, LongAdder> counters) {
+    Map<String, Long> snapshot = new TreeMap<>();
+    counters.forEach((key, counter) -> snapshot.put(key, counter.sum()));
+    return snapshot;
+  }
+
+  public long getScanCount() {
+    return scan.count.sum();
+  }
+
+  public long getScanTimeNanos() {
+    return scan.nanos.sum();
+  }
+
+  public long getLastScanTimeNanos() {
+    return scan.last;
+  }
+
+  public long getParseCount() {
+    return parse.count.sum();
+  }
+
+  public long getParseTimeNanos() {
+    return parse.nanos.sum();
+  }
+
+  public long getLastParseTimeNanos() {
+    return parse.last;
+  }
+
+  public long getExecuteCount() {
+    return execute.count.sum();
+  }
+
+  public long getExecuteTimeNanos() {
+    return execute.nanos.sum();
+  }
+
+  public long getLastExecuteTimeNanos() {
+    return execute.last;
+  }
+
+  public long getTokensScanned() {
+    return tokens.sum();
+  }
+
+  public double getTokensPerSecond() {
+    return perSecond(tokens.sum(), scan.nanos.sum());
+  }
+
+  public double getLastTokensPerSecond() {
+    return lastTokensPerSecond;
+  }
+
+  public long getStatementsExecuted() {
+    return statements.sum();
+  }
+
+  public Map<String, Long> getBitwiseOperations() {
+    Map<String, Long> counts = new TreeMap<>();
+    for (int i = 0; i < OPERATORS.length; i++) counts.put(OPERATORS[i], operations[i].sum());
+    return counts;
+  }
+
+  public long getDisplayBytesWritten() {
+    return displayBytes.sum();
+  }
+
+  public Map<String, Long> getExceptions() {
+    return snapshot(exceptions);
+  }
+
+  public void reset() {
+    scan.reset();
+    parse.reset();
+    execute.reset();
+    tokens.reset();
+    lastTokensPerSecond = 0;
+    statements.reset();
+    for (LongAdder counter : operations) counter.reset();
+    displayBytes.reset();
+    exceptions.clear();
+  }
+}
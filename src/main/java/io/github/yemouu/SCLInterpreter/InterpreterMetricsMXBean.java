@@ -0,0 +1,42 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.Map;
+
+// The management interface of InterpreterMetrics. Every time is in nanoseconds and every count is
+// the total since the JVM started (or since the last call to reset()), except for the Last*
+// attributes which describe the most recent scan, parse, or execution on any thread.
+public interface InterpreterMetricsMXBean {
+  long getScanCount();
+
+  long getScanTimeNanos();
+
+  long getLastScanTimeNanos();
+
+  long getParseCount();
+
+  long getParseTimeNanos();
+
+  long getLastParseTimeNanos();
+
+  long getExecuteCount();
+
+  long getExecuteTimeNanos();
+
+  long getLastExecuteTimeNanos();
+
+  long getTokensScanned();
+
+  double getTokensPerSecond();
+
+  double getLastTokensPerSecond();
+
+  long getStatementsExecuted();
+
+  Map<String, Long> getBitwiseOperations();
+
+  long getDisplayBytesWritten();
+
+  Map<String, Long> getExceptions();
+
+  void reset();
+}
@@ -0,0 +1,148 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Finds, parses, and caches the files that programs import. The cache is shared by the whole
+// process and keyed by each file's canonical path, so every program that imports the same module
+// gets the same SCLProgram for it. A cached program is reused until the file (or any module it
+// imports) is modified.
+//
+// Imports are resolved against the directory of the importing file (or the current directory for
+// programs that came from memory) and then each directory on the search path. The search path is
+// taken from the scl.path system property or the SCL_PATH environment variable.
+final class ModuleCache {
+  private static final Map<Path, Entry> entries = new ConcurrentHashMap<>();
+
+  private static class Entry {
+    final FileTime lastModified;
+    final SCLProgram program;
+
+    Entry(FileTime lastModified, SCLProgram program) {
+      this.lastModified = lastModified;
+      this.program = program;
+    }
+  }
+
+  private ModuleCache() {}
+
+  // Get the parsed program for a file, parsing it only if we don't have a current copy.
+  static SCLProgram load(Path file) throws IOException {
+    return load(file, List.of());
+  }
+
+  // Same as above, but the import chain is every file being loaded on the way to this one. If the
+  // file is already in the chain, it (indirectly) imports itself and loading it would never end.
+  static SCLProgram load(Path file, List<Path> importChain) throws IOException {
+    Path canonical = file.toRealPath();
+    if (importChain.contains(canonical)) {
+      StringBuilder cycle = new StringBuilder();
+      for (Path link : importChain.subList(importChain.indexOf(canonical), importChain.size()))
+        cycle.append(link).append(" -> ");
+      throw new ImportCycleException("Import cycle: " + cycle + canonical);
+    }
+
+    Entry entry = entries.get(canonical);
+    if (entry != null && isCurrent(entry)) return entry.program;
+
+    // We only cache programs once they are completely loaded. Two threads that want the same
+    // module at the same time may both parse it, but only the first copy is kept and both of them
+    // end up using it.
+    FileTime lastModified = Files.getLastModifiedTime(canonical);
+    Entry loaded = new Entry(lastModified, new SCLProgram(canonical, importChain));
+    return entries
+        .merge(
+            canonical,
+            loaded,
+            (cached, fresh) -> cached.lastModified.equals(fresh.lastModified) ? cached : fresh)
+        .program;
+  }
+
+  // Check that neither the cached file nor any of the modules it imports have changed. A module
+  // that was reloaded since the entry was cached also makes the entry stale, because the entry
+  // still refers to the old copy.
+  private static boolean isCurrent(Entry entry) throws IOException {
+    Path path = entry.program.getPath();
+    if (!Files.exists(path) || !Files.getLastModifiedTime(path).equals(entry.lastModified))
+      return false;
+
+    for (SCLProgram module : entry.program.getModules()) {
+      Entry moduleEntry = entries.get(module.getPath());
+      if (moduleEntry == null || moduleEntry.program != module || !isCurrent(moduleEntry))
+        return false;
+    }
+
+    return true;
+  }
+
+  // Find the file for an import. Returns null if it isn't in any of the places we look.
+  static Path resolve(String name, Path directory) {
+    List<Path> candidates = new ArrayList<>();
+    candidates.add(directory == null ? Path.of(name) : directory.resolve(name));
+
+    String searchPath = System.getProperty("scl.path", System.getenv("SCL_PATH"));
+    if (searchPath != null)
+      for (String entry : searchPath.split(File.pathSeparator))
+        if (!entry.isEmpty()) candidates.add(Path.of(entry).resolve(name));
+
+    for (Path candidate : candidates) if (Files.isRegularFile(candidate)) return candidate;
+    return null;
+  }
+
+  // Load every module a program imports. Modules don't depend on each other, so when there is more
+  // than one we load them at the same time. The result maps the name used in each import
+  // statement to its program, leaving out the ones that couldn't be found.
+  static Map<String, SCLProgram> loadAll(
+      List<String> names, Path directory, List<Path> importChain) {
+    Map<String, Path> files = new LinkedHashMap<>();
+    for (String name : names) {
+      Path file = resolve(name, directory);
+      if (file != null) files.put(name, file);
+    }
+
+    // A single module is loaded on this thread, there is nothing to load alongside it.
+    Map<String, SCLProgram> modules = new LinkedHashMap<>();
+    if (files.size() == 1) {
+      for (Map.Entry<String, Path> file : files.entrySet())
+        modules.put(file.getKey(), loadUnchecked(file.getValue(), importChain));
+      return modules;
+    }
+
+    Map<String, CompletableFuture<SCLProgram>> loading = new LinkedHashMap<>();
+    for (Map.Entry<String, Path> file : files.entrySet())
+      loading.put(
+          file.getKey(),
+          CompletableFuture.supplyAsync(() -> loadUnchecked(file.getValue(), importChain)));
+
+    for (Map.Entry<String, CompletableFuture<SCLProgram>> module : loading.entrySet()) {
+      try {
+        modules.put(module.getKey(), module.getValue().join());
+      } catch (CompletionException error) {
+        if (error.getCause() instanceof RuntimeException) throw (RuntimeException) error.getCause();
+        throw error;
+      }
+    }
+
+    return modules;
+  }
+
+  // load() for use inside of lambdas.
+  private static SCLProgram loadUnchecked(Path file, List<Path> importChain) {
+    try {
+      return load(file, importChain);
+    } catch (IOException error) {
+      throw new UncheckedIOException(error);
+    }
+  }
+}
@@ -0,0 +1,147 @@
+package io.github.yemouu.SCLInterpreter;
+
+// The bitwise operators as a table of kernels. Every operator and pair of operand types has an
+// entry holding a kernel that does nothing but the operation for those two types, so once the
+// entry is found there is no switching on the operator's name and no checking of either operand's
+// type. Operators between two values of the same numeric type use that type's own kernels, which
+// work on its primitive directly. Mixed numeric types widen both sides to their join first (see
+// TypedNumericValue), and a byte array on either side goes to SCLByteArray.
+//
+// An expression finds its entries once, when it is compiled. Where it can tell the types of both
+// operands ahead of time (constants, parameters, and local variables always have the type they
+// were declared with) it keeps the kernel itself, otherwise it keeps the operator's number and
+// looks the kernel up by the operands' types, which is two array reads.
+final class Operators {
+  // An operator applied to one pair of operand types.
+  interface Kernel {
+    TypedValue apply(TypedValue lhs, TypedValue rhs);
+  }
+
+  // The operator numbers, which are the same ones InterpreterMetrics counts with.
+  static final int BAND = InterpreterMetrics.BAND;
+  static final int BOR = InterpreterMetrics.BOR;
+  static final int BXOR = InterpreterMetrics.BXOR;
+  static final int LSHIFT = InterpreterMetrics.LSHIFT;
+  static final int RSHIFT = InterpreterMetrics.RSHIFT;
+
+  private static final String[] NAMES = {"band", "bor", "bxor", "lshift", "rshift"};
+
+  // Indexed by operator number, then by the ordinals of the left and right side's types, see
+  // index(). One flat array, so finding an entry is a single read.
+  private static final int TYPES = SCLTypes.values().length;
+  private static final Kernel[] KERNELS = new Kernel[NAMES.length * TYPES * TYPES];
+  private static final SCLTypes[] RESULTS = new SCLTypes[KERNELS.length];
+
+  static {
+    for (int operator = 0; operator < NAMES.length; operator++)
+      for (SCLTypes lhs : SCLTypes.values())
+        for (SCLTypes rhs : SCLTypes.values()) {
+          KERNELS[index(operator, lhs, rhs)] = newKernel(operator, lhs, rhs);
+          RESULTS[index(operator, lhs, rhs)] = result(operator, lhs, rhs);
+        }
+  }
+
+  private Operators() {}
+
+  // The number of an operator, or -1 if it isn't a bitwise operator.
+  static int operator(String name) {
+    for (int i = 0; i < NAMES.length; i++) if (NAMES[i].equals(name)) return i;
+    return -1;
+  }
+
+  // The number of the operator a token holds, worked out the first time and kept on the token.
+  static int operator(Token token) {
+    int operator = token.operator - 1;
+    if (operator >= 0) return operator;
+
+    operator = operator(token.VALUE);
+    if (operator < 0) throw new UnexpectedTokenException("Unexpected operator, " + token.VALUE);
+    token.operator = operator + 1;
+    return operator;
+  }
+
+  static String name(int operator) {
+    return NAMES[operator];
+  }
+
+  // The kernel for an operator between two types. Types that can't be operated on get a kernel that
+  // throws, so no entry is ever missing.
+  static Kernel kernel(int operator, SCLTypes lhs, SCLTypes rhs) {
+    return KERNELS[index(operator, lhs, rhs)];
+  }
+
+  // The type an operator between two types gives, or null if it can't be applied to them.
+  static SCLTypes type(int operator, SCLTypes lhs, SCLTypes rhs) {
+    return RESULTS[index(operator, lhs, rhs)];
+  }
+
+  // Apply an operator to two values of any type.
+  static TypedValue apply(int operator, TypedValue lhs, TypedValue rhs) {
+    InterpreterMetrics.operation(operator);
+    return KERNELS[index(operator, lhs.TYPE, rhs.TYPE)].apply(lhs, rhs);
+  }
+
+  private static int index(int operator, SCLTypes lhs, SCLTypes rhs) {
+    return (operator * TYPES + lhs.ordinal()) * TYPES + rhs.ordinal();
+  }
+
+  private static Kernel newKernel(int operator, SCLTypes lhs, SCLTypes rhs) {
+    String name = NAMES[operator];
+    if (lhs == SCLTypes.BYTE_ARRAY || rhs == SCLTypes.BYTE_ARRAY)
+      return (left, right) -> SCLByteArray.apply(name, left, right);
+    if (result(operator, lhs, rhs) == null)
+      return (left, right) -> {
+        TypedValue value = left instanceof TypedNumericValue ? right : left;
+        throw new TypeMismatchException("Expected a number but got " + value);
+      };
+
+    SCLTypes common = result(operator, lhs, rhs);
+    Kernel same = kernels(common)[operator];
+    if (lhs == common && rhs == common) return same;
+
+    // Both sides widened to the join hold the same bits as their longs, so mixed types work on the
+    // longs and keep the bits the join has room for.
+    switch (operator) {
+      case BAND:
+        return (left, right) -> TypedNumericValue.of(common, bits(left) & bits(right));
+      case BOR:
+        return (left, right) -> TypedNumericValue.of(common, bits(left) | bits(right));
+      case BXOR:
+        return (left, right) -> TypedNumericValue.of(common, bits(left) ^ bits(right));
+      default:
+        // Shifts keep the left side's type. The shift count is converted to that type too, which
+        // keeps at least the low 5 bits of it (6 for the longs), the only bits a shift uses.
+        return (left, right) -> same.apply(left, ((TypedNumericValue) right).to(common));
+    }
+  }
+
+  private static long bits(TypedValue value) {
+    return ((TypedNumericValue) value).longValue();
+  }
+
+  private static SCLTypes result(int operator, SCLTypes lhs, SCLTypes rhs) {
+    if (lhs == SCLTypes.BYTE_ARRAY || rhs == SCLTypes.BYTE_ARRAY) return SCLTypes.BYTE_ARRAY;
+    SCLTypes join = TypedNumericValue.join(lhs, rhs);
+    if (join == null) return null;
+    return operator == LSHIFT || operator == RSHIFT ? lhs : join;
+  }
+
+  private static Kernel[] kernels(SCLTypes type) {
+    switch (type) {
+      case BYTE:
+        return SCLByte.KERNELS;
+      case SHORT:
+        return SCLShort.KERNELS;
+      case UNSIGNED_SHORT:
+        return SCLUnsignedShort.KERNELS;
+      case INTEGER:
+        return SCLInteger.KERNELS;
+      case UNSIGNED_INTEGER:
+        return SCLUnsignedInteger.KERNELS;
+      case LONG:
+        return SCLLong.KERNELS;
+      default:
+        return SCLUnsignedLong.KERNELS;
+    }
+  }
+}
@@ -0,0 +1,26 @@
+package io.github.yemouu.SCLInterpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+@Name("io.github.yemouu.SCLInterpreter.ParseStatement")
+@Label("SCL Parse Statement")
+@Description("A top level statement (import, symbol, global, or implementations) parsed")
+@Category("SCL")
+@Enabled(false)
+@StackTrace(false)
+class ParseStatementEvent extends Event {
+  @Label("Source")
+  String source;
+
+  @Label("Statement")
+  String statement;
+
+  @Label("Tokens")
+  int tokens;
+}
@@ -1,8 +1,13 @@
 package io.github.yemouu.SCLInterpreter;
 
 import java.io.File;
+import java.io.Reader;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import jdk.jfr.FlightRecorder;
 
 public class Parser {
   // We will use this to make sure that each identifier is defined before it is used as well as
@@ -10,6 +15,11 @@ public class Parser {
   // variables and variable scopes aren't handled in our parser at all.
   private List<String> identifiers = new ArrayList<>();
 
+  // The name of every function in the file. Calls can refer to a function that is defined further
+  // down in the file (which is how two functions call each other), so we collect these names before
+  // parsing anything.
+  private Set<String> functions = new HashSet<>();
+
   // This is what will be passed to the Interpreter to process. We put each token into a list until
   // we reach the end of statement token. When we reach the end of token statement, we add the
   // statement to the list of statements and create a new list of tokens for the next statement.
@@ -24,6 +34,10 @@ public class Parser {
   private final List<Token> tokens;
   private int index = -1;
 
+  // Where the program came from, for the flight recorder. A file's path, or null when the program
+  // is already in memory.
+  private String sourceName = null;
+
   // Controls if the log() calls will display text to stderr or not.
   private boolean verbose = false;
 
@@ -32,6 +46,7 @@ public class Parser {
     SCLScanner scanner = new SCLScanner();
     scanner.tokenize(file);
     this.tokens = scanner.getTokens();
+    this.sourceName = file.getPath();
   }
 
   // Same as above but allows control over the verbose variable.
@@ -40,6 +55,35 @@ public class Parser {
     this.verbose = verbose;
   }
 
+  // Parse a program that is already in memory instead of a file.
+  public Parser(String source) {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(source);
+    this.tokens = scanner.getTokens();
+  }
+
+  // Parse a program read from a Reader.
+  public Parser(Reader source) {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(source);
+    this.tokens = scanner.getTokens();
+  }
+
+  // Parse a UTF-8 encoded program held in a buffer.
+  public Parser(ByteBuffer source) {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(source);
+    this.tokens = scanner.getTokens();
+  }
+
+  // Parse a UTF-8 encoded program that was read from the file with the given name.
+  public Parser(ByteBuffer source, String name) {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(source, name);
+    this.tokens = scanner.getTokens();
+    this.sourceName = name;
+  }
+
   // "Consumes" the next token and returns it to the caller. If there is no next token, throws a
   // TokenNotFoundException.
   public Token getNextToken() {
@@ -65,6 +109,31 @@ public class Parser {
     return statements;
   }
 
+  // Find the name of every module imported by the program. This works on the tokens directly so the
+  // modules can be loaded before we start parsing.
+  public List<String> getImports() {
+    List<String> imports = new ArrayList<>();
+    for (int i = 0; i + 1 < tokens.size(); i++)
+      if (Token.expect(TokenType.KEYWORD, "import", tokens.get(i))
+          && Token.expect(TokenType.LITERAL, tokens.get(i + 1))) {
+        String module = tokens.get(i + 1).VALUE;
+        imports.add(module.substring(1, module.length() - 1));
+      }
+    return imports;
+  }
+
+  // Tell the parser about an identifier that is defined somewhere else (in an imported module) so
+  // that the program is allowed to use it.
+  public void define(String identifier) {
+    if (!identifiers.contains(identifier)) identifiers.add(identifier);
+  }
+
+  // Same as above for a subprogram defined somewhere else, so that the program can also call it.
+  public void defineFunction(String identifier) {
+    define(identifier);
+    functions.add(identifier);
+  }
+
   // Simple method to optionally print messages detailing the parser's execution.
   private void log(String message) {
     if (!verbose) return;
@@ -74,8 +143,35 @@ public class Parser {
   // Parser entry point. We continuously call start() untill we have no more tokens left. At that
   // point, the entire file has been parsed.
   public void begin() {
+    long start = System.nanoTime();
+    try {
+      parse();
+    } catch (RuntimeException | Error error) {
+      InterpreterMetrics.exception(error);
+      throw error;
+    }
+    InterpreterMetrics.parsed(System.nanoTime() - start);
+  }
+
+  private void parse() {
+    for (int i = 0; i + 1 < tokens.size(); i++)
+      if (Token.expect(TokenType.KEYWORD, "function", tokens.get(i)))
+        functions.add(tokens.get(i + 1).VALUE);
+
     while (peekNextToken() != null) {
+      ParseStatementEvent event = null;
+      if (FlightRecorder.isInitialized()) {
+        event = new ParseStatementEvent();
+        event.begin();
+      }
+      int first = index + 1;
       start();
+      if (event != null && event.shouldCommit()) {
+        event.source = sourceName;
+        event.statement = tokens.get(first).VALUE;
+        event.tokens = index + 1 - first;
+        event.commit();
+      }
     }
   }
 
@@ -211,7 +307,7 @@ public class Parser {
 
       identifiers.add(token.VALUE);
       log("New identifier, " + token.VALUE + ", was added to identifiers list");
-    } else if (!identifiers.contains(token.VALUE))
+    } else if (!identifiers.contains(token.VALUE) && !functions.contains(token.VALUE))
       throw new IdentifierNotDefinedException(
           "Tried accessing " + token + " but it was not defined yet");
 
@@ -275,16 +371,18 @@ public class Parser {
   }
 
   // Parse operator token. The only operators we support are = and the bitwise operators, band, bor,
-  // bxor, lshift, rshift, and negate.
+  // bxor, lshift, rshift, and the negate and length operators that go in front of a value.
   private void operator(Token token) {
     log("Entering operator");
     Token.expectOrError(TokenType.OPERATOR, token);
     foundToken(token);
 
     // If our operator is =, we should be expecting either a literal, constant, identifier,
-    // operator, or special_symbol. Additonally, our previous token should be an identifier.
+    // operator, or special_symbol. Additonally, our previous token should be an identifier, or the
+    // ] after the index of an element of an array.
     if (Token.expect(TokenType.OPERATOR, "=", token)) {
-      Token.expectOrError(TokenType.IDENTIFIER, peekPrevToken());
+      if (!Token.expect(TokenType.SPECIAL_SYMBOL, "]", peekPrevToken()))
+        Token.expectOrError(TokenType.IDENTIFIER, peekPrevToken());
 
       Token nextToken = getNextToken();
       log("Expecting a constant, identifier, operator, or special_symbol");
@@ -301,18 +399,36 @@ public class Parser {
         case SPECIAL_SYMBOL:
           special_symbol(nextToken);
           break;
+        case KEYWORD:
+          // The value of a call is whatever the subprogram returns.
+          call(nextToken);
+          break;
         default:
           throw new UnexpectedTokenException("Unexpected token, " + nextToken);
       }
       return;
     }
 
-    // If our operator is negate, we should be expecting either a constant, identifier, or
-    // special_symbol next while we expect either a special_symbol, or operator:= before this token.
-    if (Token.expect(TokenType.OPERATOR, "negate", token)) {
+    // If our operator is negate or length, we should be expecting either a constant, identifier,
+    // or special_symbol next while we expect the start of an expression before this token. That is
+    // either operator:=, special_symbol:(, the using keyword or a comma between arguments, the
+    // return keyword, anything that starts a condition or either side of a comparison, the right
+    // side of a bitwise operator, or another negate or length.
+    if (Token.expect(TokenType.OPERATOR, "negate", token)
+        || Token.expect(TokenType.OPERATOR, "length", token)) {
       Token prevToken = peekPrevToken();
       if (!Token.expect(TokenType.OPERATOR, "=", prevToken)
-          && !Token.expect(TokenType.SPECIAL_SYMBOL, "(", prevToken))
+          && !Token.expect(TokenType.SPECIAL_SYMBOL, "(", prevToken)
+          && !Token.expect(TokenType.SPECIAL_SYMBOL, "[", prevToken)
+          && !Token.expect(TokenType.SPECIAL_SYMBOL, ",", prevToken)
+          && !Token.expect(TokenType.KEYWORD, "using", prevToken)
+          && !Token.expect(TokenType.KEYWORD, "return", prevToken)
+          && !Token.expect(TokenType.KEYWORD, "if", prevToken)
+          && !Token.expect(TokenType.KEYWORD, "while", prevToken)
+          && !Token.expect(TokenType.KEYWORD, "to", prevToken)
+          && !isRelation(prevToken)
+          && !Expression.prefix(prevToken)
+          && !(prevToken.TYPE == TokenType.OPERATOR && Operators.operator(prevToken.VALUE) >= 0))
         throw new UnexpectedTokenException("Expected either = or (, got " + prevToken.VALUE);
 
       log("Expecting a literal, constant, identifier, operator, or special_symbol");
@@ -327,6 +443,11 @@ public class Parser {
         case SPECIAL_SYMBOL:
           special_symbol(nextToken);
           break;
+        case OPERATOR:
+          if (!Expression.prefix(nextToken))
+            throw new UnexpectedTokenException("Unexpected token, " + nextToken);
+          operator(nextToken);
+          break;
         default:
           throw new UnexpectedTokenException("Unexpected token, " + nextToken);
       }
@@ -334,7 +455,8 @@ public class Parser {
     }
 
     // If our operator is band, bor, bxor, lshift, or rshift, we should be expecting either a
-    // constant, identifier, or special_symbol next. These should also be our previous tokens.
+    // constant, identifier, special_symbol, or negate or length in front of one of those next.
+    // These should also be our previous tokens.
 
     log("Expecting a constant, identifier, or special_symbol");
 
@@ -349,18 +471,32 @@ public class Parser {
       case SPECIAL_SYMBOL:
         special_symbol(nextToken);
         break;
+      case OPERATOR:
+        if (!Expression.prefix(nextToken))
+          throw new UnexpectedTokenException("Unexpected token, " + nextToken);
+        operator(nextToken);
+        break;
       default:
         throw new UnexpectedTokenException("Unexpected token, " + nextToken);
     }
   }
 
-  // Parse special symbols. The only special symbols we currently support are comma, (, and ).
+  // Check if a token is one of the operators that compare two values.
+  private static boolean isRelation(Token token) {
+    return Token.expect(TokenType.OPERATOR, "equal", token)
+        || Token.expect(TokenType.OPERATOR, "less", token)
+        || Token.expect(TokenType.OPERATOR, "greater", token);
+  }
+
+  // Parse special symbols. The only special symbols we currently support are comma, (, ), and the
+  // [ and ] around the index of an element of an array.
   private void special_symbol(Token token) {
     log("Entering special_symbol");
     Token.expectOrError(TokenType.SPECIAL_SYMBOL, token);
     foundToken(token);
 
-    // If our special symbol is a comma, we expect either a literal, constant, or identifier.
+    // If our special symbol is a comma, we expect either a literal, constant, or identifier. In the
+    // arguments of a call, the next argument can also start with negate or (.
     if (Token.expect(TokenType.SPECIAL_SYMBOL, ",", token)) {
       log("Expecting literal, constant, or identifier");
 
@@ -376,15 +512,22 @@ public class Parser {
         case IDENTIFIER:
           identifier(getNextToken());
           break;
+        case OPERATOR:
+          operator(getNextToken());
+          break;
+        case SPECIAL_SYMBOL:
+          special_symbol(getNextToken());
+          break;
         default:
           throw new UnexpectedTokenException("Unexpected token, " + nextToken);
       }
       return;
     }
 
-    // If our special symbol is (, we expect either a constant, operator, special_symbol, or
+    // If our special symbol is ( or [, we expect either a constant, operator, special_symbol, or
     // identifier.
-    if (Token.expect(TokenType.SPECIAL_SYMBOL, "(", token)) {
+    if (Token.expect(TokenType.SPECIAL_SYMBOL, "(", token)
+        || Token.expect(TokenType.SPECIAL_SYMBOL, "[", token)) {
       log("Expecting constant or identifier");
 
       Token nextToken = peekNextToken();
@@ -408,9 +551,10 @@ public class Parser {
       return;
     }
 
-    // If our special symbol is ), we expect either a constant, identifier, operator,
+    // If our special symbol is ) or ], we expect either a constant, identifier, operator,
     // special_symbol, or end of statement.
-    if (Token.expect(TokenType.SPECIAL_SYMBOL, ")", token)) {
+    if (Token.expect(TokenType.SPECIAL_SYMBOL, ")", token)
+        || Token.expect(TokenType.SPECIAL_SYMBOL, "]", token)) {
       log("Expecting constant, identifier, or end of statement");
 
       Token nextToken = peekNextToken();
@@ -431,6 +575,10 @@ public class Parser {
         case END_OF_STATEMENT:
           endOfStatement(getNextToken());
           break;
+        case KEYWORD:
+          // The expression is part of an if, while, or for statement which continues with then,
+          // do, or to.
+          break;
         default:
           throw new UnexpectedTokenException("Unexpected token, " + nextToken);
       }
@@ -570,8 +718,7 @@ public class Parser {
     Token.expectOrError(TokenType.KEYWORD, "integer", token);
     foundToken(token);
 
-    log("Expecting end of statement");
-    endOfStatement(getNextToken());
+    endOfType();
   }
 
   // Parse short keyword
@@ -580,8 +727,7 @@ public class Parser {
     Token.expectOrError(TokenType.KEYWORD, "short", token);
     foundToken(token);
 
-    log("Expecting end of statement");
-    endOfStatement(getNextToken());
+    endOfType();
   }
 
   // Parse long keyword
@@ -590,16 +736,63 @@ public class Parser {
     Token.expectOrError(TokenType.KEYWORD, "long", token);
     foundToken(token);
 
-    log("Expecting end of statement");
-    endOfStatement(getNextToken());
+    endOfType();
   }
 
-  // Parse byte keyword
+  // Parse byte keyword. A byte can be followed by array and the number of bytes in the array, or
+  // by file and the name of the file.
   private void _byte(Token token) {
     log("Entering byte");
     Token.expectOrError(TokenType.KEYWORD, "byte", token);
     foundToken(token);
 
+    if (Token.expect(TokenType.KEYWORD, "array", peekNextToken())) array(getNextToken());
+    else if (Token.expect(TokenType.KEYWORD, "file", peekNextToken())) file(getNextToken());
+    else endOfType();
+  }
+
+  // Parse file keyword. The name of the file can be followed by writable.
+  private void file(Token token) {
+    log("Entering file");
+    Token.expectOrError(TokenType.KEYWORD, "file", token);
+    foundToken(token);
+
+    log("Expecting the name of the file");
+    Token name = getNextToken();
+    Token.expectOrError(TokenType.LITERAL, name);
+    foundToken(name);
+
+    if (Token.expect(TokenType.KEYWORD, "writable", peekNextToken()))
+      foundToken(getNextToken());
+    endOfType();
+  }
+
+  // Parse array keyword
+  private void array(Token token) {
+    log("Entering array");
+    Token.expectOrError(TokenType.KEYWORD, "array", token);
+    foundToken(token);
+
+    log("Expecting the size of the array");
+    Token size = getNextToken();
+    Token.expectOrError(TokenType.CONSTANT, size);
+    foundToken(size);
+
+    endOfType();
+  }
+
+  // A type ends a define statement, but it can also be a function's return type or the type of one
+  // of its parameters. In those cases there is more of the function statement left to parse and
+  // the end of statement comes later.
+  private void endOfType() {
+    Token nextToken = peekNextToken();
+    if (Token.expect(TokenType.KEYWORD, "parameters", nextToken)
+        || Token.expect(TokenType.KEYWORD, "is", nextToken)
+        || Token.expect(TokenType.SPECIAL_SYMBOL, ",", nextToken)) {
+      log("Type is part of a function statement");
+      return;
+    }
+
     log("Expecting end of statement");
     endOfStatement(getNextToken());
   }
@@ -623,7 +816,9 @@ public class Parser {
     }
   }
 
-  // Parse function keyword
+  // Parse function keyword. Parameters and variables defined inside of a function are only visible
+  // inside of that function, so once we reach endfun we forget every identifier that was defined
+  // after the function's name. This lets two functions use the same names for their variables.
   private void function(Token token) {
     log("Entering function");
     Token.expectOrError(TokenType.KEYWORD, "function", token);
@@ -631,6 +826,13 @@ public class Parser {
 
     log("Expecting identifer");
     identifier(getNextToken());
+    int scope = identifiers.size();
+
+    log("Back in function");
+    log("Expecting return, parameters, or is");
+    if (Token.expect(TokenType.KEYWORD, "return", peekNextToken())) returnType(getNextToken());
+    if (Token.expect(TokenType.KEYWORD, "parameters", peekNextToken()))
+      parameters(getNextToken());
 
     log("Back in function");
     log("Expecting is");
@@ -639,6 +841,49 @@ public class Parser {
     log("Back in function");
     log("Expecting endfun");
     endfun(getNextToken());
+
+    identifiers.subList(scope, identifiers.size()).clear();
+    log("Leaving the scope of function " + token);
+  }
+
+  // Parse the return keyword of a function statement. This is followed by the type of the value
+  // the function returns.
+  private void returnType(Token token) {
+    log("Entering return type");
+    Token.expectOrError(TokenType.KEYWORD, "return", token);
+    foundToken(token);
+
+    log("Expecting type");
+    type(getNextToken());
+  }
+
+  // Parse the parameters keyword. This is followed by one or more "<identifier> of type <type>"
+  // separated by commas.
+  private void parameters(Token token) {
+    log("Entering parameters");
+    Token.expectOrError(TokenType.KEYWORD, "parameters", token);
+    foundToken(token);
+
+    log("Expecting a parameter");
+    parameter(getNextToken());
+    while (Token.expect(TokenType.SPECIAL_SYMBOL, ",", peekNextToken())) {
+      foundToken(getNextToken());
+      parameter(getNextToken());
+    }
+  }
+
+  // Parse a single parameter. The parameter is defined here instead of in identifier() because
+  // identifier() can't tell a parameter apart from an identifier that is being used.
+  private void parameter(Token token) {
+    log("Entering parameter");
+    Token.expectOrError(TokenType.IDENTIFIER, token);
+    if (identifiers.contains(token.VALUE))
+      throw new IdentifierAleadyDefinedException(token + "  was already defined");
+    identifiers.add(token.VALUE);
+    foundToken(token);
+
+    log("Expecting of");
+    of(getNextToken());
   }
 
   // Parse is keyword
@@ -650,8 +895,10 @@ public class Parser {
     log("Expecting end of statement");
     endOfStatement(getNextToken());
 
-    log("Expecting variables");
-    variables(getNextToken());
+    // A function without any local variables doesn't need a variables section.
+    log("Expecting variables or begin");
+    if (Token.expect(TokenType.KEYWORD, "variables", peekNextToken()))
+      variables(getNextToken());
 
     log("Back in is");
     log("Expecting begin");
@@ -668,12 +915,17 @@ public class Parser {
     endOfStatement(getNextToken());
 
     log("Back in begin");
-    log("Expecting either set, display, or exit");
+    block("endfun");
+  }
+
+  // Parse the statements of a block until we reach one of the keywords that end it. The body of a
+  // function is a block and so is the body of every if, else, while, and for. Blocks nest, so a
+  // keyword that ends an inner block is consumed by that block before we ever see it here.
+  private void block(String... ends) {
+    log("Expecting either set, display, call, return, exit, if, while, or for");
 
-    // Continuously parse the next token until we reach a token that indicates that we are done. In
-    // this case, the endfun keyword.
     Token nextToken = peekNextToken();
-    while (!Token.expect(TokenType.KEYWORD, "endfun", nextToken)) {
+    while (!endsBlock(nextToken, ends)) {
       switch (nextToken.VALUE) {
         case "set":
           set(getNextToken());
@@ -684,6 +936,21 @@ public class Parser {
         case "exit":
           exit(getNextToken());
           break;
+        case "call":
+          call(getNextToken());
+          break;
+        case "return":
+          _return(getNextToken());
+          break;
+        case "if":
+          _if(getNextToken());
+          break;
+        case "while":
+          _while(getNextToken());
+          break;
+        case "for":
+          _for(getNextToken());
+          break;
         default:
           throw new UnexpectedTokenException("Expected function keyword but got, " + nextToken);
       }
@@ -692,6 +959,99 @@ public class Parser {
     }
   }
 
+  // Check if a token is one of the keywords that end the block we are in. Running out of tokens
+  // means the block was never closed.
+  private static boolean endsBlock(Token token, String... ends) {
+    if (token == null) throw new TokenNotFoundException();
+    for (String end : ends) if (Token.expect(TokenType.KEYWORD, end, token)) return true;
+    return false;
+  }
+
+  // Parse a condition. A condition is an expression, which is true when it isn't zero, or two
+  // expressions compared with equal, less, or greater. The expression methods stop at the keyword
+  // that follows the condition.
+  private void condition(Token token) {
+    log("Entering condition");
+    expression(token);
+  }
+
+  // Parse a keyword that is the last thing on its line. This is then and do, which end the first
+  // line of an if, while, or for, as well as else, endif, endwhile, and endfor.
+  private void blockKeyword(String keyword, Token token) {
+    Token.expectOrError(TokenType.KEYWORD, keyword, token);
+    foundToken(token);
+
+    log("Expecting end of statement");
+    endOfStatement(getNextToken());
+  }
+
+  // Parse if keyword. if <condition> then, the statements to run when the condition is true, and
+  // optionally else and the statements to run when it is false, ending with endif.
+  private void _if(Token token) {
+    log("Entering if");
+    Token.expectOrError(TokenType.KEYWORD, "if", token);
+    foundToken(token);
+
+    log("Expecting a condition");
+    condition(getNextToken());
+
+    log("Expecting then");
+    blockKeyword("then", getNextToken());
+    block("else", "endif");
+
+    if (Token.expect(TokenType.KEYWORD, "else", peekNextToken())) {
+      log("Entering else");
+      blockKeyword("else", getNextToken());
+      block("endif");
+    }
+
+    log("Expecting endif");
+    blockKeyword("endif", getNextToken());
+  }
+
+  // Parse while keyword. while <condition> do, the statements to repeat, and endwhile.
+  private void _while(Token token) {
+    log("Entering while");
+    Token.expectOrError(TokenType.KEYWORD, "while", token);
+    foundToken(token);
+
+    log("Expecting a condition");
+    condition(getNextToken());
+
+    log("Expecting do");
+    blockKeyword("do", getNextToken());
+    block("endwhile");
+
+    log("Expecting endwhile");
+    blockKeyword("endwhile", getNextToken());
+  }
+
+  // Parse for keyword. for <identifier> = <expression> to <expression> do, the statements to
+  // repeat, and endfor. The identifier counts up by one from the first expression to the second.
+  private void _for(Token token) {
+    log("Entering for");
+    Token.expectOrError(TokenType.KEYWORD, "for", token);
+    foundToken(token);
+
+    log("Expecting an identifier");
+    identifier(getNextToken());
+
+    log("Expecting to");
+    Token to = getNextToken();
+    Token.expectOrError(TokenType.KEYWORD, "to", to);
+    foundToken(to);
+
+    log("Expecting an expression");
+    expression(getNextToken());
+
+    log("Expecting do");
+    blockKeyword("do", getNextToken());
+    block("endfor");
+
+    log("Expecting endfor");
+    blockKeyword("endfor", getNextToken());
+  }
+
   // Parse set keyword
   private void set(Token token) {
     log("Entering set");
@@ -733,6 +1093,72 @@ public class Parser {
     endOfStatement(getNextToken());
   }
 
+  // Parse call keyword. This is either a statement of its own or the value in a set statement. The
+  // name of the subprogram can be followed by using and a comma separated list of arguments.
+  private void call(Token token) {
+    log("Entering call");
+    Token.expectOrError(TokenType.KEYWORD, "call", token);
+    foundToken(token);
+
+    log("Expecting an identifier");
+    Token name = getNextToken();
+    Token.expectOrError(TokenType.IDENTIFIER, name);
+    if (!functions.contains(name.VALUE))
+      throw new IdentifierNotDefinedException(
+          "Tried calling " + name + " but it is not a function");
+    foundToken(name);
+
+    log("Expecting using or end of statement");
+    if (Token.expect(TokenType.KEYWORD, "using", peekNextToken())) using(getNextToken());
+    else endOfStatement(getNextToken());
+  }
+
+  // Parse using keyword. The arguments are expressions separated by commas, which the expression
+  // methods already handle all the way to the end of the statement.
+  private void using(Token token) {
+    log("Entering using");
+    Token.expectOrError(TokenType.KEYWORD, "using", token);
+    foundToken(token);
+
+    log("Expecting a literal, constant, identifier, operator, or special_symbol");
+    expression(getNextToken());
+  }
+
+  // Parse return keyword. A return can be on its own or followed by the value to return.
+  private void _return(Token token) {
+    log("Entering return");
+    Token.expectOrError(TokenType.KEYWORD, "return", token);
+    foundToken(token);
+
+    log("Expecting an expression or end of statement");
+    Token nextToken = getNextToken();
+    if (Token.expect(TokenType.END_OF_STATEMENT, nextToken)) endOfStatement(nextToken);
+    else expression(nextToken);
+  }
+
+  // Parse the first token of an expression.
+  private void expression(Token token) {
+    switch (token.TYPE) {
+      case LITERAL:
+        literal(token);
+        break;
+      case CONSTANT:
+        constant(token);
+        break;
+      case IDENTIFIER:
+        identifier(token);
+        break;
+      case OPERATOR:
+        operator(token);
+        break;
+      case SPECIAL_SYMBOL:
+        special_symbol(token);
+        break;
+      default:
+        throw new UnexpectedTokenException("Unexpected token, " + token);
+    }
+  }
+
   // Parse endfun keyword
   private void endfun(Token token) {
     log("Entering endfun");
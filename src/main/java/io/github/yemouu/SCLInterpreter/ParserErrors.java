@@ -19,3 +19,9 @@ class IdentifierNotDefinedException extends RuntimeException {
     super(errorMessage);
   }
 }
+
+class ImportCycleException extends RuntimeException {
+  public ImportCycleException(String errorMessage) {
+    super(errorMessage);
+  }
+}
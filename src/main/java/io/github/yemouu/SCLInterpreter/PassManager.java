@@ -0,0 +1,78 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.PrintStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// Runs the optimization passes over a subprogram's IR before tier 1 lowers it. Each pass makes a
+// single sweep and reports how many changes it made, so the whole list is run again until a sweep
+// of every pass changes nothing.
+//
+// Only display and exit can be seen from outside of a program, along with the errors it stops
+// with, so that is all the passes keep: a program prints exactly the same thing, and fails with
+// the same error at the same point, whether it was optimized or not. Setting scl.ir.optimize to
+// false (or --no-optimize) compiles the IR without running any passes, for comparing the two.
+final class PassManager {
+  interface Pass {
+    String name();
+
+    // Returns the number of changes the pass made.
+    int run(IR ir);
+  }
+
+  private static final List<Pass> PASSES =
+      List.of(
+          new CopyPropagation(),
+          new CommonSubexpressionElimination(),
+          new DeadStoreElimination());
+
+  private static volatile boolean enabled =
+      !"false".equals(System.getProperty("scl.ir.optimize"));
+
+  private PassManager() {}
+
+  static void setEnabled(boolean enabled) {
+    PassManager.enabled = enabled;
+  }
+
+  static IR optimize(Subprogram subprogram) {
+    return optimize(subprogram, null);
+  }
+
+  // Build and optimize the IR of a subprogram. If dump isn't null the IR is printed to it before
+  // the passes run and after every pass that changed something.
+  static IR optimize(Subprogram subprogram, PrintStream dump) {
+    IR ir = new IR(subprogram);
+    if (dump != null) dump.print(ir);
+    if (!enabled) return ir;
+
+    int changes;
+    do {
+      changes = 0;
+      for (Pass pass : PASSES) {
+        int changed = pass.run(ir);
+        changes += changed;
+        if (dump != null && changed > 0) {
+          dump.println("-- after " + pass.name() + " (" + changed + " changes)");
+          dump.print(ir);
+        }
+      }
+    } while (changes > 0);
+    return ir;
+  }
+
+  // Print the IR of every subprogram of a program, and of the modules it imports.
+  static void dump(SCLProgram program, PrintStream out) {
+    dump(program, out, new HashSet<>());
+  }
+
+  private static void dump(SCLProgram program, PrintStream out, Set<SCLProgram> dumped) {
+    if (!dumped.add(program)) return;
+    for (SCLProgram module : program.getModules()) dump(module, out, dumped);
+    for (int i = 0; i < program.getSubprogramCount(); i++) {
+      optimize(program.getSubprogram(i), out);
+      out.println();
+    }
+  }
+}
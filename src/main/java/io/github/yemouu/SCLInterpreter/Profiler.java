@@ -0,0 +1,246 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+// Counts how many times each statement runs and how long it takes. Time is recorded in a calling
+// context tree: every distinct chain of calls (main, main;mix, main;helper;mix, ...) gets a node
+// with a counter and a nanosecond total for each of the subprogram's statements, indexed by
+// statement id. While the program runs the only work is finding a node's child on a call (a short
+// linear search) and adding to two array elements per statement, so there are no maps or boxed
+// numbers anywhere near the hot path.
+//
+// The time of a statement is its self time. A call statement's time covers evaluating the
+// arguments, the statements of the subprogram it calls are recorded in that subprogram's node.
+//
+// A Profiler belongs to a single Interpreter and isn't safe to share between threads.
+public final class Profiler {
+  // How deep the tree may get. Deep recursion would otherwise give every level of the recursion
+  // its own node, and since every line of the collapsed output holds the whole chain of calls, the
+  // output would grow with the square of the depth. Calls made past this depth are recorded as if
+  // they were made from the last node above it.
+  static final int MAX_DEPTH = 256;
+
+  private Node root;
+
+  // A subprogram reached through one particular chain of calls.
+  static final class Node {
+    private static final Node[] NO_CHILDREN = new Node[0];
+
+    final Subprogram subprogram;
+    final Node parent;
+    final int depth;
+    final long[] counts;
+    final long[] nanos;
+    long calls;
+
+    private Node[] children = NO_CHILDREN;
+    private int childCount = 0;
+
+    // Filled in by summarize() once the program is done. The time of this call and every call it
+    // made, and whether the same subprogram is further up the chain of calls.
+    private long totalNanos;
+    private boolean recursive;
+
+    Node(Subprogram subprogram, Node parent) {
+      this.subprogram = subprogram;
+      this.parent = parent;
+      this.depth = parent == null ? 1 : parent.depth + 1;
+      this.counts = new long[subprogram.getStatements().size()];
+      this.nanos = new long[subprogram.getStatements().size()];
+    }
+
+    void record(int statement, long elapsed) {
+      counts[statement]++;
+      nanos[statement] += elapsed;
+    }
+
+    // Get the node for a call from this node to a subprogram, creating it on the first call.
+    Node enter(Subprogram callee) {
+      if (depth == MAX_DEPTH) return parent.enter(callee);
+
+      Node child = null;
+      for (int i = 0; i < childCount; i++)
+        if (children[i].subprogram == callee) {
+          child = children[i];
+          break;
+        }
+
+      if (child == null) {
+        if (childCount == children.length)
+          children = Arrays.copyOf(children, Math.max(4, childCount * 2));
+        child = children[childCount++] = new Node(callee, this);
+      }
+
+      child.calls++;
+      return child;
+    }
+
+    private long selfNanos() {
+      long total = 0;
+      for (long elapsed : nanos) total += elapsed;
+      return total;
+    }
+  }
+
+  // Called as a depth first walk of the tree enters and leaves each node.
+  private interface Visitor {
+    void enter(Node node);
+
+    void exit(Node node);
+  }
+
+  // The node the program starts in.
+  Node start(Subprogram main) {
+    root = new Node(main, null);
+    root.calls = 1;
+    return root;
+  }
+
+  // Walk the tree depth first. The tree is as deep as the deepest recursion in the program, which
+  // can be far deeper than the Java stack, so we keep our own stack.
+  private void walk(Visitor visitor) {
+    if (root == null) return;
+
+    Deque<Node> path = new ArrayDeque<>();
+    Deque<Integer> nextChild = new ArrayDeque<>();
+    visitor.enter(root);
+    path.push(root);
+    nextChild.push(0);
+    while (!path.isEmpty()) {
+      Node node = path.peek();
+      int next = nextChild.pop();
+      if (next < node.childCount) {
+        nextChild.push(next + 1);
+        Node child = node.children[next];
+        visitor.enter(child);
+        path.push(child);
+        nextChild.push(0);
+      } else {
+        path.pop();
+        visitor.exit(node);
+      }
+    }
+  }
+
+  // Work out each node's total time and whether it is a recursive call. Returns every node.
+  private List<Node> summarize() {
+    List<Node> nodes = new ArrayList<>();
+    Map<Subprogram, Integer> onPath = new IdentityHashMap<>();
+    walk(
+        new Visitor() {
+          public void enter(Node node) {
+            nodes.add(node);
+            node.recursive = onPath.merge(node.subprogram, 1, Integer::sum) > 1;
+          }
+
+          public void exit(Node node) {
+            onPath.merge(node.subprogram, -1, Integer::sum);
+            node.totalNanos = node.selfNanos();
+            for (int i = 0; i < node.childCount; i++)
+              node.totalNanos += node.children[i].totalNanos;
+          }
+        });
+    return nodes;
+  }
+
+  // Write a report of every subprogram and every statement that ran, each sorted with the most
+  // expensive first. A subprogram's total time includes the subprograms it called (counted once
+  // even when it recurses), its self time only includes its own statements.
+  public void writeReport(Writer writer) {
+    PrintWriter out = new PrintWriter(writer);
+
+    // Merge the nodes of each subprogram. This only happens once, after the program is done.
+    Map<Subprogram, long[]> subprograms = new IdentityHashMap<>();
+    Map<Subprogram, long[][]> statements = new IdentityHashMap<>();
+    for (Node node : summarize()) {
+      long[] totals = subprograms.computeIfAbsent(node.subprogram, key -> new long[3]);
+      totals[0] += node.calls;
+      totals[1] += node.selfNanos();
+      if (!node.recursive) totals[2] += node.totalNanos;
+
+      long[][] merged =
+          statements.computeIfAbsent(
+              node.subprogram, key -> new long[2][key.getStatements().size()]);
+      for (int i = 0; i < node.counts.length; i++) {
+        merged[0][i] += node.counts[i];
+        merged[1][i] += node.nanos[i];
+      }
+    }
+
+    List<Subprogram> bySelfTime = new ArrayList<>(subprograms.keySet());
+    bySelfTime.sort(
+        Comparator.comparingLong((Subprogram subprogram) -> subprograms.get(subprogram)[1])
+            .reversed());
+    out.println("Subprograms");
+    out.printf("%10s %12s %12s  %s%n", "calls", "total_ms", "self_ms", "subprogram");
+    for (Subprogram subprogram : bySelfTime) {
+      long[] totals = subprograms.get(subprogram);
+      out.printf(
+          "%10d %12.3f %12.3f  %s%n",
+          totals[0], totals[2] / 1e6, totals[1] / 1e6, subprogram.getName());
+    }
+
+    List<long[]> rows = new ArrayList<>();
+    List<Subprogram> bySubprogram = new ArrayList<>(statements.keySet());
+    for (int s = 0; s < bySubprogram.size(); s++) {
+      long[][] merged = statements.get(bySubprogram.get(s));
+      for (int i = 0; i < merged[0].length; i++)
+        if (merged[0][i] != 0) rows.add(new long[] {s, i, merged[0][i], merged[1][i]});
+    }
+    rows.sort(Comparator.comparingLong((long[] row) -> row[3]).reversed());
+
+    out.println();
+    out.println("Statements");
+    out.printf("%12s %12s %10s  %s%n", "count", "time_ms", "avg_ns", "statement");
+    for (long[] row : rows) {
+      Subprogram subprogram = bySubprogram.get((int) row[0]);
+      Statement statement = subprogram.getStatements().get((int) row[1]);
+      out.printf(
+          "%12d %12.3f %10d  %s:%s%n",
+          row[2], row[3] / 1e6, row[3] / row[2], subprogram.getName(), statement);
+    }
+    out.flush();
+  }
+
+  // Write every statement's time in the collapsed stack format that flame graph tools read. Each
+  // line is the chain of calls, then the statement, then its time in nanoseconds.
+  public void writeCollapsed(Writer writer) {
+    PrintWriter out = new PrintWriter(writer);
+    StringBuilder path = new StringBuilder();
+    Deque<Integer> lengths = new ArrayDeque<>();
+    walk(
+        new Visitor() {
+          public void enter(Node node) {
+            lengths.push(path.length());
+            if (path.length() != 0) path.append(';');
+            path.append(frameName(node.subprogram.getName()));
+
+            List<Statement> statements = node.subprogram.getStatements();
+            for (int i = 0; i < node.nanos.length; i++) {
+              if (node.counts[i] == 0) continue;
+              String leaf = frameName(node.subprogram.getName() + ":" + statements.get(i));
+              out.println(path + ";" + leaf + " " + node.nanos[i]);
+            }
+          }
+
+          public void exit(Node node) {
+            path.setLength(lengths.pop());
+          }
+        });
+    out.flush();
+  }
+
+  // Semicolons separate frames in the collapsed format, so they can't appear inside of one.
+  private static String frameName(String name) {
+    return name.replace(';', ',');
+  }
+}
@@ -0,0 +1,309 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.BufferedWriter;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Path;
+import java.util.List;
+
+// Runs a program as a filter over a stream of records. The program's declarations run once, then
+// main runs once for every record with the record's values in the global variables named on the
+// command line (its inputs), so a program can keep totals in other globals from one record to the
+// next. An exit statement ends the stream.
+//
+// Records are either fixed size binary, where each input takes as many bytes as its type holds (1
+// for byte, 2 for the shorts, 4 for the integers, 8 for the longs, and the size of a byte array) in
+// big endian order, or lines of text with one value per input separated by spaces, tabs, or commas.
+// Numbers in text are decimal (with a - for negative values), hex with a 0x in front, or hex the
+// way SCL writes it with an h at the end. A byte array is written as two hex digits per element.
+//
+// The input is read into one ByteBuffer that is used for the whole stream, and values are parsed
+// straight out of its bytes, so reading a record doesn't build any strings. Bytes come from the
+// table of all 256 byte values and byte arrays are filled in place. The other numbers can't be
+// changed in place, since a program can keep an input's value in another variable, so a field
+// that holds a new value needs a new value object; one that holds the same value as in the last
+// record is given the same object again. Output goes to a large buffer that is only
+// flushed when the input has to be read again (or the stream ends), so a program that displays a
+// line per record doesn't make a system call per record.
+final class RecordStream {
+  enum Format {
+    BINARY,
+    TEXT
+  }
+
+  private static final int BUFFER_SIZE = 1 << 16;
+
+  private final String[] names;
+  private final Format format;
+  private final ReadableByteChannel input;
+  private final Flushable output;
+
+  private ByteBuffer buffer;
+  private boolean ended;
+  private long records;
+
+  // The type of each input and, for binary records, how many bytes it takes. Found from the
+  // program's declarations once they have run.
+  private SCLTypes[] types;
+  private int[] widths;
+  private int recordSize;
+
+  // The value each input was last given and the bits it was made from, see value().
+  private TypedNumericValue[] values;
+  private long[] bits;
+
+  RecordStream(List<String> names, Format format, ReadableByteChannel input, Flushable output) {
+    this.names = names.toArray(new String[0]);
+    this.format = format;
+    this.input = input;
+    this.output = output;
+    this.buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    buffer.flip();
+  }
+
+  // Stream a file (or stdin when input is null) through a program. Returns the number of records.
+  static long run(Interpreter interpreter, List<String> names, Format format, Path input)
+      throws IOException {
+    PrintWriter out =
+        new PrintWriter(
+            new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(FileDescriptor.out)), BUFFER_SIZE));
+    interpreter.setOutput(out);
+
+    try (ReadableByteChannel channel =
+        input == null
+            ? new FileInputStream(FileDescriptor.in).getChannel()
+            : FileChannel.open(input)) {
+      RecordStream stream = new RecordStream(names, format, channel, out);
+      interpreter.stream(stream);
+      return stream.records;
+    } finally {
+      out.flush();
+    }
+  }
+
+  // Give the interpreter the next record. Returns false once there are no more.
+  boolean next(Interpreter interpreter) {
+    if (types == null) resolve(interpreter);
+    try {
+      boolean next = format == Format.BINARY ? binary(interpreter) : text(interpreter);
+      if (next) records++;
+      return next;
+    } catch (IOException error) {
+      throw new UncheckedIOException(error);
+    }
+  }
+
+  private void resolve(Interpreter interpreter) {
+    types = new SCLTypes[names.length];
+    widths = new int[names.length];
+    values = new TypedNumericValue[names.length];
+    bits = new long[names.length];
+    for (int i = 0; i < names.length; i++) {
+      TypedValue value = interpreter.getGlobal(names[i]);
+      if (value == null)
+        throw new VariableNotDefinedException(
+            "Tried to stream into " + names[i] + " but it was never defined");
+      types[i] = value.TYPE;
+      if (value.TYPE == SCLTypes.BYTE_ARRAY) widths[i] = ((SCLByteArray) value).length();
+      else if (Conversion.numeric(value.TYPE)) widths[i] = TypedNumericValue.width(value.TYPE) / 8;
+      else
+        throw new TypeMismatchException(
+            "Tried to stream into "
+                + names[i]
+                + " but only numbers and byte arrays can be streamed, not "
+                + TypeChecker.describe(value.TYPE));
+      recordSize += widths[i];
+    }
+  }
+
+  // The array an input currently holds. The program can give the variable a new array, so this is
+  // looked up for every record.
+  private static SCLByteArray array(Interpreter interpreter, String name) {
+    return (SCLByteArray) interpreter.getGlobal(name);
+  }
+
+  private boolean binary(Interpreter interpreter) throws IOException {
+    while (buffer.remaining() < recordSize) {
+      if (ended) {
+        if (!buffer.hasRemaining()) return false;
+        throw new RecordFormatException(
+            "The input ended in the middle of record "
+                + (records + 1)
+                + ", "
+                + buffer.remaining()
+                + " of its "
+                + recordSize
+                + " bytes were there");
+      }
+      read();
+    }
+
+    for (int i = 0; i < names.length; i++) {
+      if (types[i] == SCLTypes.BYTE_ARRAY) {
+        array(interpreter, names[i]).load(buffer);
+        continue;
+      }
+      long bits;
+      switch (widths[i]) {
+        case 1:
+          bits = buffer.get();
+          break;
+        case 2:
+          bits = buffer.getShort();
+          break;
+        case 4:
+          bits = buffer.getInt();
+          break;
+        default:
+          bits = buffer.getLong();
+          break;
+      }
+      interpreter.setGlobal(names[i], value(i, bits));
+    }
+    return true;
+  }
+
+  private boolean text(Interpreter interpreter) throws IOException {
+    int end;
+    while (true) {
+      end = lineEnd();
+      if (end < 0) {
+        if (!ended) {
+          read();
+          continue;
+        }
+        // The last line doesn't need a newline at its end.
+        if (!buffer.hasRemaining()) return false;
+        end = buffer.limit();
+      }
+      if (skip(buffer.position(), end) < end) break;
+      // A blank line isn't a record.
+      buffer.position(Math.min(end + 1, buffer.limit()));
+    }
+
+    int position = buffer.position();
+    for (int i = 0; i < names.length; i++) {
+      position = skip(position, end);
+      if (position == end)
+        throw new RecordFormatException(
+            "Record " + (records + 1) + " has " + i + " values but needs " + names.length);
+      int valueEnd = position;
+      while (valueEnd < end && !separator(buffer.get(valueEnd))) valueEnd++;
+      if (types[i] == SCLTypes.BYTE_ARRAY) hex(array(interpreter, names[i]), position, valueEnd);
+      else
+        interpreter.setGlobal(names[i], value(i, number(position, valueEnd)));
+      position = valueEnd;
+    }
+    if (skip(position, end) != end)
+      throw new RecordFormatException(
+          "Record " + (records + 1) + " has more than the " + names.length + " values streamed");
+
+    buffer.position(Math.min(end + 1, buffer.limit()));
+    return true;
+  }
+
+  // The value for an input from the bits of a field. Values never change, so a field with the same
+  // bits as in the last record gets the value made then instead of a new one.
+  private TypedNumericValue value(int input, long field) {
+    if (values[input] == null || bits[input] != field) {
+      values[input] = TypedNumericValue.of(types[input], field);
+      bits[input] = field;
+    }
+    return values[input];
+  }
+
+  // The index of the newline that ends the line at the buffer's position, or -1 if the buffer
+  // doesn't hold all of it yet.
+  private int lineEnd() {
+    for (int i = buffer.position(); i < buffer.limit(); i++) if (buffer.get(i) == '\n') return i;
+    return -1;
+  }
+
+  private int skip(int position, int end) {
+    while (position < end && separator(buffer.get(position))) position++;
+    return position;
+  }
+
+  private static boolean separator(byte character) {
+    return character == ' ' || character == '\t' || character == ',' || character == '\r';
+  }
+
+  // Parse a number from the bytes between start and end. Numbers too large for 64 bits keep their
+  // lowest 64, and every number keeps the bits its input's type has room for, like narrowing.
+  private long number(int start, int end) {
+    boolean negative = buffer.get(start) == '-';
+    if (negative) start++;
+
+    int radix = 10;
+    if (end - start > 2
+        && buffer.get(start) == '0'
+        && (buffer.get(start + 1) == 'x' || buffer.get(start + 1) == 'X')) {
+      radix = 16;
+      start += 2;
+    } else if (end - start > 1 && (buffer.get(end - 1) == 'h' || buffer.get(end - 1) == 'H')) {
+      radix = 16;
+      end--;
+    }
+    if (start == end) throw invalid(start, end);
+
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      int digit = Character.digit(buffer.get(i), radix);
+      if (digit < 0) throw invalid(start, end);
+      value = value * radix + digit;
+    }
+    return negative ? -value : value;
+  }
+
+  private void hex(SCLByteArray array, int start, int end) {
+    if (end - start != array.length() * 2)
+      throw new RecordFormatException(
+          "Record "
+              + (records + 1)
+              + " has "
+              + (end - start)
+              + " hex digits for a byte array of "
+              + array.length()
+              + " elements");
+    for (int i = 0; i < array.length(); i++) {
+      int high = Character.digit(buffer.get(start + 2 * i), 16);
+      int low = Character.digit(buffer.get(start + 2 * i + 1), 16);
+      if (high < 0 || low < 0) throw invalid(start, end);
+      array.load(i, (byte) (high << 4 | low));
+    }
+  }
+
+  // Only built when a record is bad, so the text of the value is only decoded then.
+  private RecordFormatException invalid(int start, int end) {
+    byte[] text = new byte[end - start];
+    for (int i = 0; i < text.length; i++) text[i] = buffer.get(start + i);
+    return new RecordFormatException(
+        "Record " + (records + 1) + " has a value that isn't a number, " + new String(text));
+  }
+
+  // Read more of the input after what the buffer already holds, making the buffer larger if a
+  // single record doesn't fit in it. Whatever the program displayed so far is written out first,
+  // since this might wait for whoever is writing the input.
+  private void read() throws IOException {
+    buffer.compact();
+    if (!buffer.hasRemaining()) {
+      ByteBuffer larger = ByteBuffer.allocateDirect(buffer.capacity() * 2);
+      buffer.flip();
+      larger.put(buffer);
+      buffer = larger;
+    }
+    output.flush();
+    if (input.read(buffer) < 0) ended = true;
+    buffer.flip();
+  }
+}
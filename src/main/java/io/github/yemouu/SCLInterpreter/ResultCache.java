@@ -0,0 +1,340 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Stream;
+
+// Remembers what programs printed so that running the same program again replays its output
+// instead of executing it. Apart from byte files, a program can't read any input, so what it prints
+// and whether it fails only depend on its source, the modules it imports, and the interpreter
+// running it. Programs that declare a byte file are always run.
+//
+// Results are keyed by a SHA-256 of the interpreter's version and the tokens SCLScanner finds in
+// the program and in every module it imports (found the same way the ModuleCache finds them).
+// Tokens leave out comments and whitespace, so reformatting a program or editing its comments
+// doesn't change its key. Each result is a file in the cache directory holding the exit status,
+// everything the program displayed, and the error a failed program stopped with.
+//
+// The directory is kept under a size limit by deleting the least recently used results, where a
+// result is used when it is stored or replayed (replaying touches its modification time). Results
+// are written to a temporary file and moved into place, so programs sharing the directory from
+// other processes never see half of one.
+//
+// The cache is off by default. --cache turns it on for a run, and the scl.cache.dir and
+// scl.cache.size system properties choose the directory (~/.cache/scli by default) and its size
+// limit in bytes (64 MiB by default).
+final class ResultCache {
+  static final long DEFAULT_SIZE = 64L << 20;
+
+  private static final int MAGIC = 0x53434c52; // SCLR
+
+  private final Path directory;
+  private final long size;
+
+  ResultCache(Path directory, long size) {
+    this.directory = directory;
+    this.size = size;
+  }
+
+  // The cache configured by the system properties.
+  static ResultCache open() {
+    String directory = System.getProperty("scl.cache.dir");
+    Path path =
+        directory != null
+            ? Path.of(directory)
+            : Path.of(System.getProperty("user.home"), ".cache", "scli");
+    return new ResultCache(path, Long.getLong("scl.cache.size", DEFAULT_SIZE));
+  }
+
+  // The result of one run of a program.
+  static final class Result {
+    final int status;
+    final String output;
+
+    // The error the program failed with, or null if it didn't.
+    final String error;
+
+    Result(int status, String output, String error) {
+      this.status = status;
+      this.output = output;
+      this.error = error;
+    }
+  }
+
+  // Run a program, or replay it if its result is cached. A replayed failure prints its error to
+  // stderr and returns the status it failed with. A program that is actually run fails the same
+  // way it does without the cache, by throwing.
+  int run(File file) throws IOException {
+    String key = key(file.toPath());
+    Result result = key == null ? null : load(key);
+    PrintWriter out = new PrintWriter(System.out, true);
+    if (result != null) {
+      out.print(result.output);
+      out.flush();
+      if (result.error != null) System.err.println("Exception in thread \"main\" " + result.error);
+      return result.status;
+    }
+
+    Recorder recorder = new Recorder(out, size);
+    Interpreter interpreter = new Interpreter(file);
+    interpreter.setOutput(new PrintWriter(recorder, true));
+    try {
+      interpreter.execute();
+    } catch (RuntimeException error) {
+      // A run stopped by a resource limit says nothing about what the program does, only about the
+      // limits it was run with, so it is never replayed.
+      if (key != null && !recorder.overflowed && !(error instanceof ResourceLimitException))
+        store(key, new Result(1, recorder.toString(), error.toString()));
+      throw error;
+    }
+    if (key != null && !recorder.overflowed)
+      store(key, new Result(0, recorder.toString(), null));
+    return 0;
+  }
+
+  // The key of a program: a hex SHA-256 of the interpreter's version and the normalized tokens of
+  // the program and its imports. Null if the program or one of its imports declares a byte file.
+  static String key(Path file) throws IOException {
+    MessageDigest digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException error) {
+      throw new IllegalStateException(error);
+    }
+    update(digest, "scli " + version() + "\n");
+    Set<Path> hashed = new HashSet<>();
+    file = file.toAbsolutePath().normalize();
+    hashed.add(file);
+    if (!hash(digest, file, hashed)) return null;
+
+    StringBuilder key = new StringBuilder();
+    for (byte b : digest.digest()) key.append(String.format("%02x", b));
+    return key.toString();
+  }
+
+  // Hash a file and its imports. Returns false if any of them declares a byte file.
+  private static boolean hash(MessageDigest digest, Path file, Set<Path> hashed)
+      throws IOException {
+    SCLScanner scanner = new SCLScanner();
+    scanner.tokenize(ByteBuffer.wrap(Files.readAllBytes(file)), file.toString());
+    List<Token> tokens = scanner.getTokens();
+    for (Token token : tokens) {
+      if (Token.expect(TokenType.KEYWORD, "file", token)) return false;
+      update(digest, token.TYPE + " " + token.VALUE + "\n");
+    }
+
+    // Every import is hashed in the order it appears, and one that can't be found is hashed as
+    // missing, so adding the file later changes the key.
+    for (int i = 0; i + 1 < tokens.size(); i++) {
+      if (!Token.expect(TokenType.KEYWORD, "import", tokens.get(i))
+          || !Token.expect(TokenType.LITERAL, tokens.get(i + 1))) continue;
+      String name = tokens.get(i + 1).VALUE;
+      Path module = ModuleCache.resolve(name.substring(1, name.length() - 1), file.getParent());
+      if (module == null) {
+        update(digest, "missing " + name + "\n");
+      } else {
+        module = module.toAbsolutePath().normalize();
+        update(digest, "module " + name + "\n");
+        // An import cycle is an error the program reports when it runs, so it only needs to be
+        // noticed here to stop hashing.
+        if (hashed.add(module) && !hash(digest, module, hashed)) return false;
+      }
+    }
+    update(digest, "end\n");
+    return true;
+  }
+
+  private static void update(MessageDigest digest, String text) {
+    digest.update(text.getBytes(StandardCharsets.UTF_8));
+  }
+
+  // The interpreter's version, and when it was built (the jar, or the newest class when running
+  // from a directory) so that a rebuilt interpreter doesn't replay results from the old one.
+  private static String version() {
+    String version = ResultCache.class.getPackage().getImplementationVersion();
+    FileTime built = FileTime.fromMillis(0);
+    try {
+      Path classes =
+          Path.of(ResultCache.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+      try (Stream<Path> files = Files.walk(classes)) {
+        for (Path file : (Iterable<Path>) files::iterator) {
+          FileTime modified = Files.getLastModifiedTime(file);
+          if (modified.compareTo(built) > 0) built = modified;
+        }
+      }
+    } catch (IOException | URISyntaxException | RuntimeException error) {
+      // Without a build time the version alone has to do.
+    }
+    return (version == null ? "development" : version) + " " + built;
+  }
+
+  // The cached result for a key, or null if there isn't one.
+  Result load(String key) {
+    Path entry = directory.resolve(key + ".result");
+    byte[] bytes;
+    try {
+      bytes = Files.readAllBytes(entry);
+    } catch (IOException error) {
+      return null;
+    }
+
+    try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+      if (in.readInt() != MAGIC) return null;
+      int status = in.readInt();
+      String output = read(in);
+      String error = in.readBoolean() ? read(in) : null;
+      touch(entry);
+      return new Result(status, output, error);
+    } catch (IOException error) {
+      // A result from an older format or one that was damaged. It gets replaced once the program
+      // runs again.
+      return null;
+    }
+  }
+
+  // Store a result and evict the least recently used ones if the cache went over its limit.
+  // Failing to store only costs the next run its replay, so errors are ignored.
+  void store(String key, Result result) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (DataOutputStream out = new DataOutputStream(bytes)) {
+      out.writeInt(MAGIC);
+      out.writeInt(result.status);
+      write(out, result.output);
+      out.writeBoolean(result.error != null);
+      if (result.error != null) write(out, result.error);
+    } catch (IOException error) {
+      return;
+    }
+    if (bytes.size() > size) return;
+
+    try {
+      Files.createDirectories(directory);
+      Path temporary = Files.createTempFile(directory, key, ".tmp");
+      try {
+        Files.write(temporary, bytes.toByteArray());
+        Path entry = directory.resolve(key + ".result");
+        try {
+          Files.move(temporary, entry, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException error) {
+          Files.move(temporary, entry, StandardCopyOption.REPLACE_EXISTING);
+        }
+      } finally {
+        Files.deleteIfExists(temporary);
+      }
+      evict();
+    } catch (IOException error) {
+      // Nothing was stored.
+    }
+  }
+
+  // Delete the least recently used results until the cache fits in its limit.
+  private void evict() throws IOException {
+    List<Path> entries = new ArrayList<>();
+    try (Stream<Path> files = Files.list(directory)) {
+      files.filter(file -> file.toString().endsWith(".result")).forEach(entries::add);
+    }
+
+    Map<Path, BasicFileAttributes> attributes = new HashMap<>();
+    long total = 0;
+    for (Path entry : entries) {
+      try {
+        BasicFileAttributes attribute = Files.readAttributes(entry, BasicFileAttributes.class);
+        attributes.put(entry, attribute);
+        total += attribute.size();
+      } catch (NoSuchFileException error) {
+        // Another process evicted it.
+      }
+    }
+    if (total <= size) return;
+
+    List<Path> oldestFirst = new ArrayList<>(attributes.keySet());
+    oldestFirst.sort(Comparator.comparing(entry -> attributes.get(entry).lastModifiedTime()));
+    for (Path entry : oldestFirst) {
+      if (total <= size) break;
+      Files.deleteIfExists(entry);
+      total -= attributes.get(entry).size();
+    }
+  }
+
+  private static void touch(Path entry) {
+    try {
+      Files.setLastModifiedTime(entry, FileTime.fromMillis(System.currentTimeMillis()));
+    } catch (IOException error) {
+      // It was evicted in the meantime, which is fine.
+    }
+  }
+
+  private static void write(DataOutputStream out, String text) throws IOException {
+    byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String read(DataInputStream in) throws IOException {
+    byte[] bytes = new byte[in.readInt()];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  // Passes output through to where it would have gone and keeps a copy of it. A program whose
+  // output couldn't fit in the cache anyway stops being copied.
+  private static final class Recorder extends Writer {
+    private final Writer out;
+    private final long limit;
+    private final StringBuilder copy = new StringBuilder();
+    boolean overflowed;
+
+    Recorder(Writer out, long limit) {
+      this.out = out;
+      this.limit = limit;
+    }
+
+    public void write(char[] buffer, int offset, int length) throws IOException {
+      out.write(buffer, offset, length);
+      if (overflowed) return;
+      if (copy.length() + length > limit) {
+        overflowed = true;
+        copy.setLength(0);
+        return;
+      }
+      copy.append(buffer, offset, length);
+    }
+
+    public void flush() throws IOException {
+      out.flush();
+    }
+
+    public void close() throws IOException {
+      out.flush();
+    }
+
+    public String toString() {
+      return copy.toString();
+    }
+  }
+}
@@ -1,8 +1,41 @@
 package io.github.yemouu.SCLInterpreter;
 
+// A byte, 8 unsigned bits written in hex (0FFh).
 public class SCLByte extends TypedNumericValue {
+  // Every byte value, so operators on bytes and reading an element of a byte array never create a
+  // new value.
+  private static final SCLByte[] VALUES = new SCLByte[256];
+
+  static {
+    for (int i = 0; i < VALUES.length; i++) VALUES[i] = new SCLByte(i, null, true);
+  }
+
+  static final SCLByte UNDEFINED = new SCLByte(0, null, false);
+
+  private final int value;
+
+  // How the byte was written in the program (0FEh), which is how a byte that came straight from a
+  // constant has always been displayed. Null for bytes that were worked out.
+  private final String text;
+
+  // Parse a byte written the way it is in a program. Null gives a byte for a variable that doesn't
+  // have a value yet.
   public SCLByte(String value) {
-    super(SCLTypes.BYTE, value);
+    this(
+        value == null ? 0 : Integer.parseInt(value.substring(0, value.length() - 1), 16),
+        value,
+        value != null);
+  }
+
+  private SCLByte(int value, String text, boolean defined) {
+    super(SCLTypes.BYTE, defined);
+    this.value = value & 0xFF;
+    this.text = text;
+  }
+
+  // The byte holding the lowest 8 bits of an integer.
+  static SCLByte of(int value) {
+    return VALUES[value & 0xFF];
   }
 
   // Check if a string is a SCL hex.
@@ -15,95 +48,33 @@ public class SCLByte extends TypedNumericValue {
 
   // Convert SCLByte to an SCLUnsignedInteger
   public SCLUnsignedInteger toSCLUnsignedInteger() {
-    if (VALUE == null) throw new VariableNotDefinedException();
-
-    return new SCLUnsignedInteger(
-        Integer.toUnsignedString(
-            Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16)));
-  }
-
-  public TypedNumericValue bitwiseAnd(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    // Grab the 2 characters inside of the SCL hex value and parse it as an unsigned integer. We
-    // don't hard code the end index because our SCL hex value could be either 3 or 4 characters.
-    int lhs = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLByte(intToSCLHex(lhs & rhs));
+    return (SCLUnsignedInteger) to(SCLTypes.UNSIGNED_INTEGER);
   }
 
-  public TypedNumericValue bitwiseOr(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLByte(intToSCLHex(lhs | rhs));
+  String format() {
+    if (text != null) return text;
+    return "0" + Integer.toHexString(value) + "h";
   }
 
-  public TypedNumericValue bitwiseXor(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
 
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLByte(intToSCLHex(lhs ^ rhs));
+    return value;
   }
 
-  public TypedNumericValue leftShift(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLByte(intToSCLHex(lhs << rhs));
-  }
+  // The operators for two bytes, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of(((SCLByte) lhs).value & ((SCLByte) rhs).value),
+    (lhs, rhs) -> of(((SCLByte) lhs).value | ((SCLByte) rhs).value),
+    (lhs, rhs) -> of(((SCLByte) lhs).value ^ ((SCLByte) rhs).value),
+    (lhs, rhs) -> of(((SCLByte) lhs).value << ((SCLByte) rhs).value),
+    // Unsigned, so zeros fill in from the left.
+    (lhs, rhs) -> of(((SCLByte) lhs).value >>> ((SCLByte) rhs).value)
+  };
 
   public TypedNumericValue negate() {
-    if (VALUE == null) throw new VariableNotDefinedException();
-
-    int rawValue = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
-    return new SCLByte(intToSCLHex(~rawValue));
-  }
-
-  public TypedNumericValue rightShift(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE.substring(1, VALUE.length() - 1), 16);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLByte(intToSCLHex(lhs >>> rhs));
-  }
+    if (!hasValue()) throw new VariableNotDefinedException();
 
-  private String intToSCLHex(int integer) {
-    String hex = Integer.toHexString(integer);
-    if (hex.length() < 2) return "0" + hex + "h";
-    return "0" + hex.substring(hex.length() - 2) + "h";
+    return of(~value);
   }
 }
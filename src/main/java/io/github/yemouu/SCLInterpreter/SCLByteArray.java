@@ -0,0 +1,180 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+// A fixed size array of bytes, declared with "define buf of type byte array 4096". Every element
+// starts out as 00h.
+//
+// The bitwise operators work on every element at once: between two arrays of the same size, or
+// between an array and a byte or unsigned integer (which applies the number to every element, as
+// a byte). They always give a new array and leave their operands alone. Elements are read with
+// buf[i] and written with "set buf[i] = value", which writes the lowest 8 bits of the value.
+//
+// Unlike every other value, the bytes of an array are changed in place when an element is set. To
+// keep that from being seen through another variable, every variable has an array of its own:
+// assigning an array to a variable (or passing it to a subprogram) copies it.
+public final class SCLByteArray extends TypedValue {
+  private final byte[] bytes;
+
+  SCLByteArray(byte[] bytes) {
+    // VALUE describes the array instead of holding its contents, so that it isn't null (null means
+    // a variable without a value).
+    super(SCLTypes.BYTE_ARRAY, "byte array " + bytes.length);
+    this.bytes = bytes;
+  }
+
+  // The value of a newly defined array of the given type, e.g. "byte array 4096".
+  static SCLByteArray ofType(String type) {
+    return new SCLByteArray(new byte[length(type)]);
+  }
+
+  // The number of elements of an array of the given type.
+  static int length(String type) {
+    String size = type.substring("byte array ".length());
+    long length;
+    try {
+      // The size is a constant, which can also be written in hex.
+      if (size.endsWith("h")) length = Long.parseLong(size.substring(0, size.length() - 1), 16);
+      else length = Long.parseLong(size);
+    } catch (NumberFormatException error) {
+      length = -1;
+    }
+    if (length <= 0 || length > Integer.MAX_VALUE - 8)
+      throw new TypeMismatchException("Byte arrays can't have " + size + " elements");
+    return (int) length;
+  }
+
+  public int length() {
+    return bytes.length;
+  }
+
+  // A copy of the bytes, for embedders.
+  public byte[] toByteArray() {
+    return bytes.clone();
+  }
+
+  // Fill the array from the next length() bytes of a buffer, or set one element, for RecordStream
+  // to give a program each record without allocating.
+  void load(ByteBuffer source) {
+    source.get(bytes);
+  }
+
+  void load(int index, byte value) {
+    bytes[index] = value;
+  }
+
+  SCLByteArray copy() {
+    return new SCLByteArray(bytes.clone());
+  }
+
+  SCLByte get(long index) {
+    return SCLByte.of(bytes[check(index)]);
+  }
+
+  void set(long index, TypedValue value) {
+    bytes[check(index)] = (byte) Expression.numeric(value).longValue();
+  }
+
+  private int check(long index) {
+    if (index < 0 || index >= bytes.length)
+      throw new IndexOutOfRangeException(
+          "Tried to use element " + index + " of a byte array with " + bytes.length + " elements");
+    return (int) index;
+  }
+
+  // Assign a value to a variable holding this array. An array of the same size is copied in, a
+  // number sets every element. The result is a new array, so the array this was is left alone.
+  SCLByteArray assign(TypedValue value) {
+    byte[] result = new byte[bytes.length];
+    if (value instanceof SCLByteArray) {
+      byte[] source = ((SCLByteArray) value).bytes;
+      sameLength(this, (SCLByteArray) value);
+      System.arraycopy(source, 0, result, 0, result.length);
+    } else Arrays.fill(result, (byte) Expression.numeric(value).longValue());
+    return new SCLByteArray(result);
+  }
+
+  // Apply a bitwise operator where at least one side is a byte array.
+  static SCLByteArray apply(String operator, TypedValue lhs, TypedValue rhs) {
+    ByteKernels kernels = ByteKernels.INSTANCE;
+    if (lhs instanceof SCLByteArray && rhs instanceof SCLByteArray) {
+      SCLByteArray left = (SCLByteArray) lhs;
+      SCLByteArray right = (SCLByteArray) rhs;
+      sameLength(left, right);
+      byte[] out = new byte[left.bytes.length];
+      switch (operator) {
+        case "band":
+          kernels.and(left.bytes, right.bytes, out);
+          break;
+        case "bor":
+          kernels.or(left.bytes, right.bytes, out);
+          break;
+        case "bxor":
+          kernels.xor(left.bytes, right.bytes, out);
+          break;
+        default:
+          throw new TypeMismatchException(
+              "Tried to " + operator + " a byte array by a byte array, shifts need a number");
+      }
+      return new SCLByteArray(out);
+    }
+
+    // band, bor, and bxor don't care which side the array is on, shifts need the array first.
+    boolean arrayFirst = lhs instanceof SCLByteArray;
+    SCLByteArray array = (SCLByteArray) (arrayFirst ? lhs : rhs);
+    long number = Expression.numeric(arrayFirst ? rhs : lhs).longValue();
+    byte[] out = new byte[array.bytes.length];
+    switch (operator) {
+      case "band":
+        kernels.and(array.bytes, (byte) number, out);
+        break;
+      case "bor":
+        kernels.or(array.bytes, (byte) number, out);
+        break;
+      case "bxor":
+        kernels.xor(array.bytes, (byte) number, out);
+        break;
+      case "lshift":
+      case "rshift":
+        if (!arrayFirst)
+          throw new TypeMismatchException("Tried to shift " + lhs + " by a byte array");
+        // The same shift count a byte would use. Shifting an 8 bit value by 8 or more leaves
+        // nothing, the kernels only have to handle 0 through 7.
+        int count = (int) number & 31;
+        if (count < 8) {
+          if (operator.equals("lshift")) kernels.shiftLeft(array.bytes, count, out);
+          else kernels.shiftRight(array.bytes, count, out);
+        }
+        break;
+      default:
+        throw new UnexpectedTokenException("Unexpected operator, " + operator);
+    }
+    return new SCLByteArray(out);
+  }
+
+  SCLByteArray negate() {
+    byte[] out = new byte[bytes.length];
+    ByteKernels.INSTANCE.not(bytes, out);
+    return new SCLByteArray(out);
+  }
+
+  private static void sameLength(SCLByteArray lhs, SCLByteArray rhs) {
+    if (lhs.bytes.length != rhs.bytes.length)
+      throw new TypeMismatchException(
+          "Tried to combine a byte array of "
+              + lhs.bytes.length
+              + " elements with one of "
+              + rhs.bytes.length);
+  }
+
+  // How a display statement shows the array: every element as a byte, separated by spaces.
+  String display() {
+    StringBuilder string = new StringBuilder(bytes.length * 5);
+    for (int i = 0; i < bytes.length; i++) {
+      if (i != 0) string.append(' ');
+      string.append(SCLByte.of(bytes[i]).getText());
+    }
+    return string.toString();
+  }
+}
@@ -0,0 +1,105 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+// A file whose bytes a program reads and writes like the elements of a byte array, declared with
+// define data of type byte file "blob.bin". The file is opened for reading only, unless the
+// declaration ends with writable. Relative paths are found from the directory of the program that
+// declares the variable, the same way imports are (or the directory the interpreter runs in, for a
+// program that came from memory), and the file has to exist already: its length is the number of
+// elements, which length data tells the program.
+//
+// The file is memory mapped, so the bytes are never copied onto the heap and files much larger
+// than the memory the JVM has can be processed. A single mapping can't be larger than 2 GiB, so the
+// file is mapped in segments of 1 GiB. A byte written to a writable file goes to the file itself
+// (through the operating system's page cache), where every process that maps or reads it sees it.
+//
+// A byte file can't be assigned or used with the bitwise operators, only its elements can. Every
+// run of a program opens the file again when it declares the variable, and since that means its
+// result depends on more than the program, these programs are never replayed by the ResultCache.
+public final class SCLByteFile extends TypedValue {
+  private static final int SEGMENT_BITS = 30;
+  private static final int SEGMENT = 1 << SEGMENT_BITS;
+
+  private final MappedByteBuffer[] segments;
+  private final long length;
+  private final boolean writable;
+
+  private SCLByteFile(String path, MappedByteBuffer[] segments, long length, boolean writable) {
+    super(SCLTypes.BYTE_FILE, "byte file " + path);
+    this.segments = segments;
+    this.length = length;
+    this.writable = writable;
+  }
+
+  // Whether a type is a byte file, e.g. byte file "blob.bin" writable.
+  static boolean isType(String type) {
+    return type.startsWith("byte file ");
+  }
+
+  // Open the file a declaration names, finding a relative path from the current directory.
+  static SCLByteFile ofType(String type) {
+    return ofType(type, null);
+  }
+
+  // Same as above, but a relative path is found from the given directory unless it is null.
+  static SCLByteFile ofType(String type, Path directory) {
+    String path = type.substring("byte file ".length());
+    boolean writable = path.endsWith(" writable");
+    if (writable) path = path.substring(0, path.length() - " writable".length());
+    if (path.length() < 2 || !path.startsWith("\"") || !path.endsWith("\""))
+      throw new TypeMismatchException("Expected the name of a file in quotes but got " + path);
+    return open(path, directory, writable);
+  }
+
+  private static SCLByteFile open(String path, Path directory, boolean writable) {
+    Path file = Path.of(path.substring(1, path.length() - 1));
+    if (directory != null) file = directory.resolve(file);
+    FileChannel.MapMode mode =
+        writable ? FileChannel.MapMode.READ_WRITE : FileChannel.MapMode.READ_ONLY;
+    try (FileChannel channel =
+        writable
+            ? FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)
+            : FileChannel.open(file, StandardOpenOption.READ)) {
+      // The mappings stay valid after the channel is closed.
+      long length = channel.size();
+      MappedByteBuffer[] segments =
+          new MappedByteBuffer[(int) ((length + SEGMENT - 1) >>> SEGMENT_BITS)];
+      for (int i = 0; i < segments.length; i++) {
+        long offset = (long) i << SEGMENT_BITS;
+        segments[i] = channel.map(mode, offset, Math.min(SEGMENT, length - offset));
+      }
+      return new SCLByteFile(path, segments, length, writable);
+    } catch (IOException | UnsupportedOperationException error) {
+      throw new FileAccessException("Couldn't open " + path + ", " + error);
+    }
+  }
+
+  public long length() {
+    return length;
+  }
+
+  SCLByte get(long index) {
+    check(index);
+    return SCLByte.of(segments[(int) (index >>> SEGMENT_BITS)].get((int) index & (SEGMENT - 1)));
+  }
+
+  void set(long index, TypedValue value) {
+    check(index);
+    if (!writable)
+      throw new FileAccessException(
+          "Tried to set an element of " + getText() + " but it was opened for reading only");
+    segments[(int) (index >>> SEGMENT_BITS)]
+        .put((int) index & (SEGMENT - 1), (byte) Expression.numeric(value).longValue());
+  }
+
+  private void check(long index) {
+    if (index < 0 || index >= length)
+      throw new IndexOutOfRangeException(
+          "Tried to use element " + index + " of " + getText() + " with " + length + " elements");
+  }
+}
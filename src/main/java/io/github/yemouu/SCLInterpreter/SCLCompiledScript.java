@@ -0,0 +1,79 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.HashMap;
+import java.util.Map;
+import javax.script.Bindings;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngine;
+import javax.script.ScriptException;
+
+// A script that has already been parsed. Each eval creates a fresh Interpreter over the same
+// program, so a CompiledScript can be evaluated any number of times (and from any number of
+// threads at once) without parsing again.
+public class SCLCompiledScript extends CompiledScript {
+  private final ScriptEngine engine;
+  private final SCLProgram program;
+
+  SCLCompiledScript(ScriptEngine engine, SCLProgram program) {
+    this.engine = engine;
+    this.program = program;
+  }
+
+  public SCLProgram getProgram() {
+    return program;
+  }
+
+  // Run the script. Global scope bindings are applied first so that engine scope bindings take
+  // priority. After main returns, the final value of every global variable the program declared is
+  // written to the engine scope so the caller can read the results, whether or not it bound the
+  // variable first. SCL programs don't return a value.
+  public Object eval(ScriptContext context) throws ScriptException {
+    Map<String, Object> bindings = new HashMap<>();
+    Bindings globalScope = context.getBindings(ScriptContext.GLOBAL_SCOPE);
+    Bindings engineScope = context.getBindings(ScriptContext.ENGINE_SCOPE);
+    if (globalScope != null) bindings.putAll(globalScope);
+    if (engineScope != null) bindings.putAll(engineScope);
+
+    Interpreter interpreter = new Interpreter(program);
+    interpreter.setOutput(context.getWriter());
+    interpreter.setBindings(bindings);
+
+    try {
+      interpreter.execute();
+    } catch (RuntimeException error) {
+      throw SCLScriptEngine.toScriptException(error);
+    }
+
+    if (engineScope != null)
+      for (String name : interpreter.getVariableNames()) {
+        TypedValue value = interpreter.getValue(name);
+        if (value.hasValue()) engineScope.put(name, toJavaValue(value));
+      }
+
+    return null;
+  }
+
+  public ScriptEngine getEngine() {
+    return engine;
+  }
+
+  // Convert an SCL value back into something a Java caller can use. Strings lose their quotation
+  // marks, bytes become Integers, byte arrays become byte[], byte files become their declaration
+  // (byte file "blob.bin"), and every other number becomes a Long.
+  // Unsigned long values above Long.MAX_VALUE keep their 64 bits, so they come out negative.
+  private static Object toJavaValue(TypedValue value) {
+    switch (value.TYPE) {
+      case STRING:
+        return value.getText().substring(1, value.getText().length() - 1);
+      case BYTE:
+        return (int) ((SCLByte) value).longValue();
+      case BYTE_ARRAY:
+        return ((SCLByteArray) value).toByteArray();
+      case BYTE_FILE:
+        return value.getText();
+      default:
+        return ((TypedNumericValue) value).longValue();
+    }
+  }
+}
@@ -0,0 +1,304 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.attribute.PosixFileAttributes;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+
+// A long running interpreter that accepts programs over a Unix domain socket. Starting a JVM and
+// loading our classes costs far more than running a small SCL program, so the daemon pays for that
+// once and keeps the JIT compiled interpreter (and, through the ModuleCache, the programs it has
+// already parsed) around for every request after the first. The daemon reads files through NIO
+// instead of the scanner, because the scanner exits the JVM when it can't find a file and that
+// would take the daemon down with it.
+//
+// A request is a program (either a path or the source itself) followed by name=value arguments
+// which are bound to the program's variables. The daemon streams the program's stdout and stderr
+// back as frames and finishes with a frame carrying the exit status.
+public class SCLDaemon {
+  // Request kinds sent by the client.
+  private static final int REQUEST_PATH = 0;
+  private static final int REQUEST_SOURCE = 1;
+  private static final int REQUEST_STOP = 2;
+
+  // Frame kinds sent back by the daemon. Every frame is the kind followed by an int. For output
+  // frames the int is the number of bytes that follow, for the exit frame it is the exit status.
+  private static final int FRAME_EXIT = 0;
+  private static final int FRAME_STDOUT = 1;
+  private static final int FRAME_STDERR = 2;
+
+  private final Path socket;
+  private volatile boolean running = true;
+
+  public SCLDaemon(Path socket) {
+    this.socket = socket;
+  }
+
+  // Only the user running the daemon may use its socket. Anybody who can connect to it can run
+  // programs with the daemon's access to files, which is everything that user can reach.
+  private static final Set<PosixFilePermission> OWNER_ONLY_DIRECTORY =
+      PosixFilePermissions.fromString("rwx------");
+  private static final Set<PosixFilePermission> OWNER_ONLY_SOCKET =
+      PosixFilePermissions.fromString("rw-------");
+
+  // The socket used when one isn't given. Each user gets their own daemon, with its socket in a
+  // directory only they can use: scli in $XDG_RUNTIME_DIR when there is one, otherwise
+  // scli-<user> in the temporary directory.
+  public static Path defaultSocket() {
+    return defaultDirectory().resolve("daemon.sock");
+  }
+
+  private static Path defaultDirectory() {
+    String runtime = System.getenv("XDG_RUNTIME_DIR");
+    if (runtime != null && !runtime.isEmpty() && Files.isDirectory(Path.of(runtime)))
+      return Path.of(runtime, "scli");
+    return Path.of(System.getProperty("java.io.tmpdir"), "scli-" + System.getProperty("user.name"));
+  }
+
+  // Make the default socket's directory if it isn't there yet, and check that one that is belongs
+  // to us and nobody else can use it. The temporary directory is shared, so somebody else could
+  // have made it first to put their own socket where clients look for ours, or to swap the stale
+  // socket we delete for something else. Inside a directory only we can write to, neither can
+  // happen.
+  private static void privateDirectory(Path directory) throws IOException {
+    if (!FileSystems.getDefault().supportedFileAttributeViews().contains("posix")) {
+      Files.createDirectories(directory);
+      return;
+    }
+    try {
+      Files.createDirectory(directory, PosixFilePermissions.asFileAttribute(OWNER_ONLY_DIRECTORY));
+    } catch (FileAlreadyExistsException error) {
+      // Checked below.
+    }
+    PosixFileAttributes attributes =
+        Files.readAttributes(directory, PosixFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+    UserPrincipal user =
+        directory
+            .getFileSystem()
+            .getUserPrincipalLookupService()
+            .lookupPrincipalByName(System.getProperty("user.name"));
+    if (!attributes.isDirectory()
+        || !attributes.owner().equals(user)
+        || !attributes.permissions().equals(OWNER_ONLY_DIRECTORY))
+      throw new IOException(
+          directory + " has to be a directory that only " + user.getName() + " can use");
+  }
+
+  // Accept requests until a client asks us to stop. Each request is handled on its own thread so a
+  // long running program doesn't hold up everybody else. Once asked to stop, we wait for the
+  // requests already running to finish before returning.
+  public void serve() throws IOException, InterruptedException {
+    if (socket.toAbsolutePath().getParent().equals(defaultDirectory().toAbsolutePath()))
+      privateDirectory(defaultDirectory());
+
+    // A socket file left behind by a daemon that didn't shut down cleanly would stop us from
+    // binding. If nothing answers on it, it is safe to remove.
+    if (Files.exists(socket)) {
+      if (isListening(socket))
+        throw new IOException("A daemon is already listening on " + socket);
+      Files.delete(socket);
+    }
+
+    ExecutorService executor = ConcurrentRunner.newExecutor();
+    try (ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX)) {
+      server.bind(UnixDomainSocketAddress.of(socket));
+      // A socket given with --socket can be in a directory others can use, so the socket itself
+      // is closed to them too. Connecting needs write permission on it.
+      if (FileSystems.getDefault().supportedFileAttributeViews().contains("posix"))
+        Files.setPosixFilePermissions(socket, OWNER_ONLY_SOCKET);
+      System.err.println("Listening on " + socket);
+
+      while (running) {
+        SocketChannel channel = server.accept();
+        executor.execute(() -> handle(channel));
+      }
+    } finally {
+      executor.shutdown();
+      Files.deleteIfExists(socket);
+    }
+    // The handlers run on daemon threads, so the JVM would otherwise exit in the middle of them.
+    executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  // Check if something accepts connections on the socket.
+  private static boolean isListening(Path socket) {
+    try {
+      SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+      return true;
+    } catch (IOException error) {
+      return false;
+    }
+  }
+
+  // Read a request, run the program, and send back its output and exit status.
+  private void handle(SocketChannel channel) {
+    try (channel) {
+      DataInputStream in = new DataInputStream(Channels.newInputStream(channel));
+      DataOutputStream frames = new DataOutputStream(Channels.newOutputStream(channel));
+
+      int kind = in.readInt();
+      if (kind == REQUEST_STOP) {
+        shutdown();
+        sendExit(frames, 0);
+        return;
+      }
+
+      String program = readString(in);
+      Map<String, Object> bindings = new HashMap<>();
+      int argumentCount = in.readInt();
+      for (int i = 0; i < argumentCount; i++) {
+        String argument = readString(in);
+        int separator = argument.indexOf('=');
+        if (separator > 0)
+          bindings.put(argument.substring(0, separator), argument.substring(separator + 1));
+      }
+
+      PrintWriter stdout = frameWriter(frames, FRAME_STDOUT);
+      PrintWriter stderr = frameWriter(frames, FRAME_STDERR);
+      int status = 0;
+      try {
+        SCLProgram parsed =
+            kind == REQUEST_PATH ? ModuleCache.load(Path.of(program)) : new SCLProgram(program);
+        Interpreter interpreter = new Interpreter(parsed);
+        interpreter.setOutput(stdout);
+        interpreter.setBindings(bindings);
+        interpreter.execute();
+      } catch (Throwable error) {
+        // Anything that goes wrong, even an Error like running out of memory, is the program's
+        // failure. The client still gets an exit status instead of the connection just closing.
+        error.printStackTrace(stderr);
+        status = 1;
+      }
+      stdout.flush();
+      stderr.flush();
+      sendExit(frames, status);
+    } catch (IOException error) {
+      // The client went away. There is nobody left to tell.
+    }
+  }
+
+  // Stop accepting requests. The accept loop only checks the flag between requests, so we wake it
+  // up with a connection of our own.
+  private void shutdown() throws IOException {
+    running = false;
+    SocketChannel.open(UnixDomainSocketAddress.of(socket)).close();
+  }
+
+  // A writer that sends everything written to it as frames of the given kind. The interpreter
+  // flushes at the end of every display statement, so each line reaches the client right away.
+  private static PrintWriter frameWriter(DataOutputStream frames, int kind) {
+    OutputStream stream =
+        new ByteArrayOutputStream() {
+          public void flush() throws IOException {
+            if (count == 0) return;
+            synchronized (frames) {
+              frames.writeInt(kind);
+              frames.writeInt(count);
+              frames.write(buf, 0, count);
+              frames.flush();
+            }
+            reset();
+          }
+        };
+    return new PrintWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), true);
+  }
+
+  // Strings are sent as their length followed by their UTF-8 bytes. We don't use writeUTF() because
+  // it can't send anything longer than 64K, which a program's source easily could be.
+  private static void writeString(DataOutputStream out, String string) throws IOException {
+    byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  private static String readString(DataInputStream in) throws IOException {
+    return new String(in.readNBytes(in.readInt()), StandardCharsets.UTF_8);
+  }
+
+  private static void sendExit(DataOutputStream frames, int status) throws IOException {
+    synchronized (frames) {
+      frames.writeInt(FRAME_EXIT);
+      frames.writeInt(status);
+      frames.flush();
+    }
+  }
+
+  // Send a program to the daemon and copy its output to our own stdout and stderr. Returns the
+  // program's exit status. A filename of - sends the source read from stdin instead of a path.
+  public static int client(Path socket, String filename, String[] arguments) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+      if (filename.equals("-")) {
+        out.writeInt(REQUEST_SOURCE);
+        writeString(out, new String(System.in.readAllBytes(), StandardCharsets.UTF_8));
+      } else {
+        // The daemon has its own working directory, so relative paths need to be resolved here.
+        out.writeInt(REQUEST_PATH);
+        writeString(out, Path.of(filename).toAbsolutePath().normalize().toString());
+      }
+      out.writeInt(arguments.length);
+      for (String argument : arguments) writeString(out, argument);
+      out.flush();
+
+      return readFrames(new DataInputStream(Channels.newInputStream(channel)));
+    }
+  }
+
+  // Ask the daemon to shut down.
+  public static int stop(Path socket) throws IOException {
+    try (SocketChannel channel = SocketChannel.open(UnixDomainSocketAddress.of(socket))) {
+      DataOutputStream out = new DataOutputStream(Channels.newOutputStream(channel));
+      out.writeInt(REQUEST_STOP);
+      out.flush();
+
+      return readFrames(new DataInputStream(Channels.newInputStream(channel)));
+    }
+  }
+
+  // Copy output frames to stdout and stderr until we get the exit frame.
+  private static int readFrames(DataInputStream in) throws IOException {
+    while (true) {
+      int kind = in.readInt();
+      int value = in.readInt();
+      switch (kind) {
+        case FRAME_EXIT:
+          System.out.flush();
+          System.err.flush();
+          return value;
+        case FRAME_STDOUT:
+          System.out.write(in.readNBytes(value));
+          System.out.flush();
+          break;
+        case FRAME_STDERR:
+          System.err.write(in.readNBytes(value));
+          System.err.flush();
+          break;
+        default:
+          throw new IOException("Unexpected frame " + kind);
+      }
+    }
+  }
+}
@@ -0,0 +1,49 @@
+package io.github.yemouu.SCLInterpreter;
+
+// A 32 bit signed integer.
+public class SCLInteger extends TypedNumericValue {
+  static final SCLInteger UNDEFINED = new SCLInteger(0, false);
+
+  private final int value;
+
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLInteger(String value) {
+    this(value == null ? 0 : Integer.parseInt(value), value != null);
+  }
+
+  private SCLInteger(int value, boolean defined) {
+    super(SCLTypes.INTEGER, defined);
+    this.value = value;
+  }
+
+  static SCLInteger of(int value) {
+    return new SCLInteger(value, true);
+  }
+
+  String format() {
+    return Integer.toString(value);
+  }
+
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return value;
+  }
+
+  // The operators for two integers, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of((((SCLInteger) lhs).value & ((SCLInteger) rhs).value)),
+    (lhs, rhs) -> of((((SCLInteger) lhs).value | ((SCLInteger) rhs).value)),
+    (lhs, rhs) -> of((((SCLInteger) lhs).value ^ ((SCLInteger) rhs).value)),
+    (lhs, rhs) -> of((((SCLInteger) lhs).value << ((SCLInteger) rhs).value)),
+    // Signed, so the sign bit fills in from the left.
+    (lhs, rhs) -> of((((SCLInteger) lhs).value >> ((SCLInteger) rhs).value))
+  };
+
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return of(~value);
+  }
+}
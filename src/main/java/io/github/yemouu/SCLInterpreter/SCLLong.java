@@ -0,0 +1,49 @@
+package io.github.yemouu.SCLInterpreter;
+
+// A 64 bit signed integer.
+public class SCLLong extends TypedNumericValue {
+  static final SCLLong UNDEFINED = new SCLLong(0L, false);
+
+  private final long value;
+
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLLong(String value) {
+    this(value == null ? 0 : Long.parseLong(value), value != null);
+  }
+
+  private SCLLong(long value, boolean defined) {
+    super(SCLTypes.LONG, defined);
+    this.value = value;
+  }
+
+  static SCLLong of(long value) {
+    return new SCLLong(value, true);
+  }
+
+  String format() {
+    return Long.toString(value);
+  }
+
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return value;
+  }
+
+  // The operators for two longs, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of((((SCLLong) lhs).value & ((SCLLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLLong) lhs).value | ((SCLLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLLong) lhs).value ^ ((SCLLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLLong) lhs).value << ((SCLLong) rhs).value)),
+    // Signed, so the sign bit fills in from the left.
+    (lhs, rhs) -> of((((SCLLong) lhs).value >> ((SCLLong) rhs).value))
+  };
+
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return of(~value);
+  }
+}
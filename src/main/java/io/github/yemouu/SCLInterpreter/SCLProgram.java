@@ -0,0 +1,320 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// A parsed program. This holds everything about a program that doesn't change while it runs, the
+// statements from the parser, the declarations that need to be interpreted before main is called,
+// and the body of each subprogram. Nothing in here is modified after the constructor returns, so a
+// single SCLProgram can be shared by any number of Interpreters running on different threads. The
+// Interpreter holds the state of a single execution (identifiers and their values).
+//
+// Imported modules are programs of their own. They are loaded through the ModuleCache, so every
+// program that imports the same file shares the same SCLProgram for it.
+public final class SCLProgram {
+  // The file this program was read from, or null if it came from memory.
+  private final Path path;
+
+  // Every statement from the parser in the order that they appeared in the file.
+  private final List<List<Token>> statements;
+
+  // The import, symbol, global define, and function statements in the order that they appeared in
+  // the file. These are interpreted at the start of every execution to build up the identifiers.
+  private final List<List<Token>> declarations;
+
+  // Each subprogram (its parameters, local variables, and body) and the position of each
+  // subprogram in that list, keyed by the subprogram's name.
+  private final List<Subprogram> subprograms;
+  private final Map<String, Integer> subprogramIndexes;
+
+  // The modules this program imports, keyed by the name used in the import statement. Modules that
+  // couldn't be found on the search path aren't in here.
+  private final Map<String, SCLProgram> modules;
+
+  // Every global identifier defined by this program or by the modules it imports.
+  private final Set<String> identifiers;
+
+  // The statements each subprogram was built from, from its function statement to its endfun, in
+  // the same order as subprograms. A program reloaded from a newer copy of its file compares these
+  // to find the subprograms that didn't change.
+  private final List<List<List<Token>>> sources;
+
+  // The subprograms taken as they were from the program this one was reloaded from, see
+  // SCLProgram(Path, SCLProgram). They were already checked, so the TypeChecker skips them.
+  private final Set<Subprogram> reused = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  // Parse a file and prepare it for execution. Imports are looked up next to the file first.
+  public SCLProgram(File file) {
+    this(new Parser(file), file.toPath().toAbsolutePath().normalize(), List.of(), null);
+  }
+
+  // Same as above but reads the file through NIO. Unlike the constructor above, a missing file is
+  // reported to the caller instead of ending the JVM.
+  public SCLProgram(Path file) throws IOException {
+    this(file.toAbsolutePath().normalize(), List.of());
+  }
+
+  // Used by the ModuleCache. The import chain is every file that is being loaded on the way to this
+  // one, which is how we notice a module importing itself.
+  SCLProgram(Path file, List<Path> importChain) throws IOException {
+    this(
+        new Parser(ByteBuffer.wrap(Files.readAllBytes(file)), file.toString()),
+        file,
+        importChain,
+        null);
+  }
+
+  // Parse a newer copy of a file that previous was loaded from, for --watch (see Watcher). Every
+  // subprogram whose statements are token for token the same as they were is taken from previous
+  // instead of being prepared, checked, and compiled again, which also keeps how warm it got and
+  // its compiled form. That is only safe while everything a subprogram can see outside of itself is
+  // the same too, so nothing is reused once any declaration (a global, a symbol, an import, or the
+  // header of a subprogram) changes or an imported module is reloaded.
+  SCLProgram(Path file, SCLProgram previous) throws IOException {
+    this(
+        new Parser(ByteBuffer.wrap(Files.readAllBytes(file)), file.toString()),
+        file.toAbsolutePath().normalize(),
+        List.of(),
+        previous);
+  }
+
+  // Parse a program that is already in memory. Imports are looked up in the current directory.
+  public SCLProgram(String source) {
+    this(new Parser(source), null, List.of(), null);
+  }
+
+  // Parse a program read from a Reader.
+  public SCLProgram(Reader source) {
+    this(new Parser(source), null, List.of(), null);
+  }
+
+  // Parse a UTF-8 encoded program held in a buffer.
+  public SCLProgram(ByteBuffer source) {
+    this(new Parser(source), null, List.of(), null);
+  }
+
+  // Load the imported modules, parse the program, and split the statements from the parser into
+  // declarations and subprogram bodies. The modules have to be loaded before we parse because the
+  // parser rejects identifiers it hasn't seen defined, and the modules are where they are defined.
+  // The parser has already checked the structure of the program, so here we only need to sort each
+  // statement based on its first token. Every statement is copied into an immutable list so that
+  // nobody can change the program out from under an Interpreter that is running it. Last, the
+  // TypeChecker checks the types of every statement and notes the conversion each assignment needs.
+  private SCLProgram(Parser parser, Path path, List<Path> importChain, SCLProgram previous) {
+    this.path = path;
+
+    List<Path> chain = importChain;
+    if (path != null && !importChain.contains(path)) {
+      chain = new ArrayList<>(importChain);
+      chain.add(path);
+    }
+    Path directory = path == null ? null : path.getParent();
+    Map<String, SCLProgram> modules = ModuleCache.loadAll(parser.getImports(), directory, chain);
+
+    Set<String> identifiers = new HashSet<>();
+    for (SCLProgram module : modules.values()) identifiers.addAll(module.getIdentifiers());
+    for (String identifier : identifiers) {
+      if (definesSubprogram(modules, identifier)) parser.defineFunction(identifier);
+      else parser.define(identifier);
+    }
+
+    parser.begin();
+    List<List<Token>> statements = parser.getStatements();
+
+    List<List<Token>> allStatements = new ArrayList<>();
+    List<List<Token>> declarations = new ArrayList<>();
+    List<Subprogram> subprograms = new ArrayList<>();
+    Map<String, Integer> subprogramIndexes = new HashMap<>();
+
+    // The pieces of the subprogram we are in the middle of. A define statement that comes after a
+    // function statement defines a local variable instead of a global one. The subprograms are
+    // only built once every declaration has been seen, because that decides whether an unchanged
+    // one can be reused from previous.
+    List<Token> function = null;
+    List<List<Token>> locals = new ArrayList<>();
+    List<List<Token>> subprogramBuilder = new ArrayList<>();
+    List<List<Token>> source = new ArrayList<>();
+    List<List<Token>> functions = new ArrayList<>();
+    List<List<List<Token>>> allLocals = new ArrayList<>();
+    List<List<List<Token>>> bodies = new ArrayList<>();
+    List<List<List<Token>>> sources = new ArrayList<>();
+
+    for (List<Token> statement : statements) {
+      statement = List.copyOf(statement);
+      allStatements.add(statement);
+      if (function != null || Token.expect(TokenType.KEYWORD, "function", statement.get(0)))
+        source.add(statement);
+
+      Token startToken = statement.get(0);
+      switch (startToken.VALUE) {
+        case "import":
+          declarations.add(statement);
+          break;
+        case "define":
+          if (function != null) {
+            locals.add(statement);
+            break;
+          }
+          declarations.add(statement);
+          identifiers.add(statement.get(1).VALUE);
+          break;
+        case "symbol":
+          declarations.add(statement);
+          identifiers.add(statement.get(1).VALUE);
+          break;
+        case "function":
+          // The subprogram is added when we reach endfun. Because subprograms can't be nested, its
+          // position is the number of subprograms we have finished so far.
+          declarations.add(statement);
+          identifiers.add(statement.get(1).VALUE);
+          subprogramIndexes.put(statement.get(1).VALUE, sources.size());
+          function = statement;
+          break;
+        case "set":
+        case "display":
+        case "exit":
+        case "call":
+        case "return":
+        case "if":
+        case "else":
+        case "endif":
+        case "while":
+        case "endwhile":
+        case "for":
+        case "endfor":
+          subprogramBuilder.add(statement);
+          break;
+        case "endfun":
+          functions.add(function);
+          allLocals.add(locals);
+          bodies.add(subprogramBuilder);
+          sources.add(source);
+          function = null;
+          locals = new ArrayList<>();
+          subprogramBuilder = new ArrayList<>();
+          source = new ArrayList<>();
+          break;
+        case "global":
+        case "variables":
+        case "implementations":
+        case "begin":
+          // These only give the program its structure, there is nothing to interpret.
+          break;
+        default:
+          throw new UnexpectedTokenException("Unexpected token " + startToken);
+      }
+    }
+
+    boolean sameDeclarations =
+        previous != null
+            && previous.modules.equals(modules)
+            && sameStatements(previous.declarations, declarations);
+    for (int i = 0; i < sources.size(); i++) {
+      Subprogram subprogram = null;
+      if (sameDeclarations) {
+        Integer index = previous.subprogramIndexes.get(functions.get(i).get(1).VALUE);
+        if (index != null && sameStatements(previous.sources.get(index), sources.get(i)))
+          subprogram = previous.subprograms.get(index);
+      }
+      if (subprogram != null) reused.add(subprogram);
+      else subprogram = new Subprogram(functions.get(i), allLocals.get(i), bodies.get(i));
+      subprograms.add(subprogram);
+    }
+
+    this.statements = Collections.unmodifiableList(allStatements);
+    this.declarations = Collections.unmodifiableList(declarations);
+    this.subprograms = Collections.unmodifiableList(subprograms);
+    this.subprogramIndexes = Collections.unmodifiableMap(subprogramIndexes);
+    this.modules = Collections.unmodifiableMap(modules);
+    this.identifiers = Collections.unmodifiableSet(identifiers);
+    this.sources = Collections.unmodifiableList(sources);
+
+    // Every type error in the program is reported now, before any of it runs.
+    TypeChecker.check(this);
+  }
+
+  // Whether two lists of statements have the same tokens. Tokens are compared by their type and
+  // text, so a statement that only moved to another line is still the same.
+  private static boolean sameStatements(List<List<Token>> first, List<List<Token>> second) {
+    if (first.size() != second.size()) return false;
+    for (int i = 0; i < first.size(); i++) {
+      List<Token> a = first.get(i);
+      List<Token> b = second.get(i);
+      if (a.size() != b.size()) return false;
+      for (int j = 0; j < a.size(); j++)
+        if (a.get(j).TYPE != b.get(j).TYPE || !a.get(j).VALUE.equals(b.get(j).VALUE))
+          return false;
+    }
+    return true;
+  }
+
+  // Whether one of the modules (or a module they import) defines a subprogram with the given name.
+  private static boolean definesSubprogram(Map<String, SCLProgram> modules, String name) {
+    for (SCLProgram module : modules.values())
+      if (module.subprogramIndexes.containsKey(name) || definesSubprogram(module.modules, name))
+        return true;
+    return false;
+  }
+
+  public Path getPath() {
+    return path;
+  }
+
+  // Get an imported module by the name used in its import statement. Returns null if the module
+  // couldn't be found.
+  public SCLProgram getModule(String name) {
+    return modules.get(name);
+  }
+
+  public Collection<SCLProgram> getModules() {
+    return modules.values();
+  }
+
+  public Set<String> getIdentifiers() {
+    return identifiers;
+  }
+
+  public List<List<Token>> getStatements() {
+    return statements;
+  }
+
+  public List<List<Token>> getDeclarations() {
+    return declarations;
+  }
+
+  // Get a subprogram by its position.
+  public Subprogram getSubprogram(int index) {
+    return subprograms.get(index);
+  }
+
+  // Get the position of a subprogram by its name. Returns null if there is no such subprogram.
+  public Integer getSubprogramIndex(String name) {
+    return subprogramIndexes.get(name);
+  }
+
+  public int getSubprogramCount() {
+    return subprograms.size();
+  }
+
+  // Whether a subprogram was taken from the program this one was reloaded from.
+  boolean isReused(Subprogram subprogram) {
+    return reused.contains(subprogram);
+  }
+
+  int getReusedCount() {
+    return reused.size();
+  }
+}
@@ -4,12 +4,18 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import jdk.jfr.FlightRecorder;
 
 public class SCLScanner {
   // hardcode keywords
@@ -36,19 +42,53 @@ public class SCLScanner {
               "exit",
               "endfun",
               "declarations",
-              "byte"));
+              "byte",
+              "array",
+              "file",
+              "writable",
+              "call",
+              "using",
+              "return",
+              "parameters",
+              "if",
+              "then",
+              "else",
+              "endif",
+              "while",
+              "do",
+              "endwhile",
+              "for",
+              "to",
+              "endfor"));
 
   // hardcode operators
   private static final Set<String> OPERATORS =
-      new HashSet<>(Arrays.asList("=", "band", "bor", "bxor", "negate", "lshift", "rshift"));
+      new HashSet<>(
+          Arrays.asList(
+              "=",
+              "band",
+              "bor",
+              "bxor",
+              "negate",
+              "length",
+              "lshift",
+              "rshift",
+              "equal",
+              "less",
+              "greater"));
 
   // hardcode special symbols
-  private static final Set<String> SPECIAL_SYMBOLS = new HashSet<>(Arrays.asList(",", "(", ")"));
+  private static final Set<String> SPECIAL_SYMBOLS =
+      new HashSet<>(Arrays.asList(",", "(", ")", "[", "]"));
 
   // This is where our tokens will be stored.
   // Methods will be provided to access the tokens.
   private List<Token> tokens;
 
+  // Where the program came from, for the flight recorder. A file's path, or null when the program
+  // is already in memory.
+  private String sourceName = null;
+
   // Remove back to back end of statement tokens
   private void cleanTokens() {
     for (int i = 0; i < tokens.size() - 1; i++) {
@@ -62,162 +102,208 @@ public class SCLScanner {
 
   // Parse the file for all tokens while excluding comments and docstrings.
   public void tokenize(File file) {
+    sourceName = file.getPath();
+    // Try opening the file using the UTF-8 character set
+    try (FileReader fileReader = new FileReader(file, Charset.forName("UTF-8"))) {
+      scan(fileReader);
+    } catch (FileNotFoundException error) {
+      error.printStackTrace();
+      System.exit(1);
+    } catch (IOException error) {
+      error.printStackTrace();
+      System.exit(1);
+    }
+  }
+
+  // Same as above but reads the program from any Reader. Embedders (such as the script engine)
+  // can't have us exit the JVM on an IO error, so we hand the error back to them instead.
+  public void tokenize(Reader reader) {
+    try {
+      scan(reader);
+    } catch (IOException error) {
+      throw new UncheckedIOException(error);
+    }
+  }
+
+  // Tokenize a program that is already in memory.
+  public void tokenize(String source) {
+    tokenize(new StringReader(source));
+  }
+
+  // Tokenize a UTF-8 encoded program held in a buffer. We decode a duplicate so that the caller's
+  // buffer position is left untouched and the same buffer can be tokenized again.
+  public void tokenize(ByteBuffer source) {
+    tokenize(StandardCharsets.UTF_8.decode(source.duplicate()).toString());
+  }
+
+  // Same as above for a program that was read from the file with the given name.
+  public void tokenize(ByteBuffer source, String name) {
+    sourceName = name;
+    tokenize(source);
+  }
+
+  // Build our list of tokens, reporting how long it took to InterpreterMetrics.
+  private void scan(Reader reader) throws IOException {
+    ScanEvent event = null;
+    if (FlightRecorder.isInitialized()) {
+      event = new ScanEvent();
+      event.begin();
+    }
+    long start = System.nanoTime();
+    try {
+      read(reader);
+    } catch (IOException | RuntimeException | Error error) {
+      InterpreterMetrics.exception(error);
+      throw error;
+    }
+    InterpreterMetrics.scanned(System.nanoTime() - start, tokens.size());
+    if (event != null && event.shouldCommit()) {
+      event.source = sourceName;
+      event.tokens = tokens.size();
+      event.commit();
+    }
+  }
+
+  // Read the program character by character and build our list of tokens.
+  private void read(Reader fileReader) throws IOException {
     // Create a new ArrayList to hold all of the tokens.
     tokens = new ArrayList<Token>();
 
-    // Try opening the file using the UTF-8 character set
-    try (FileReader fileReader = new FileReader(file, Charset.forName("UTF-8"))) {
-      // Initialize token and character.
-      // The token variable will be what we use to build up each token
-      // before adding it to our array as we read from the file character by character.
-      String token = "";
-      int character;
-
-      // Read each character of the file.
-      // If we get -1 back, we have reached the end of the file.
-      while ((character = fileReader.read()) != -1) {
-        // This character is usually only used on windows and is always followed by \n which we
-        // actually manage.
-        if (character == '\r') continue;
-
-        // Check for comments.
-        // When we see a forward slash, we will look at the next character in the file.
+    // Initialize token and character.
+    // The token variable will be what we use to build up each token
+    // before adding it to our array as we read from the file character by character.
+    String token = "";
+    int character;
+
+    // Read each character of the file.
+    // If we get -1 back, we have reached the end of the file.
+    while ((character = fileReader.read()) != -1) {
+      // This character is usually only used on windows and is always followed by \n which we
+      // actually manage.
+      if (character == '\r') continue;
+
+      // Check for comments.
+      // When we see a forward slash, we will look at the next character in the file.
+      // We also enter this block if we see that description is our token.
+      if (((character == '/') && token.equals("")) || token.equals("description")) {
+        int nextCharacter = fileReader.read();
+
+        // If the next character is an asterisk, we are in a multi multi line comment.
+        // From here we can chew through the file until we reach the character combination `*/`.
         // We also enter this block if we see that description is our token.
-        if (((character == '/') && token.equals("")) || token.equals("description")) {
-          int nextCharacter = fileReader.read();
-
-          // If the next character is an asterisk, we are in a multi multi line comment.
-          // From here we can chew through the file until we reach the character combination `*/`.
-          // We also enter this block if we see that description is our token.
-          // We assume that description is a docstring and works like a multi line comment.
-          // NOTE: If a multiline comment starts at the end of a statement, the end of statement
-          //       token will be missing
-          if (nextCharacter == '*' || token.equals("description")) {
-            int previousCharacter;
-
-            // We keep track of both the next and the previous character to ensure that we are
-            // stopping at `*/` and not at a single `*` or `/`
-            while (character != -1) {
-              previousCharacter = character;
-              character = fileReader.read();
-
-              // We found `*/`, break out of the while true loop
-              if ((previousCharacter == '*') && (character == '/')) break;
+        // We assume that description is a docstring and works like a multi line comment.
+        // NOTE: If a multiline comment starts at the end of a statement, the end of statement
+        //       token will be missing
+        if (nextCharacter == '*' || token.equals("description")) {
+          int previousCharacter;
+
+          // We keep track of both the next and the previous character to ensure that we are
+          // stopping at `*/` and not at a single `*` or `/`
+          while (character != -1) {
+            previousCharacter = character;
+            character = fileReader.read();
+
+            // We found `*/`, break out of the while true loop
+            if ((previousCharacter == '*') && (character == '/')) break;
+          }
+
+          // In most cases token is already empty, but if we got into this block because
+          // we saw that description was our token, we need to empty the token otherwise
+          // we lose the rest of the file because we continuously enter this block of code.
+          token = "";
+          // There is nothing else to do this iteration, read the next character.
+          continue;
+        } else if (nextCharacter == '/') {
+          // If instead of an asterisk we find another forward slash,
+          // we read to the end of the line and then read the next character.
+          while ((character = fileReader.read()) != -1)
+            if (character == '\n') {
+              // Because the newline character is consumed here instead of later, we need to add
+              // the end of statement token here as well. If we don't do this, comments on the
+              // same line as code won't get their end of statement token.
+              tokens.add(new Token(TokenType.END_OF_STATEMENT, "EOS"));
+              break;
             }
+          // Nothing left to do this iteration
+          continue;
+        } else {
+          // If we didn't find either, then we aren't looking at a comment.
+          // The current implementation may not separate the operands of division
+          // if they aren't separated by a space.
+          // This implementation would also add whitespace to the token if the operands
+          // of division where separated by a space.
+          token += (char) character;
+          token += (char) nextCharacter;
 
-            // In most cases token is already empty, but if we got into this block because
-            // we saw that description was our token, we need to empty the token otherwise
-            // we lose the rest of the file because we continuously enter this block of code.
-            token = "";
-            // There is nothing else to do this iteration, read the next character.
-            continue;
-          } else if (nextCharacter == '/') {
-            // If instead of an asterisk we find another forward slash,
-            // we read to the end of the line and then read the next character.
-            while ((character = fileReader.read()) != -1)
-              if (character == '\n') {
-                // Because the newline character is consumed here instead of later, we need to add
-                // the end of statement token here as well. If we don't do this, comments on the
-                // same line as code won't get their end of statement token.
-                tokens.add(new Token(TokenType.END_OF_STATEMENT, "EOS"));
-                break;
-              }
-            // Nothing left to do this iteration
-            continue;
-          } else {
-            // If we didn't find either, then we aren't looking at a comment.
-            // The current implementation may not separate the operands of division
-            // if they aren't separated by a space.
-            // This implementation would also add whitespace to the token if the operands
-            // of division where separated by a space.
-            token += (char) character;
-            token += (char) nextCharacter;
-
-            // Because we added the new characters to the token already,
-            // we can read the next character.
-            continue;
-          }
+          // Because we added the new characters to the token already,
+          // we can read the next character.
+          continue;
         }
+      }
 
-        // This block of code will look for strings.
-        // When we find a quotation mark we assume that this is the start of a string.
-        // We then chew through the file looking for the next quotation mark.
-        // This implementation does not account for escaped qutation marks.
-        if (character == '"') {
-          // Add the quotation mark to the token
-          token += (char) character;
+      // This block of code will look for strings.
+      // When we find a quotation mark we assume that this is the start of a string.
+      // We then chew through the file looking for the next quotation mark.
+      // This implementation does not account for escaped qutation marks.
+      if (character == '"') {
+        // Add the quotation mark to the token
+        token += (char) character;
 
-          // Add all the characters inbetween the quotation marks to the token
-          while ((character = fileReader.read()) != -1)
-            if (character != '"') token += (char) character;
-            else break;
+        // Add all the characters inbetween the quotation marks to the token
+        while ((character = fileReader.read()) != -1)
+          if (character != '"') token += (char) character;
+          else break;
 
-          // Add the ending quotation mark to the token
-          token += (char) character;
-          // Clear the character value so that the string immediately gets tokenized
-          character = ' ';
+        // Add the ending quotation mark to the token
+        token += (char) character;
+        // Clear the character value so that the string immediately gets tokenized
+        character = ' ';
+      }
+
+      // When we hit a whitespace, or special symbols we know that it is time to tokenize our
+      // token. We check for special symbols here as well because these symbols are often attached
+      // to other tokens instead of being separated by a space. Catching them here gives us a
+      // chance at tokenizing them.
+      if (Character.isWhitespace(character)
+          || SPECIAL_SYMBOLS.contains(String.valueOf((char) character))) {
+        // If the token is empty there is no point in trying to progress.
+        if (!token.equals("")) {
+          // Here we check the token we built against our known keywords, operators, and special
+          // symbols. Strings are checked depending on if they start and end with quotation marks
+          // while constants are checked by if they start with a digit. We assume that everything
+          // else is an identifier.
+          if (KEYWORDS.contains(token)) tokens.add(new Token(TokenType.KEYWORD, token));
+          else if (OPERATORS.contains(token)) tokens.add(new Token(TokenType.OPERATOR, token));
+          else if (SPECIAL_SYMBOLS.contains(token))
+            tokens.add(new Token(TokenType.SPECIAL_SYMBOL, token));
+          else if (token.startsWith("\"") && token.endsWith("\""))
+            tokens.add(new Token(TokenType.LITERAL, token));
+          else if (Character.isDigit(token.charAt(0)))
+            // NOTE: hex values start with a '0' and end with an 'h'
+            tokens.add(new Token(TokenType.CONSTANT, token));
+          else tokens.add(new Token(TokenType.IDENTIFIER, token));
+          token = "";
         }
 
-        // When we hit a whitespace, or special symbols we know that it is time to tokenize our
-        // token. We check for special symbols here as well because these symbols are often attached
-        // to other tokens instead of being separated by a space. Catching them here gives us a
-        // chance at tokenizing them.
-        if (Character.isWhitespace(character)
-            || SPECIAL_SYMBOLS.contains(String.valueOf((char) character))) {
-          // This isn't a particularly elegant solution. Every special symbol that can appear
-          // infront of a token would need to added to the token like this instead of like every
-          // other token. This affects `(`, `[` `{` as well as other special symbols that may appear
-          // infront of other tokens.
-          if (character == '(') token += (char) character;
-
-          // If the token is empty there is no point in trying to progress.
-          if (!token.equals("")) {
-            // Here we check the token we built against our known keywords, operators, and special
-            // symbols. Strings are checked depending on if they start and end with quotation marks
-            // while constants are checked by if they start with a digit. We assume that everything
-            // else is an identifier.
-            if (KEYWORDS.contains(token)) tokens.add(new Token(TokenType.KEYWORD, token));
-            else if (OPERATORS.contains(token)) tokens.add(new Token(TokenType.OPERATOR, token));
-            else if (SPECIAL_SYMBOLS.contains(token))
-              tokens.add(new Token(TokenType.SPECIAL_SYMBOL, token));
-            else if (token.startsWith("\"") && token.endsWith("\""))
-              tokens.add(new Token(TokenType.LITERAL, token));
-            else if (Character.isDigit(token.charAt(0)))
-              // NOTE: hex values start with a '0' and end with an 'h'
-              tokens.add(new Token(TokenType.CONSTANT, token));
-            else tokens.add(new Token(TokenType.IDENTIFIER, token));
-            token = "";
-          }
+        // Because the SCL languages doesn't use semicolons as an end of statement token,
+        // we treat newlines as the end of statement token. With the way this is implemented,
+        // there will be back to back end of statement tokens. To fix this, we will remove back to
+        // back end of statement tokens after tokenizing everything.
+        if (character == '\n') tokens.add(new Token(TokenType.END_OF_STATEMENT, "EOS"));
 
-          // Because the SCL languages doesn't use semicolons as an end of statement token,
-          // we treat newlines as the end of statement token. With the way this is implemented,
-          // there will be back to back end of statement tokens. To fix this, we will remove back to
-          // back end of statement tokens after tokenizing everything.
-          if (character == '\n') tokens.add(new Token(TokenType.END_OF_STATEMENT, "EOS"));
-
-          // If the current character was a whitespace, read the next character instead of
-          // adding the whitespace into the next token.
-          if (Character.isWhitespace(character)) continue;
-
-          // This isn't a particularly elegant solution. Every special symbol that can appear
-          // infront of a token would need to be skipped like this. Without doing this, the
-          // special character would appear as its own token as well as with whatever identifer
-          // or constant it was nexed too. This affects `(`, `[` `{` as well as other special
-          // symbols that may appear infront of other tokens.
-          if (character == '(') continue;
-        }
+        // A special symbol is a token of its own, whatever it was attached to has already been
+        // tokenized above.
+        if (!Character.isWhitespace(character))
+          tokens.add(new Token(TokenType.SPECIAL_SYMBOL, String.valueOf((char) character)));
 
-        // Add the current character to the token
-        token += (char) character;
+        // Neither whitespace nor special symbols belong in the next token.
+        continue;
       }
-      cleanTokens();
-    } catch (FileNotFoundException error) {
-      error.printStackTrace();
-      System.exit(1);
-    } catch (IOException error) {
-      error.printStackTrace();
-      System.exit(1);
+
+      // Add the current character to the token
+      token += (char) character;
     }
+    cleanTokens();
   }
 
   // Return a list of tokens to the parser
@@ -0,0 +1,75 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import javax.script.AbstractScriptEngine;
+import javax.script.Bindings;
+import javax.script.Compilable;
+import javax.script.CompiledScript;
+import javax.script.ScriptContext;
+import javax.script.ScriptEngineFactory;
+import javax.script.ScriptException;
+import javax.script.SimpleBindings;
+
+// JSR-223 entry point for embedding SCL. Every eval parses the script, so callers that run the
+// same script repeatedly should compile() it once and eval() the returned CompiledScript instead.
+public class SCLScriptEngine extends AbstractScriptEngine implements Compilable {
+  private final ScriptEngineFactory factory;
+
+  public SCLScriptEngine(ScriptEngineFactory factory) {
+    this.factory = factory;
+  }
+
+  public SCLScriptEngine() {
+    this(new SCLScriptEngineFactory());
+  }
+
+  public Object eval(String script, ScriptContext context) throws ScriptException {
+    return compile(script).eval(context);
+  }
+
+  public Object eval(Reader reader, ScriptContext context) throws ScriptException {
+    return compile(reader).eval(context);
+  }
+
+  // Parse the script once. Parse errors are reported as ScriptExceptions so that embedders only
+  // have to deal with the exceptions javax.script tells them about.
+  public CompiledScript compile(String script) throws ScriptException {
+    try {
+      return new SCLCompiledScript(this, new SCLProgram(script));
+    } catch (RuntimeException error) {
+      throw toScriptException(error);
+    }
+  }
+
+  // Same as above for a script read from a Reader. A script that can't be read is reported the same
+  // way.
+  public CompiledScript compile(Reader script) throws ScriptException {
+    StringWriter source = new StringWriter();
+    try {
+      script.transferTo(source);
+    } catch (IOException error) {
+      ScriptException exception = new ScriptException("Couldn't read the script: " + error);
+      exception.initCause(error);
+      throw exception;
+    }
+    return compile(source.toString());
+  }
+
+  public Bindings createBindings() {
+    return new SimpleBindings();
+  }
+
+  public ScriptEngineFactory getFactory() {
+    return factory;
+  }
+
+  // Wrap an interpreter error while keeping the original as the cause.
+  static ScriptException toScriptException(RuntimeException error) {
+    ScriptException exception =
+        new ScriptException(error.getClass().getSimpleName() + ": " + error.getMessage());
+    exception.initCause(error);
+    return exception;
+  }
+}
@@ -0,0 +1,80 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.List;
+import javax.script.ScriptEngine;
+import javax.script.ScriptEngineFactory;
+
+// Describes our script engine to javax.script. The factory is registered in
+// META-INF/services/javax.script.ScriptEngineFactory so that `new ScriptEngineManager()
+// .getEngineByName("scl")` finds it without the embedder needing to know about our classes.
+public class SCLScriptEngineFactory implements ScriptEngineFactory {
+  public static final String ENGINE_NAME = "SCL Interpreter";
+  public static final String ENGINE_VERSION = "1.0.0";
+  public static final String LANGUAGE_NAME = "SCL";
+  public static final String LANGUAGE_VERSION = "1.0";
+
+  public String getEngineName() {
+    return ENGINE_NAME;
+  }
+
+  public String getEngineVersion() {
+    return ENGINE_VERSION;
+  }
+
+  public List<String> getExtensions() {
+    return List.of("scl");
+  }
+
+  public List<String> getMimeTypes() {
+    return List.of("text/x-scl");
+  }
+
+  public List<String> getNames() {
+    return List.of("scl", "SCL");
+  }
+
+  public String getLanguageName() {
+    return LANGUAGE_NAME;
+  }
+
+  public String getLanguageVersion() {
+    return LANGUAGE_VERSION;
+  }
+
+  public Object getParameter(String key) {
+    switch (key) {
+      case ScriptEngine.ENGINE:
+        return getEngineName();
+      case ScriptEngine.ENGINE_VERSION:
+        return getEngineVersion();
+      case ScriptEngine.LANGUAGE:
+        return getLanguageName();
+      case ScriptEngine.LANGUAGE_VERSION:
+        return getLanguageVersion();
+      case ScriptEngine.NAME:
+        return getNames().get(0);
+      default:
+        return null;
+    }
+  }
+
+  // SCL has no objects, so the closest thing to a method call is calling a subprogram. obj is
+  // ignored, and a call without arguments leaves out using.
+  public String getMethodCallSyntax(String obj, String m, String... args) {
+    if (args.length == 0) return "call " + m;
+    return "call " + m + " using " + String.join(", ", args);
+  }
+
+  public String getOutputStatement(String toDisplay) {
+    return "display \"" + toDisplay + "\"";
+  }
+
+  // SCL statements are separated by newlines.
+  public String getProgram(String... statements) {
+    return String.join("\n", statements);
+  }
+
+  public ScriptEngine getScriptEngine() {
+    return new SCLScriptEngine(this);
+  }
+}
@@ -0,0 +1,49 @@
+package io.github.yemouu.SCLInterpreter;
+
+// A 16 bit signed integer.
+public class SCLShort extends TypedNumericValue {
+  static final SCLShort UNDEFINED = new SCLShort((short) 0, false);
+
+  private final short value;
+
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLShort(String value) {
+    this(value == null ? 0 : Short.parseShort(value), value != null);
+  }
+
+  private SCLShort(short value, boolean defined) {
+    super(SCLTypes.SHORT, defined);
+    this.value = value;
+  }
+
+  static SCLShort of(short value) {
+    return new SCLShort(value, true);
+  }
+
+  String format() {
+    return Short.toString(value);
+  }
+
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return value;
+  }
+
+  // The operators for two shorts, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of((short) (((SCLShort) lhs).value & ((SCLShort) rhs).value)),
+    (lhs, rhs) -> of((short) (((SCLShort) lhs).value | ((SCLShort) rhs).value)),
+    (lhs, rhs) -> of((short) (((SCLShort) lhs).value ^ ((SCLShort) rhs).value)),
+    (lhs, rhs) -> of((short) (((SCLShort) lhs).value << ((SCLShort) rhs).value)),
+    // Signed, so the sign bit fills in from the left.
+    (lhs, rhs) -> of((short) (((SCLShort) lhs).value >> ((SCLShort) rhs).value))
+  };
+
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return of((short) ~value);
+  }
+}
@@ -1,7 +1,19 @@
 package io.github.yemouu.SCLInterpreter;
 
 public class SCLSubprogram extends TypedValue {
-  public SCLSubprogram(String value) {
-    super(SCLTypes.SUBPROGRAM, value);
+  // The program the subprogram's body belongs to and its position in that program. Subprograms
+  // can come from imported modules, so the index alone isn't enough to find the body.
+  public final SCLProgram PROGRAM;
+  public final int INDEX;
+
+  public SCLSubprogram(SCLProgram program, int index) {
+    super(SCLTypes.SUBPROGRAM, Integer.toString(index));
+    this.PROGRAM = program;
+    this.INDEX = index;
+  }
+
+  // The parsed subprogram this value refers to.
+  Subprogram getSubprogram() {
+    return PROGRAM.getSubprogram(INDEX);
   }
 }
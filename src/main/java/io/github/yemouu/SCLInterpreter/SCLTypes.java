@@ -2,6 +2,8 @@ package io.github.yemouu.SCLInterpreter;
 
 public enum SCLTypes {
   BYTE,
+  BYTE_ARRAY,
+  BYTE_FILE,
   INTEGER,
   LONG,
   SHORT,
@@ -1,93 +1,55 @@
 package io.github.yemouu.SCLInterpreter;
 
+// A 32 bit unsigned integer, kept in an int with the Integer unsigned helpers.
 public class SCLUnsignedInteger extends TypedNumericValue {
-  public SCLUnsignedInteger(String value) {
-    super(SCLTypes.UNSIGNED_INTEGER, value);
-  }
+  static final SCLUnsignedInteger UNDEFINED = new SCLUnsignedInteger(0, false);
 
-  // Convert unsigned integer to byte
-  // This operation will cause a loss of percision
-  public SCLByte toSCLByte() {
-    if (VALUE == null) throw new VariableNotDefinedException();
-
-    String hexStr = Integer.toHexString(Integer.parseUnsignedInt(VALUE));
-    if (hexStr.length() < 2) hexStr = "0" + hexStr;
+  private final int value;
 
-    return new SCLByte("0" + hexStr + "h");
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLUnsignedInteger(String value) {
+    this(value == null ? 0 : Integer.parseUnsignedInt(value), value != null);
   }
 
-  public TypedNumericValue bitwiseAnd(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      // Grab the 2 characters inside of the SCL hex value and parse it as an unsigned integer. We
-      // don't hard code the end index because our SCL hex value could be either 3 or 4 characters.
-      rhs =
-          Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLUnsignedInteger(Integer.toUnsignedString(lhs & rhs));
+  private SCLUnsignedInteger(int value, boolean defined) {
+    super(SCLTypes.UNSIGNED_INTEGER, defined);
+    this.value = value;
   }
 
-  public TypedNumericValue bitwiseOr(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs = Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLUnsignedInteger(Integer.toUnsignedString(lhs | rhs));
+  static SCLUnsignedInteger of(int value) {
+    return new SCLUnsignedInteger(value, true);
   }
 
-  public TypedNumericValue bitwiseXor(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs = Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLUnsignedInteger(Integer.toUnsignedString(lhs ^ rhs));
+  // Convert unsigned integer to byte
+  // This operation will cause a loss of percision
+  public SCLByte toSCLByte() {
+    return (SCLByte) to(SCLTypes.BYTE);
   }
 
-  public TypedNumericValue leftShift(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE);
-
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs = Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
-
-    return new SCLUnsignedInteger(Integer.toUnsignedString(lhs << rhs));
+  String format() {
+    return Integer.toUnsignedString(value);
   }
 
-  public TypedNumericValue negate() {
-    if (VALUE == null) throw new VariableNotDefinedException();
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
 
-    int rawValue = Integer.parseUnsignedInt(VALUE);
-    return new SCLUnsignedInteger(Integer.toUnsignedString(~rawValue));
+    return Integer.toUnsignedLong(value);
   }
 
-  public TypedNumericValue rightShift(TypedNumericValue rightSide) {
-    if (VALUE == null || rightSide == null) throw new VariableNotDefinedException();
-
-    int lhs = Integer.parseUnsignedInt(VALUE);
+  // The operators for two unsigned integers, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of(((SCLUnsignedInteger) lhs).value & ((SCLUnsignedInteger) rhs).value),
+    (lhs, rhs) -> of(((SCLUnsignedInteger) lhs).value | ((SCLUnsignedInteger) rhs).value),
+    (lhs, rhs) -> of(((SCLUnsignedInteger) lhs).value ^ ((SCLUnsignedInteger) rhs).value),
+    (lhs, rhs) -> of(((SCLUnsignedInteger) lhs).value << ((SCLUnsignedInteger) rhs).value),
+    // Unsigned, so zeros fill in from the left.
+    (lhs, rhs) -> of(((SCLUnsignedInteger) lhs).value >>> ((SCLUnsignedInteger) rhs).value)
+  };
 
-    int rhs;
-    if (rightSide.TYPE == SCLTypes.BYTE)
-      rhs = Integer.parseUnsignedInt(rightSide.VALUE.substring(1, rightSide.VALUE.length() - 1), 16);
-    else rhs = Integer.parseUnsignedInt(rightSide.VALUE);
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
 
-    return new SCLUnsignedInteger(Integer.toUnsignedString(lhs >>> rhs));
+    return of(~value);
   }
 }
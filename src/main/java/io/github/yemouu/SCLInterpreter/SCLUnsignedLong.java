@@ -0,0 +1,49 @@
+package io.github.yemouu.SCLInterpreter;
+
+// A 64 bit unsigned integer, kept in a long with the Long unsigned helpers.
+public class SCLUnsignedLong extends TypedNumericValue {
+  static final SCLUnsignedLong UNDEFINED = new SCLUnsignedLong(0L, false);
+
+  private final long value;
+
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLUnsignedLong(String value) {
+    this(value == null ? 0 : Long.parseUnsignedLong(value), value != null);
+  }
+
+  private SCLUnsignedLong(long value, boolean defined) {
+    super(SCLTypes.UNSIGNED_LONG, defined);
+    this.value = value;
+  }
+
+  static SCLUnsignedLong of(long value) {
+    return new SCLUnsignedLong(value, true);
+  }
+
+  String format() {
+    return Long.toUnsignedString(value);
+  }
+
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return value;
+  }
+
+  // The operators for two unsigned longs, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of((((SCLUnsignedLong) lhs).value & ((SCLUnsignedLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedLong) lhs).value | ((SCLUnsignedLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedLong) lhs).value ^ ((SCLUnsignedLong) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedLong) lhs).value << ((SCLUnsignedLong) rhs).value)),
+    // Unsigned, so zeros fill in from the left.
+    (lhs, rhs) -> of((((SCLUnsignedLong) lhs).value >>> ((SCLUnsignedLong) rhs).value))
+  };
+
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return of(~value);
+  }
+}
@@ -0,0 +1,49 @@
+package io.github.yemouu.SCLInterpreter;
+
+// A 16 bit unsigned integer. Java's char is the 16 bit unsigned primitive.
+public class SCLUnsignedShort extends TypedNumericValue {
+  static final SCLUnsignedShort UNDEFINED = new SCLUnsignedShort((char) 0, false);
+
+  private final char value;
+
+  // Parse a value written the way it is in a program. Null gives a value for a variable that
+  // doesn't have one yet.
+  public SCLUnsignedShort(String value) {
+    this(value == null ? 0 : (char) Integer.parseInt(value), value != null);
+  }
+
+  private SCLUnsignedShort(char value, boolean defined) {
+    super(SCLTypes.UNSIGNED_SHORT, defined);
+    this.value = value;
+  }
+
+  static SCLUnsignedShort of(int value) {
+    return new SCLUnsignedShort((char) value, true);
+  }
+
+  String format() {
+    return Integer.toString(value);
+  }
+
+  public long longValue() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return value;
+  }
+
+  // The operators for two unsigned shorts, in the order of Operators' operator numbers.
+  static final Operators.Kernel[] KERNELS = {
+    (lhs, rhs) -> of((((SCLUnsignedShort) lhs).value & ((SCLUnsignedShort) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedShort) lhs).value | ((SCLUnsignedShort) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedShort) lhs).value ^ ((SCLUnsignedShort) rhs).value)),
+    (lhs, rhs) -> of((((SCLUnsignedShort) lhs).value << ((SCLUnsignedShort) rhs).value)),
+    // Unsigned, so zeros fill in from the left.
+    (lhs, rhs) -> of((((SCLUnsignedShort) lhs).value >>> ((SCLUnsignedShort) rhs).value))
+  };
+
+  public TypedNumericValue negate() {
+    if (!hasValue()) throw new VariableNotDefinedException();
+
+    return of(~value);
+  }
+}
@@ -0,0 +1,45 @@
+package io.github.yemouu.SCLInterpreter;
+
+// The plain loop versions of the byte array operations.
+final class ScalarByteKernels implements ByteKernels {
+  public void and(byte[] lhs, byte[] rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] & rhs[i]);
+  }
+
+  public void or(byte[] lhs, byte[] rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] | rhs[i]);
+  }
+
+  public void xor(byte[] lhs, byte[] rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] ^ rhs[i]);
+  }
+
+  public void and(byte[] lhs, byte rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] & rhs);
+  }
+
+  public void or(byte[] lhs, byte rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] | rhs);
+  }
+
+  public void xor(byte[] lhs, byte rhs, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] ^ rhs);
+  }
+
+  public void shiftLeft(byte[] lhs, int count, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) (lhs[i] << count);
+  }
+
+  // Bytes are unsigned in SCL, so zeros are shifted in from the left.
+  public void shiftRight(byte[] lhs, int count, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) ((lhs[i] & 0xFF) >>> count);
+  }
+
+  public void not(byte[] operand, byte[] out) {
+    for (int i = 0; i < out.length; i++) out[i] = (byte) ~operand[i];
+  }
+
+  public String name() {
+    return "scalar";
+  }
+}
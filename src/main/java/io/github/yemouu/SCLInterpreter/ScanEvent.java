@@ -0,0 +1,32 @@
+package io.github.yemouu.SCLInterpreter;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+// The first of the JDK Flight Recorder events for the work the interpreter does (along with
+// ParseStatementEvent, CallEvent, and DisplayEvent), so a recording shows SCL programs being
+// scanned, parsed, and run next to the GC pauses and JIT compilations happening at the same time.
+// Every event is disabled until a recording turns it on (jfr/scl.jfc turns all of them on).
+//
+// Loading the first event class starts up a good part of the flight recorder, which takes longer
+// than running a small program. So nothing creates an event until FlightRecorder.isInitialized()
+// says a recording has been started (on the command line or later with jcmd). Until then the cost
+// of an event is reading that one flag.
+@Name("io.github.yemouu.SCLInterpreter.Scan")
+@Label("SCL Scan")
+@Description("A program turned into tokens")
+@Category("SCL")
+@Enabled(false)
+@StackTrace(false)
+class ScanEvent extends Event {
+  @Label("Source")
+  String source;
+
+  @Label("Tokens")
+  int tokens;
+}
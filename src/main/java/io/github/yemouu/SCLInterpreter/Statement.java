@@ -0,0 +1,255 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+// The prepared form of a statement in a subprogram's body. Everything the interpreter would
+// otherwise have to work out from the tokens every time the statement runs is worked out once,
+// when the program is loaded: what kind of statement it is, which variable it assigns, where each
+// expression starts and ends, and where control goes next. The tokens of each expression are
+// never modified, so the same Statement can run any number of times (on any number of threads).
+final class Statement {
+  enum Kind {
+    SET,
+    CALL,
+    DISPLAY,
+    RETURN,
+    EXIT,
+    IF,
+    ELSE,
+    ENDIF,
+    WHILE,
+    ENDWHILE,
+    FOR,
+    ENDFOR
+  }
+
+  // The position of the statement in its subprogram's body.
+  final int id;
+
+  final Kind kind;
+
+  // The statement as it was parsed.
+  final List<Token> tokens;
+
+  // The variable the statement assigns. This is the variable of a set, the variable that receives
+  // the value of a call in a set, or the variable a for loop counts with. Null otherwise.
+  final String target;
+
+  // Whether a set statement assigns one element of a byte array (set buf[i] = value) instead of
+  // the whole variable.
+  final boolean indexed;
+
+  // The subprogram a call statement calls. Null for every other kind of statement.
+  final String callee;
+
+  // The comparison in the condition of an if or while (equal, less, or greater). Null when the
+  // condition is a single expression.
+  final String relation;
+
+  // The expressions of the statement:
+  //   set            the value, then the index of the element if the set is indexed
+  //   call           the arguments
+  //   display        each value to display
+  //   return         the value, if there is one
+  //   if and while   the condition (one expression or both sides of the comparison)
+  //   for            the first and last value of the variable
+  final List<List<Token>> operands;
+
+  // How each operand is converted to the type of what it is assigned to (the variable of a set,
+  // the parameters of a call, the return type for a return, and the variable of a for loop for its
+  // first value), indexed like operands, and how the value a call returns is converted to the
+  // type of the call's target. TypeChecker fills these in while the program is loaded, and sets
+  // checked once the types of the whole statement are known to be right so that the interpreter
+  // doesn't check them again. Nothing changes them after that.
+  final Conversion[] conversions;
+  Conversion result = Conversion.CHECKED;
+  boolean checked;
+
+  // Where control goes next when it doesn't go to the next statement. For if, while, and for this
+  // is where to go when the loop or branch isn't taken. For else it is the endif and for endwhile
+  // and endfor it is the first statement of the loop's body. -1 for everything else.
+  final int jump;
+
+  // The loop a while, for, endwhile, or endfor belongs to, counted in the order the loops appear
+  // in the subprogram. -1 for everything else.
+  final int loop;
+
+  Statement(int id, List<Token> tokens, int jump, int loop) {
+    this.id = id;
+    this.tokens = tokens;
+    this.jump = jump;
+    this.loop = loop;
+
+    // The last token of every statement is the end of statement token.
+    int end = tokens.size() - 1;
+    String target = null;
+    String callee = null;
+    String relation = null;
+    List<Token> index = null;
+    List<List<Token>> operands = new ArrayList<>();
+
+    switch (tokens.get(0).VALUE) {
+      case "set":
+        // set <identifier> = <value> or set <identifier> [ <index> ] = <value>
+        target = tokens.get(1).VALUE;
+        int equals = 2;
+        if (Token.expect(TokenType.SPECIAL_SYMBOL, "[", tokens.get(2))) {
+          equals = closing(tokens, 2, end) + 1;
+          index = tokens.subList(3, equals - 1);
+        }
+        if (Token.expect(TokenType.KEYWORD, "call", tokens.get(equals + 1))) {
+          if (index != null)
+            throw new UnexpectedTokenException(
+                "Tried to assign a call to an element of " + target + ", use a variable instead");
+          this.kind = Kind.CALL;
+          callee = tokens.get(equals + 2).VALUE;
+          arguments(tokens, equals + 3, end, operands);
+        } else {
+          this.kind = Kind.SET;
+          operands.add(tokens.subList(equals + 1, end));
+          if (index != null) operands.add(index);
+        }
+        break;
+      case "call":
+        this.kind = Kind.CALL;
+        callee = tokens.get(1).VALUE;
+        arguments(tokens, 2, end, operands);
+        break;
+      case "display":
+        this.kind = Kind.DISPLAY;
+        operands.addAll(split(tokens, 1, end));
+        break;
+      case "return":
+        this.kind = Kind.RETURN;
+        if (end > 1) operands.add(tokens.subList(1, end));
+        break;
+      case "exit":
+        this.kind = Kind.EXIT;
+        break;
+      case "if":
+      case "while":
+        // The condition is everything between if (or while) and then (or do).
+        this.kind = tokens.get(0).VALUE.equals("if") ? Kind.IF : Kind.WHILE;
+        int relationIndex = find(tokens, 1, end - 1);
+        if (relationIndex == -1) operands.add(tokens.subList(1, end - 1));
+        else {
+          relation = tokens.get(relationIndex).VALUE;
+          operands.add(tokens.subList(1, relationIndex));
+          operands.add(tokens.subList(relationIndex + 1, end - 1));
+        }
+        break;
+      case "for":
+        // for <identifier> = <first> to <last> do
+        this.kind = Kind.FOR;
+        target = tokens.get(1).VALUE;
+        int to = 3;
+        while (!Token.expect(TokenType.KEYWORD, "to", tokens.get(to))) to++;
+        operands.add(tokens.subList(3, to));
+        operands.add(tokens.subList(to + 1, end - 1));
+        break;
+      case "else":
+        this.kind = Kind.ELSE;
+        break;
+      case "endif":
+        this.kind = Kind.ENDIF;
+        break;
+      case "endwhile":
+        this.kind = Kind.ENDWHILE;
+        break;
+      case "endfor":
+        this.kind = Kind.ENDFOR;
+        break;
+      default:
+        throw new UnexpectedTokenException("Unxpected token, " + tokens.get(0));
+    }
+
+    this.target = target;
+    this.indexed = index != null;
+    this.callee = callee;
+    this.relation = relation;
+    this.operands = Collections.unmodifiableList(operands);
+    this.conversions = new Conversion[operands.size()];
+    Arrays.fill(conversions, Conversion.CHECKED);
+  }
+
+  // The arguments of a call start with using and are separated by commas.
+  private static void arguments(
+      List<Token> tokens, int start, int end, List<List<Token>> arguments) {
+    if (start < end && Token.expect(TokenType.KEYWORD, "using", tokens.get(start)))
+      arguments.addAll(split(tokens, start + 1, end));
+  }
+
+  // Split the tokens between start and end at every comma that isn't inside of parenthesis or
+  // brackets.
+  static List<List<Token>> split(List<Token> tokens, int start, int end) {
+    List<List<Token>> parts = new ArrayList<>();
+    int nesting = 0;
+    int partStart = start;
+    for (int i = start; i < end; i++) {
+      Token token = tokens.get(i);
+      if (opens(token)) nesting++;
+      else if (closes(token)) nesting--;
+      else if (nesting == 0 && Token.expect(TokenType.SPECIAL_SYMBOL, ",", token)) {
+        parts.add(tokens.subList(partStart, i));
+        partStart = i + 1;
+      }
+    }
+    if (partStart < end) parts.add(tokens.subList(partStart, end));
+    return parts;
+  }
+
+  // Find the comparison operator between start and end that isn't inside of parenthesis or
+  // brackets. Returns -1 if there isn't one.
+  private static int find(List<Token> tokens, int start, int end) {
+    int nesting = 0;
+    for (int i = start; i < end; i++) {
+      Token token = tokens.get(i);
+      if (opens(token)) nesting++;
+      else if (closes(token)) nesting--;
+      else if (nesting == 0
+          && (Token.expect(TokenType.OPERATOR, "equal", token)
+              || Token.expect(TokenType.OPERATOR, "less", token)
+              || Token.expect(TokenType.OPERATOR, "greater", token))) return i;
+    }
+    return -1;
+  }
+
+  // Find the ) or ] that matches the ( or [ at open, looking no further than end.
+  static int closing(List<Token> tokens, int open, int end) {
+    String opening = tokens.get(open).VALUE;
+    String closing = opening.equals("(") ? ")" : "]";
+    int nesting = 0;
+    for (int i = open; i < end; i++) {
+      Token token = tokens.get(i);
+      if (Token.expect(TokenType.SPECIAL_SYMBOL, opening, token)) nesting++;
+      else if (Token.expect(TokenType.SPECIAL_SYMBOL, closing, token) && --nesting == 0) return i;
+    }
+    throw new UnmatchedTokenException(
+        opening.equals("(")
+            ? "Uneven amount of opening and closing parenthesis."
+            : "Uneven amount of opening and closing brackets.");
+  }
+
+  private static boolean opens(Token token) {
+    return Token.expect(TokenType.SPECIAL_SYMBOL, "(", token)
+        || Token.expect(TokenType.SPECIAL_SYMBOL, "[", token);
+  }
+
+  private static boolean closes(Token token) {
+    return Token.expect(TokenType.SPECIAL_SYMBOL, ")", token)
+        || Token.expect(TokenType.SPECIAL_SYMBOL, "]", token);
+  }
+
+  public String toString() {
+    StringBuilder string = new StringBuilder();
+    string.append(id).append(": ");
+    for (int i = 0; i < tokens.size() - 1; i++) {
+      if (i != 0) string.append(' ');
+      string.append(tokens.get(i).VALUE);
+    }
+    return string.toString();
+  }
+}
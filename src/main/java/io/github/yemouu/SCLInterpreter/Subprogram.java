@@ -0,0 +1,319 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+// Everything about a subprogram that doesn't change while it runs. Parameters and the variables
+// defined in the subprogram's variables section are local to each call, so instead of living in the
+// Interpreter's identifiers they get a numbered slot in a call frame. Parameters take the first
+// slots in the order they are declared and the local variables come after them.
+final class Subprogram {
+  private final String name;
+
+  // The type of the value the subprogram returns, or null if it doesn't return one.
+  private final String returnType;
+
+  // A value of the return type without a value, which is what a returned value is converted to the
+  // type of. Null if the subprogram doesn't return one.
+  private final TypedValue returnValue;
+
+  private final int parameterCount;
+  private final Map<String, Integer> slots;
+
+  // The value every slot starts out with, a typed value without a value. TypedValues never change,
+  // so a new frame can be filled by copying this array instead of creating new values.
+  private final TypedValue[] initialSlots;
+
+  // The local variables that are byte arrays. Their elements are set in place, so unlike every
+  // other initial value these have to be copied into each new frame.
+  private final int[] arraySlots;
+
+  // How many bytes the byte arrays of a call take up, parameters included, for the limit on live
+  // values (see Interpreter.setMaxLiveBytes).
+  private final long arrayBytes;
+
+  // The statements inside of the subprogram's begin block.
+  private final List<List<Token>> body;
+
+  // The same statements in their prepared form, with every if, else, and loop already matched up.
+  private final List<Statement> statements;
+
+  // How many times each loop has jumped back to the start of its body, across every execution of
+  // the program. Execution engines read these to find the loops worth optimizing. Many threads can
+  // run the same subprogram, so the counters are LongAdders to keep them from fighting over a
+  // single cache line on every iteration.
+  private final LongAdder[] backEdges;
+
+  // The position of the while or for statement that starts each loop.
+  private final int[] loopHeaders;
+
+  // Tiered execution state (see TieredExecution). How warm the subprogram got while interpreted,
+  // whether it has been queued for compilation, and the compiled form once there is one.
+  private final AtomicInteger warmth = new AtomicInteger();
+  private final AtomicBoolean compilationQueued = new AtomicBoolean();
+  private volatile CompiledSubprogram compiled;
+
+  // The type of every global identifier the subprogram can see, and the globals that always have a
+  // value (symbols and subprograms). TypeChecker fills these in while the program is loaded, for
+  // the optimizer in IR to use.
+  private Map<String, SCLTypes> globalTypes = Map.of();
+  private Set<String> definedGlobals = Set.of();
+
+  // Build a subprogram from its function statement, the define statements from its variables
+  // section, and the statements from its begin block. The function statement looks like
+  //   function <name> [return type <type>] [parameters <name> of type <type>, ...] is
+  Subprogram(List<Token> function, List<List<Token>> locals, List<List<Token>> body) {
+    this.name = function.get(1).VALUE;
+
+    List<String> slotNames = new ArrayList<>();
+    List<String> slotTypes = new ArrayList<>();
+    String returnType = null;
+
+    int index = 2;
+    if (Token.expect(TokenType.KEYWORD, "return", function.get(index))) {
+      // Skip "return type"
+      index += 2;
+      int end = index;
+      while (!isHeaderKeyword(function.get(end))) end++;
+      returnType = typeName(function, index, end);
+      index = end;
+    }
+
+    if (Token.expect(TokenType.KEYWORD, "parameters", function.get(index))) {
+      index++;
+      while (!Token.expect(TokenType.KEYWORD, "is", function.get(index))) {
+        // Each parameter is "<name> of type <type>" followed by either a comma or is.
+        slotNames.add(function.get(index).VALUE);
+        index += 3;
+        int end = index;
+        while (!isHeaderKeyword(function.get(end))
+            && !Token.expect(TokenType.SPECIAL_SYMBOL, ",", function.get(end))) end++;
+        slotTypes.add(typeName(function, index, end));
+        index = Token.expect(TokenType.SPECIAL_SYMBOL, ",", function.get(end)) ? end + 1 : end;
+      }
+    }
+    this.parameterCount = slotNames.size();
+    this.returnType = returnType;
+    this.returnValue = returnType == null ? null : TypedValue.defaultValue(local(returnType));
+
+    // Local variables are "define <name> of type <type>"
+    for (List<Token> define : locals) {
+      slotNames.add(define.get(1).VALUE);
+      slotTypes.add(typeName(define, 4, define.size() - 1));
+    }
+
+    Map<String, Integer> slots = new HashMap<>();
+    this.initialSlots = new TypedValue[slotNames.size()];
+    for (int i = 0; i < slotNames.size(); i++) {
+      slots.put(slotNames.get(i), i);
+      initialSlots[i] = TypedValue.defaultValue(local(slotTypes.get(i)));
+    }
+    this.arraySlots =
+        IntStream.range(parameterCount, initialSlots.length)
+            .filter(i -> initialSlots[i] instanceof SCLByteArray)
+            .toArray();
+    long arrayBytes = 0;
+    for (TypedValue value : initialSlots)
+      if (value instanceof SCLByteArray) arrayBytes += ((SCLByteArray) value).length();
+    this.arrayBytes = arrayBytes;
+    this.slots = Collections.unmodifiableMap(slots);
+    this.body = List.copyOf(body);
+
+    // Match every if with its else and endif and every loop with its end. The parser already
+    // checked that they nest properly, so a stack of open statements is all we need.
+    int[] jumps = new int[body.size()];
+    int[] loops = new int[body.size()];
+    Arrays.fill(jumps, -1);
+    Arrays.fill(loops, -1);
+    List<Integer> headers = new ArrayList<>();
+    Deque<Integer> open = new ArrayDeque<>();
+    for (int i = 0; i < body.size(); i++) {
+      switch (body.get(i).get(0).VALUE) {
+        case "if":
+          open.push(i);
+          break;
+        case "while":
+        case "for":
+          loops[i] = headers.size();
+          headers.add(i);
+          open.push(i);
+          break;
+        case "else":
+          // A false condition skips to the statement after else.
+          jumps[open.pop()] = i + 1;
+          open.push(i);
+          break;
+        case "endif":
+          // A false condition (or the end of the then block) skips to endif, which does nothing.
+          jumps[open.pop()] = i;
+          break;
+        case "endwhile":
+        case "endfor":
+          int header = open.pop();
+          jumps[header] = i + 1;
+          jumps[i] = header + 1;
+          loops[i] = loops[header];
+          break;
+        default:
+          break;
+      }
+    }
+
+    List<Statement> statements = new ArrayList<>(body.size());
+    for (int i = 0; i < body.size(); i++)
+      statements.add(new Statement(i, this.body.get(i), jumps[i], loops[i]));
+    this.statements = Collections.unmodifiableList(statements);
+
+    this.loopHeaders = new int[headers.size()];
+    this.backEdges = new LongAdder[headers.size()];
+    for (int i = 0; i < headers.size(); i++) {
+      loopHeaders[i] = headers.get(i);
+      backEdges[i] = new LongAdder();
+    }
+  }
+
+  // Keywords that end a part of the function statement.
+  private static boolean isHeaderKeyword(Token token) {
+    return Token.expect(TokenType.KEYWORD, "parameters", token)
+        || Token.expect(TokenType.KEYWORD, "is", token);
+  }
+
+  // Check that a subprogram's variable can have a type. A byte file is opened by every run that
+  // declares it, which values made once when the program is loaded can't be.
+  private String local(String type) {
+    if (SCLByteFile.isType(type))
+      throw new TypeMismatchException(
+          "Tried to use " + type + " in " + name + ", byte files can only be global variables");
+    return type;
+  }
+
+  // Some types are a combination of two tokens (e.g. unsigned integer), so we join every token
+  // between start and end with spaces.
+  static String typeName(List<Token> tokens, int start, int end) {
+    StringBuilder type = new StringBuilder();
+    for (int i = start; i < end; i++) {
+      if (i != start) type.append(' ');
+      type.append(tokens.get(i).VALUE);
+    }
+    return type.toString();
+  }
+
+  public String getName() {
+    return name;
+  }
+
+  public String getReturnType() {
+    return returnType;
+  }
+
+  TypedValue getReturnValue() {
+    return returnValue;
+  }
+
+  public int getParameterCount() {
+    return parameterCount;
+  }
+
+  public int getFrameSize() {
+    return initialSlots.length;
+  }
+
+  // Get the slot of a parameter or local variable. Returns null if the name isn't local to this
+  // subprogram.
+  public Integer getSlot(String name) {
+    return slots.get(name);
+  }
+
+  // Get the name of the parameter or local variable in a slot.
+  String getSlotName(int slot) {
+    for (Map.Entry<String, Integer> entry : slots.entrySet())
+      if (entry.getValue() == slot) return entry.getKey();
+    throw new IllegalArgumentException("No variable in slot " + slot);
+  }
+
+  TypedValue[] getInitialSlots() {
+    return initialSlots;
+  }
+
+  int[] getArraySlots() {
+    return arraySlots;
+  }
+
+  long getArrayBytes() {
+    return arrayBytes;
+  }
+
+  public List<List<Token>> getBody() {
+    return body;
+  }
+
+  List<Statement> getStatements() {
+    return statements;
+  }
+
+  public int getLoopCount() {
+    return loopHeaders.length;
+  }
+
+  // Get the position in the body of the while or for statement that starts a loop.
+  public int getLoopHeader(int loop) {
+    return loopHeaders[loop];
+  }
+
+  // Get how many times a loop has gone back to the start of its body.
+  public long getBackEdgeCount(int loop) {
+    return backEdges[loop].sum();
+  }
+
+  void countBackEdge(int loop) {
+    backEdges[loop].increment();
+  }
+
+  void setGlobals(Map<String, SCLTypes> types, Set<String> defined) {
+    this.globalTypes = types;
+    this.definedGlobals = defined;
+  }
+
+  // The type of a global, or null if it isn't known.
+  SCLTypes getGlobalType(String name) {
+    return globalTypes.get(name);
+  }
+
+  boolean isAlwaysDefined(String name) {
+    return definedGlobals.contains(name);
+  }
+
+  // The tier the subprogram runs in, 0 while it is interpreted and 1 once it is compiled.
+  public int getTier() {
+    return compiled == null ? 0 : 1;
+  }
+
+  int warm() {
+    return warmth.incrementAndGet();
+  }
+
+  // Returns true for the first caller only.
+  boolean queueCompilation() {
+    return compilationQueued.compareAndSet(false, true);
+  }
+
+  void install(CompiledSubprogram compiled) {
+    this.compiled = compiled;
+  }
+
+  // The compiled form of the subprogram, or null if it hasn't been compiled (yet).
+  CompiledSubprogram getCompiled() {
+    return compiled;
+  }
+}
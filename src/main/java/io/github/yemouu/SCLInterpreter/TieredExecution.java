@@ -0,0 +1,81 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+// Decides when a subprogram is worth compiling. Every subprogram starts out interpreted straight
+// from its prepared statements (tier 0), which costs nothing up front and is the right choice for
+// code that only runs a few times. While a subprogram is in tier 0, every call to it and every
+// loop iteration inside of it warms it up. Once it has been warmed up past the threshold it is
+// compiled into a CompiledSubprogram (tier 1) on a background thread, so the program keeps running
+// while the compiler works. The compiled form is published with a single volatile write and is
+// picked up the next time the subprogram is entered or one of its loops jumps back.
+//
+// The threshold comes from the scl.tier.threshold system property (or --tier-threshold), where 0
+// compiles every subprogram the first time it runs and a negative value never compiles anything.
+// Setting scl.tier.log (or --tier-log) prints every tier transition to stderr.
+final class TieredExecution {
+  static final int DEFAULT_THRESHOLD = 1000;
+
+  private static volatile int threshold =
+      Integer.getInteger("scl.tier.threshold", DEFAULT_THRESHOLD);
+  private static volatile boolean logging = Boolean.getBoolean("scl.tier.log");
+
+  // Compiling is quick, so a single thread is enough. It is a daemon thread so that a compilation
+  // that is still running doesn't keep a finished program from exiting.
+  private static final ExecutorService compiler =
+      Executors.newSingleThreadExecutor(
+          task -> {
+            Thread thread = new Thread(task, "scl-compiler");
+            thread.setDaemon(true);
+            return thread;
+          });
+
+  private TieredExecution() {}
+
+  static void setThreshold(int threshold) {
+    TieredExecution.threshold = threshold;
+  }
+
+  static int getThreshold() {
+    return threshold;
+  }
+
+  static void setLogging(boolean logging) {
+    TieredExecution.logging = logging;
+  }
+
+  // Called when a subprogram running in tier 0 is entered or jumps back to the start of a loop.
+  static void warm(Subprogram subprogram) {
+    int threshold = TieredExecution.threshold;
+    if (threshold < 0) return;
+
+    // Only the call that takes the subprogram past the threshold queues it, every call after that
+    // sees that it was already queued.
+    if (subprogram.warm() >= threshold && subprogram.queueCompilation()) {
+      log(subprogram.getName() + ": reached threshold " + threshold + ", queued for compilation");
+      compiler.execute(() -> compile(subprogram));
+    }
+  }
+
+  private static void compile(Subprogram subprogram) {
+    long start = System.nanoTime();
+    try {
+      subprogram.install(new CompiledSubprogram(subprogram));
+      log(
+          String.format(
+              "%s: tier 0 -> tier 1, compiled %d statements in %.3f ms",
+              subprogram.getName(),
+              subprogram.getStatements().size(),
+              (System.nanoTime() - start) / 1e6));
+    } catch (RuntimeException error) {
+      // Something the compiler doesn't understand. Tier 0 reports the same problem if the code
+      // ever runs, so we leave the subprogram where it is.
+      log(subprogram.getName() + ": staying in tier 0, compilation failed with " + error);
+    }
+  }
+
+  private static void log(String message) {
+    if (logging) System.err.println("[tier] " + message);
+  }
+}
@@ -4,6 +4,15 @@ public class Token {
   public final TokenType TYPE;
   public final String VALUE;
 
+  // The value of a constant or literal, worked out the first time it is used so that running the
+  // same statement again doesn't parse it again. Values never change, so two threads that both
+  // work it out end up with equal values and it doesn't matter which one is kept.
+  TypedValue value;
+
+  // The number of the bitwise operator an operator token holds plus one, or 0 until it is worked
+  // out, see Operators.operator(Token).
+  int operator;
+
   public Token(TokenType TYPE, String VALUE) {
     this.TYPE = TYPE;
     this.VALUE = VALUE;
@@ -0,0 +1,302 @@
+package io.github.yemouu.SCLInterpreter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Checks the types of a program when it is loaded. Every variable, parameter, and return value is
+// declared with its type and symbols are built from constants, so the type of every expression is
+// known before the program runs. The checker works out each one, reports every type error in the
+// program at once (instead of when, and if, the statement with the error runs), and annotates each
+// statement with the exact conversion each of its assignments needs, see Statement.conversions.
+//
+// Types the checker can't work out (which only happens when something it doesn't know about is
+// used, and the interpreter will report that when it runs) leave a statement with the checks done
+// as it runs, the way every statement used to be.
+final class TypeChecker {
+  // The type of every global identifier and the subprogram each global subprogram refers to,
+  // including the ones imported modules define.
+  private final Map<String, SCLTypes> globals = new HashMap<>();
+  private final Map<String, Subprogram> subprograms = new HashMap<>();
+  private final Set<String> defined = new HashSet<>();
+  private final Set<SCLProgram> imported = Collections.newSetFromMap(new IdentityHashMap<>());
+
+  private final List<String> errors = new ArrayList<>();
+
+  // The subprogram being checked, or null while checking symbols.
+  private Subprogram subprogram;
+
+  // Cleared whenever the statement being checked uses a type that isn't known.
+  private boolean known;
+
+  private TypeChecker() {}
+
+  // Check a program and annotate its statements. Throws a TypeCheckException listing every type
+  // error if there are any.
+  static void check(SCLProgram program) {
+    TypeChecker checker = new TypeChecker();
+    checker.declare(program);
+    Map<String, SCLTypes> globals = Collections.unmodifiableMap(checker.globals);
+    Set<String> defined = Collections.unmodifiableSet(checker.defined);
+    for (int i = 0; i < program.getSubprogramCount(); i++) {
+      Subprogram subprogram = program.getSubprogram(i);
+      // A reused subprogram was checked when it was first loaded, and sees the same globals now.
+      if (program.isReused(subprogram)) continue;
+      checker.check(subprogram);
+      subprogram.setGlobals(globals, defined);
+    }
+    if (!checker.errors.isEmpty()) throw new TypeCheckException(checker.errors);
+  }
+
+  // Find the type of every global identifier, the same way the interpreter defines them.
+  private void declare(SCLProgram program) {
+    for (List<Token> statement : program.getDeclarations()) {
+      String name = statement.get(1).VALUE;
+      switch (statement.get(0).VALUE) {
+        case "import":
+          SCLProgram module = program.getModule(name.substring(1, name.length() - 1));
+          if (module != null && imported.add(module)) declare(module);
+          break;
+        case "symbol":
+          defined.add(name);
+          try {
+            globals.put(name, expression(statement, 2, statement.size() - 1));
+          } catch (TypeMismatchException error) {
+            errors.add("symbol " + name + ": " + error.getMessage());
+          } catch (RuntimeException error) {
+            // Reported by the interpreter when it defines the symbol.
+          }
+          break;
+        case "define":
+          globals.put(name, type(Subprogram.typeName(statement, 4, statement.size() - 1)));
+          break;
+        case "function":
+          defined.add(name);
+          globals.put(name, SCLTypes.SUBPROGRAM);
+          subprograms.put(name, program.getSubprogram(program.getSubprogramIndex(name)));
+          break;
+        default:
+          break;
+      }
+    }
+  }
+
+  private void check(Subprogram subprogram) {
+    this.subprogram = subprogram;
+    for (Statement statement : subprogram.getStatements()) {
+      known = true;
+      try {
+        statement(statement);
+        statement.checked = known;
+      } catch (TypeMismatchException error) {
+        errors.add(subprogram.getName() + ": " + statement + ": " + error.getMessage());
+      } catch (RuntimeException error) {
+        // Anything else is a problem the interpreter reports when the statement runs.
+      }
+    }
+    this.subprogram = null;
+  }
+
+  private void statement(Statement statement) {
+    List<List<Token>> operands = statement.operands;
+    switch (statement.kind) {
+      case SET:
+        SCLTypes target = variable(statement.target);
+        if (statement.indexed) {
+          if (target != null && !indexed(target))
+            throw new TypeMismatchException(
+                "Tried to set an element of " + statement.target + " but it isn't an array");
+          number(expression(operands.get(0)));
+          number(expression(operands.get(1)));
+        } else statement.conversions[0] = conversion(target, expression(operands.get(0)));
+        break;
+      case CALL:
+        call(statement);
+        break;
+      case DISPLAY:
+        for (List<Token> operand : operands) expression(operand);
+        break;
+      case RETURN:
+        if (operands.isEmpty()) break;
+        SCLTypes value = expression(operands.get(0));
+        if (subprogram.getReturnType() == null)
+          throw new TypeMismatchException(
+              "Tried returning a value from "
+                  + subprogram.getName()
+                  + " but it has no return type");
+        statement.conversions[0] = conversion(subprogram.getReturnValue().TYPE, value);
+        break;
+      case IF:
+      case WHILE:
+        condition(statement);
+        break;
+      case FOR:
+        SCLTypes counter = variable(statement.target);
+        if (counter != null && !Conversion.numeric(counter))
+          throw new TypeMismatchException(
+              "Tried to count with " + statement.target + " but it isn't a number");
+        statement.conversions[0] = conversion(counter, expression(operands.get(0)));
+        number(expression(operands.get(1)));
+        break;
+      default:
+        break;
+    }
+  }
+
+  // The arguments of a call are assigned to the callee's parameters, and the value it returns to
+  // the call's target.
+  private void call(Statement statement) {
+    List<SCLTypes> arguments = new ArrayList<>();
+    for (List<Token> operand : statement.operands) arguments.add(expression(operand));
+
+    // A parameter or local variable with the callee's name hides it, which the interpreter reports.
+    Subprogram callee =
+        subprogram.getSlot(statement.callee) == null ? subprograms.get(statement.callee) : null;
+    if (callee == null || callee.getParameterCount() != arguments.size()) {
+      known = false;
+      return;
+    }
+
+    TypedValue[] parameters = callee.getInitialSlots();
+    for (int i = 0; i < arguments.size(); i++)
+      statement.conversions[i] = conversion(parameters[i].TYPE, arguments.get(i));
+
+    if (statement.target == null) return;
+    if (callee.getReturnType() == null) known = false;
+    else statement.result = conversion(variable(statement.target), callee.getReturnValue().TYPE);
+  }
+
+  // Numbers can be compared any way, strings can only be checked for equality.
+  private void condition(Statement statement) {
+    SCLTypes lhs = expression(statement.operands.get(0));
+    if (statement.relation == null) {
+      number(lhs);
+      return;
+    }
+
+    SCLTypes rhs = expression(statement.operands.get(1));
+    if (lhs == null || rhs == null) known = false;
+    else if (lhs == SCLTypes.STRING || rhs == SCLTypes.STRING) {
+      if (lhs != rhs || !statement.relation.equals("equal"))
+        throw new TypeMismatchException(
+            "Tried comparing " + describe(lhs) + " " + statement.relation + " " + describe(rhs));
+    } else {
+      number(lhs);
+      number(rhs);
+    }
+  }
+
+  private Conversion conversion(SCLTypes variable, SCLTypes value) {
+    if (variable == null || value == null) known = false;
+    return Conversion.of(variable, value);
+  }
+
+  private SCLTypes expression(List<Token> tokens) {
+    return expression(tokens, 0, tokens.size());
+  }
+
+  // The type of an expression, following the same grammar as Expression.compile.
+  private SCLTypes expression(List<Token> tokens, int start, int end) {
+    int operandEnd = Expression.operandEnd(tokens, start, end);
+    SCLTypes type = operand(tokens, start, operandEnd);
+    while (operandEnd < end) {
+      int operator = Operators.operator(tokens.get(operandEnd));
+      int rhsStart = operandEnd + 1;
+      operandEnd = Expression.operandEnd(tokens, rhsStart, end);
+      type = operator(operator, type, operand(tokens, rhsStart, operandEnd));
+    }
+    return type;
+  }
+
+  private SCLTypes operand(List<Token> tokens, int start, int end) {
+    Token token = tokens.get(start);
+    switch (token.TYPE) {
+      case IDENTIFIER:
+        SCLTypes type = variable(token.VALUE);
+        if (end - start == 1) return type;
+        if (type != null && !indexed(type))
+          throw new TypeMismatchException(
+              "Tried to get an element of " + token.VALUE + " but it isn't an array");
+        number(expression(tokens, start + 2, end - 1));
+        return SCLTypes.BYTE;
+      case CONSTANT:
+      case LITERAL:
+        return TypedValue.toTypedValue(token).TYPE;
+      case OPERATOR:
+        SCLTypes operand = operand(tokens, start + 1, end);
+        if (Token.expect(TokenType.OPERATOR, "length", token)) {
+          if (operand != null && !indexed(operand))
+            throw new TypeMismatchException(
+                "Tried to get the length of " + describe(operand) + ", it only works on arrays");
+          return SCLTypes.UNSIGNED_LONG;
+        }
+        if (operand != SCLTypes.BYTE_ARRAY) number(operand);
+        return operand;
+      default:
+        return expression(tokens, start + 1, end - 1);
+    }
+  }
+
+  // The type an operator gives, see Operators and SCLByteArray.apply.
+  private SCLTypes operator(int operator, SCLTypes lhs, SCLTypes rhs) {
+    if (lhs == null || rhs == null) {
+      known = false;
+      return null;
+    }
+
+    String name = Operators.name(operator);
+    boolean shift = operator == Operators.LSHIFT || operator == Operators.RSHIFT;
+    if (lhs == SCLTypes.BYTE_ARRAY || rhs == SCLTypes.BYTE_ARRAY) {
+      if (shift && (lhs != SCLTypes.BYTE_ARRAY || rhs == SCLTypes.BYTE_ARRAY))
+        throw new TypeMismatchException(
+            "Tried to " + name + " " + describe(lhs) + " by " + describe(rhs));
+      if (lhs != SCLTypes.BYTE_ARRAY) number(lhs);
+      if (rhs != SCLTypes.BYTE_ARRAY) number(rhs);
+      return SCLTypes.BYTE_ARRAY;
+    }
+
+    number(lhs);
+    number(rhs);
+    return Operators.type(operator, lhs, rhs);
+  }
+
+  // Byte arrays and byte files have elements.
+  private static boolean indexed(SCLTypes type) {
+    return type == SCLTypes.BYTE_ARRAY || type == SCLTypes.BYTE_FILE;
+  }
+
+  private void number(SCLTypes type) {
+    if (type == null) known = false;
+    else if (!Conversion.numeric(type))
+      throw new TypeMismatchException("Expected a number but got " + describe(type));
+  }
+
+  // The type of a variable the subprogram being checked can see, or null if there isn't one.
+  private SCLTypes variable(String name) {
+    Integer slot = subprogram == null ? null : subprogram.getSlot(name);
+    SCLTypes type = slot != null ? subprogram.getInitialSlots()[slot].TYPE : globals.get(name);
+    if (type == null) known = false;
+    return type;
+  }
+
+  // A type the way a message reads it, e.g. an unsigned integer.
+  static String describe(SCLTypes type) {
+    String name = type.name().toLowerCase().replace('_', ' ');
+    return ("aeiou".indexOf(name.charAt(0)) >= 0 ? "an " : "a ") + name;
+  }
+
+  private static SCLTypes type(String name) {
+    // Only the interpreter opens the file, when the program runs.
+    if (SCLByteFile.isType(name)) return SCLTypes.BYTE_FILE;
+    try {
+      return TypedValue.defaultValue(name).TYPE;
+    } catch (RuntimeException error) {
+      return null;
+    }
+  }
+}
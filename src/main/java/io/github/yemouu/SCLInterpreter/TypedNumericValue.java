@@ -1,19 +1,203 @@
 package io.github.yemouu.SCLInterpreter;
 
+// A number. Every numeric type has a class of its own that keeps its value in a Java primitive of
+// the same width (unsigned types use the signed primitive and the Integer/Long unsigned helpers),
+// so operators never parse or build strings. The text of a number is only built when something
+// asks for it, which is usually a display statement.
+//
+// The types form a lattice ordered by which values they can hold:
+//
+//   byte ---> unsigned short ---> unsigned integer ---> unsigned long
+//    |              |                    |
+//    v              v                    v
+//   short ------> integer ------------> long
+//
+// A value widens to any type above it without changing, and band, bor, and bxor between two types
+// work in the smallest type both of them widen to (their join). unsigned long and the signed types
+// don't have one, so those combinations work in unsigned long with the value's 64 bits. lshift,
+// rshift, and negate keep the type of the value they work on, and the shift count is taken modulo
+// the width of the primitive (32 for everything up to integer, 64 for the longs) like Java does.
+// Operators has a kernel for every operator and pair of types that does exactly that.
+// rshift fills with the sign bit for signed types and with zeros for unsigned ones.
+//
+// Narrowing only happens when a value is assigned to a variable (or passed to a parameter, or
+// returned) of a smaller type, and keeps the lowest bits of the value.
 public abstract class TypedNumericValue extends TypedValue {
-  public TypedNumericValue(SCLTypes type, String value) {
-    super(type, value);
+  // The join of every pair of types, indexed by their ordinals. Null where either isn't a number.
+  private static final SCLTypes[][] JOINS = joins();
+
+  private final boolean defined;
+
+  TypedNumericValue(SCLTypes type, boolean defined) {
+    super(type, null);
+    this.defined = defined;
   }
 
-  public abstract TypedNumericValue bitwiseAnd(TypedNumericValue rightSide);
+  public String getText() {
+    return defined ? format() : null;
+  }
 
-  public abstract TypedNumericValue bitwiseOr(TypedNumericValue rightSide);
+  public boolean hasValue() {
+    return defined;
+  }
 
-  public abstract TypedNumericValue bitwiseXor(TypedNumericValue rightSide);
+  // The value as it is written in a program.
+  abstract String format();
 
-  public abstract TypedNumericValue leftShift(TypedNumericValue rightSide);
+  // The value as a long, sign extended for signed types and zero extended for unsigned ones. The
+  // unsigned long values above Long.MAX_VALUE come out negative, with the same 64 bits.
+  public abstract long longValue();
 
   public abstract TypedNumericValue negate();
 
-  public abstract TypedNumericValue rightShift(TypedNumericValue rightSide);
+  // The bitwise operators, through the kernels in Operators.
+  public final TypedNumericValue bitwiseAnd(TypedNumericValue rightSide) {
+    return apply(Operators.BAND, rightSide);
+  }
+
+  public final TypedNumericValue bitwiseOr(TypedNumericValue rightSide) {
+    return apply(Operators.BOR, rightSide);
+  }
+
+  public final TypedNumericValue bitwiseXor(TypedNumericValue rightSide) {
+    return apply(Operators.BXOR, rightSide);
+  }
+
+  public final TypedNumericValue leftShift(TypedNumericValue rightSide) {
+    return apply(Operators.LSHIFT, rightSide);
+  }
+
+  public final TypedNumericValue rightShift(TypedNumericValue rightSide) {
+    return apply(Operators.RSHIFT, rightSide);
+  }
+
+  private TypedNumericValue apply(int operator, TypedNumericValue rightSide) {
+    if (!defined || rightSide == null || !rightSide.defined)
+      throw new VariableNotDefinedException();
+    Operators.Kernel kernel = Operators.kernel(operator, TYPE, rightSide.TYPE);
+    return (TypedNumericValue) kernel.apply(this, rightSide);
+  }
+
+  // Convert this value to another numeric type, widening or narrowing as needed.
+  public final TypedNumericValue to(SCLTypes type) {
+    if (!defined) throw new VariableNotDefinedException();
+    if (type == TYPE) return this;
+    return of(type, longValue());
+  }
+
+  // A value of the given type holding the lowest bits of value.
+  static TypedNumericValue of(SCLTypes type, long value) {
+    switch (type) {
+      case BYTE:
+        return SCLByte.of((int) value);
+      case SHORT:
+        return SCLShort.of((short) value);
+      case UNSIGNED_SHORT:
+        return SCLUnsignedShort.of((int) value);
+      case INTEGER:
+        return SCLInteger.of((int) value);
+      case UNSIGNED_INTEGER:
+        return SCLUnsignedInteger.of((int) value);
+      case LONG:
+        return SCLLong.of(value);
+      case UNSIGNED_LONG:
+        return SCLUnsignedLong.of(value);
+      default:
+        throw new TypeMismatchException(type + " isn't a number");
+    }
+  }
+
+  // Compare two numbers by value, whatever their types.
+  static int compare(TypedNumericValue lhs, TypedNumericValue rhs) {
+    // Only unsigned long has values that don't fit in a long. Those are larger than every value of
+    // the other types.
+    boolean lhsHigh = lhs.TYPE == SCLTypes.UNSIGNED_LONG && lhs.longValue() < 0;
+    boolean rhsHigh = rhs.TYPE == SCLTypes.UNSIGNED_LONG && rhs.longValue() < 0;
+    if (lhsHigh && rhsHigh) return Long.compareUnsigned(lhs.longValue(), rhs.longValue());
+    if (lhsHigh) return 1;
+    if (rhsHigh) return -1;
+    return Long.compare(lhs.longValue(), rhs.longValue());
+  }
+
+  // The value of a constant. Hex constants of one or two digits (0Fh, 0FFh) are bytes, every other
+  // constant is an unsigned integer, or an unsigned long if it doesn't fit in 32 bits.
+  static TypedNumericValue parseConstant(String constant) {
+    boolean hex = constant.endsWith("h");
+    long value;
+    try {
+      value =
+          hex
+              ? Long.parseUnsignedLong(constant.substring(0, constant.length() - 1), 16)
+              : Long.parseUnsignedLong(constant);
+    } catch (NumberFormatException error) {
+      throw new UnexpectedTokenException("Expected a number but got " + constant);
+    }
+
+    if (hex && SCLByte.isSCLByte(constant)) return new SCLByte(constant);
+    if (value >>> 32 == 0) return SCLUnsignedInteger.of((int) value);
+    return SCLUnsignedLong.of(value);
+  }
+
+  // The smallest type both types widen to.
+  static SCLTypes join(SCLTypes lhs, SCLTypes rhs) {
+    return JOINS[lhs.ordinal()][rhs.ordinal()];
+  }
+
+  private static SCLTypes[][] joins() {
+    SCLTypes[] types = SCLTypes.values();
+    SCLTypes[][] joins = new SCLTypes[types.length][types.length];
+    for (SCLTypes lhs : types)
+      for (SCLTypes rhs : types)
+        if (width(lhs) != 0 && width(rhs) != 0)
+          joins[lhs.ordinal()][rhs.ordinal()] =
+              join(width(lhs), signed(lhs), width(rhs), signed(rhs));
+    return joins;
+  }
+
+  private static SCLTypes join(int lhsWidth, boolean lhsSigned, int rhsWidth, boolean rhsSigned) {
+    if (lhsSigned == rhsSigned) return type(Math.max(lhsWidth, rhsWidth), lhsSigned);
+
+    // A signed type holds every value of an unsigned type narrower than itself.
+    int signedWidth = lhsSigned ? lhsWidth : rhsWidth;
+    int unsignedWidth = lhsSigned ? rhsWidth : lhsWidth;
+    if (signedWidth > unsignedWidth) return type(signedWidth, true);
+    if (unsignedWidth < 64) return type(unsignedWidth * 2, true);
+    return SCLTypes.UNSIGNED_LONG;
+  }
+
+  // The number of bits in a type, or 0 if it isn't a number.
+  static int width(SCLTypes type) {
+    switch (type) {
+      case BYTE:
+        return 8;
+      case SHORT:
+      case UNSIGNED_SHORT:
+        return 16;
+      case INTEGER:
+      case UNSIGNED_INTEGER:
+        return 32;
+      case LONG:
+      case UNSIGNED_LONG:
+        return 64;
+      default:
+        return 0;
+    }
+  }
+
+  private static boolean signed(SCLTypes type) {
+    return type == SCLTypes.SHORT || type == SCLTypes.INTEGER || type == SCLTypes.LONG;
+  }
+
+  private static SCLTypes type(int width, boolean signed) {
+    switch (width) {
+      case 8:
+        return signed ? SCLTypes.SHORT : SCLTypes.BYTE;
+      case 16:
+        return signed ? SCLTypes.SHORT : SCLTypes.UNSIGNED_SHORT;
+      case 32:
+        return signed ? SCLTypes.INTEGER : SCLTypes.UNSIGNED_INTEGER;
+      default:
+        return signed ? SCLTypes.LONG : SCLTypes.UNSIGNED_LONG;
+    }
+  }
 }
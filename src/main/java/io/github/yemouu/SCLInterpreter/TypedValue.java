@@ -2,27 +2,71 @@ package io.github.yemouu.SCLInterpreter;
 
 public abstract class TypedValue {
   public final SCLTypes TYPE;
-  public final String VALUE;
 
-  public TypedValue(SCLTypes type, String value) {
+  // The value as it is written in a program (strings keep their quotation marks), or null if the
+  // variable doesn't have a value yet. Numbers keep their value in a primitive instead and only
+  // build this text when it is asked for, see TypedNumericValue.
+  private final String text;
+
+  public TypedValue(SCLTypes type, String text) {
     this.TYPE = type;
-    this.VALUE = value;
+    this.text = text;
+  }
+
+  public String getText() {
+    return text;
+  }
+
+  // Whether the variable holding this has been given a value.
+  public boolean hasValue() {
+    return text != null;
   }
 
   public static TypedValue toTypedValue(Token token) {
+    TypedValue value = token.value;
+    if (value != null) return value;
+
     switch (token.TYPE) {
       case LITERAL:
-        return new SCLString(token.VALUE);
+        value = new SCLString(token.VALUE);
+        break;
       case CONSTANT:
-        if (SCLByte.isSCLByte(token.VALUE)) return new SCLByte(token.VALUE);
-        else return new SCLUnsignedInteger(token.VALUE);
+        value = TypedNumericValue.parseConstant(token.VALUE);
+        break;
       default:
         throw new UnexpectedTokenException("Unexpected token, " + token);
     }
+    return token.value = value;
+  }
+
+  // Create a value of the given type that doesn't hold a value yet.
+  public static TypedValue defaultValue(String type) {
+    switch (type) {
+      case "string":
+        return new SCLString(null);
+      case "byte":
+        return SCLByte.UNDEFINED;
+      case "short":
+        return SCLShort.UNDEFINED;
+      case "integer":
+        return SCLInteger.UNDEFINED;
+      case "long":
+        return SCLLong.UNDEFINED;
+      case "unsigned short":
+        return SCLUnsignedShort.UNDEFINED;
+      case "unsigned integer":
+        return SCLUnsignedInteger.UNDEFINED;
+      case "unsigned long":
+        return SCLUnsignedLong.UNDEFINED;
+      default:
+        if (type.startsWith("byte array ")) return SCLByteArray.ofType(type);
+        if (SCLByteFile.isType(type)) return SCLByteFile.ofType(type);
+        throw new TypeMismatchException("Unknown type, " + type);
+    }
   }
 
   public String toString() {
-    return TYPE + ":" + VALUE;
+    return TYPE + ":" + getText();
   }
 
   public Token toToken() {
@@ -37,6 +81,6 @@ public abstract class TypedValue {
         break;
     }
 
-    return new Token(type, VALUE);
+    return new Token(type, getText());
   }
 }
@@ -0,0 +1,86 @@
+package io.github.yemouu.SCLInterpreter;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// The byte array operations on the Vector API. Each loop handles as many whole vectors as fit in
+// the array (the widest the CPU supports) and finishes the last few bytes one at a time. Only ever
+// loaded by name from ByteKernels, so nothing breaks when the Vector API isn't available.
+final class VectorByteKernels implements ByteKernels {
+  private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+  public void and(byte[] lhs, byte[] rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i)
+          .and(ByteVector.fromArray(SPECIES, rhs, i))
+          .intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] & rhs[i]);
+  }
+
+  public void or(byte[] lhs, byte[] rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i)
+          .or(ByteVector.fromArray(SPECIES, rhs, i))
+          .intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] | rhs[i]);
+  }
+
+  public void xor(byte[] lhs, byte[] rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i)
+          .lanewise(VectorOperators.XOR, ByteVector.fromArray(SPECIES, rhs, i))
+          .intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] ^ rhs[i]);
+  }
+
+  public void and(byte[] lhs, byte rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i).and(rhs).intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] & rhs);
+  }
+
+  public void or(byte[] lhs, byte rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i).or(rhs).intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] | rhs);
+  }
+
+  public void xor(byte[] lhs, byte rhs, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i).lanewise(VectorOperators.XOR, rhs).intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] ^ rhs);
+  }
+
+  public void shiftLeft(byte[] lhs, int count, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i).lanewise(VectorOperators.LSHL, count).intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) (lhs[i] << count);
+  }
+
+  // LSHR shifts each byte as an unsigned 8 bit value, which is what SCL's bytes are.
+  public void shiftRight(byte[] lhs, int count, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, lhs, i).lanewise(VectorOperators.LSHR, count).intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) ((lhs[i] & 0xFF) >>> count);
+  }
+
+  public void not(byte[] operand, byte[] out) {
+    int i = 0;
+    for (int bound = SPECIES.loopBound(out.length); i < bound; i += SPECIES.length())
+      ByteVector.fromArray(SPECIES, operand, i).not().intoArray(out, i);
+    for (; i < out.length; i++) out[i] = (byte) ~operand[i];
+  }
+
+  public String name() {
+    return "vector " + SPECIES.vectorBitSize() + " bit";
+  }
+}
@@ -0,0 +1,143 @@
+package io.github.yemouu.SCLInterpreter;
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.IOException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Runs a program again every time its file, or the file of a module it imports, is saved, for
+// --watch. The JVM stays up between runs, so after the first one the interpreter is already JIT
+// compiled, and only what changed is loaded again: the program's file is parsed again, but each
+// subprogram that didn't change is taken from the last load along with its compiled form (see
+// SCLProgram(Path, SCLProgram)), and the ModuleCache keeps every module that didn't change.
+//
+// Files are watched through a WatchService on the directories they are in, since editors often
+// save by writing a new file and renaming it over the old one. A load that fails (a syntax error
+// in the middle of an edit, say) is reported and the watcher waits for the next save, and so does a
+// run that fails.
+final class Watcher {
+  // Editors tend to save with a few events in a row (truncate, write, rename). Once one arrives we
+  // wait this long for more before loading, so a save is only loaded once.
+  private static final long SETTLE_MILLIS = 10;
+
+  private final Path file;
+  private final Consumer<Interpreter> setup;
+  private final WatchService service;
+
+  // The watched directories, and the files in them that the program is loaded from.
+  private final Map<Path, WatchKey> directories = new HashMap<>();
+  private Set<Path> files = Set.of();
+
+  // The last program that loaded, which the next load reuses the unchanged subprograms of.
+  private SCLProgram program;
+
+  private Watcher(Path file, Consumer<Interpreter> setup) throws IOException {
+    this.file = file.toAbsolutePath().normalize();
+    this.setup = setup;
+    this.service = FileSystems.getDefault().newWatchService();
+  }
+
+  // Run a program and then run it again after every save, until the JVM is stopped. setup is
+  // given each run's Interpreter before it runs.
+  static void watch(Path file, Consumer<Interpreter> setup)
+      throws IOException, InterruptedException {
+    Watcher watcher = new Watcher(file, setup);
+    // Until the program first loads, only its own file is known.
+    watcher.watch(Set.of(watcher.file));
+    watcher.run(System.nanoTime());
+    while (true) {
+      WatchKey key = watcher.service.take();
+      long changed = System.nanoTime();
+      boolean saved = watcher.saved(key);
+      while ((key = watcher.service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null)
+        saved |= watcher.saved(key);
+      if (saved) watcher.run(changed);
+    }
+  }
+
+  // Whether the events of a key include one for a file the program is loaded from.
+  private boolean saved(WatchKey key) {
+    boolean saved = false;
+    Path directory = (Path) key.watchable();
+    for (WatchEvent<?> event : key.pollEvents()) {
+      // Events were lost, so any file could have changed.
+      if (event.kind() == OVERFLOW) saved = true;
+      else if (files.contains(directory.resolve((Path) event.context()))) saved = true;
+    }
+    key.reset();
+    return saved;
+  }
+
+  // Load the program again and run it. The time it took is measured from when the save was seen.
+  private void run(long changed) throws IOException {
+    SCLProgram loaded;
+    try {
+      loaded = new SCLProgram(file, program);
+    } catch (IOException | RuntimeException error) {
+      System.err.println(error);
+      return;
+    }
+    program = loaded;
+    Set<Path> watched = new HashSet<>();
+    watched.add(file);
+    add(loaded, watched);
+    watch(watched);
+    long ready = System.nanoTime();
+
+    try {
+      Interpreter interpreter = new Interpreter(loaded);
+      setup.accept(interpreter);
+      interpreter.execute();
+    } catch (RuntimeException error) {
+      System.out.flush();
+      System.err.println(error);
+    }
+    System.out.flush();
+
+    long done = System.nanoTime();
+    System.err.printf(
+        "[watch] loaded in %d ms (%d of %d subprograms reused), ran in %d ms%n",
+        TimeUnit.NANOSECONDS.toMillis(ready - changed),
+        loaded.getReusedCount(),
+        loaded.getSubprogramCount(),
+        TimeUnit.NANOSECONDS.toMillis(done - ready));
+  }
+
+  // Watch the files a program was loaded from, and stop watching the directories that no longer
+  // hold any of them.
+  private void watch(Set<Path> watched) throws IOException {
+    files = watched;
+
+    Set<Path> needed = new HashSet<>();
+    for (Path path : watched) needed.add(path.getParent());
+    directories
+        .entrySet()
+        .removeIf(
+            entry -> {
+              if (needed.contains(entry.getKey())) return false;
+              entry.getValue().cancel();
+              return true;
+            });
+    for (Path directory : needed)
+      if (!directories.containsKey(directory))
+        directories.put(directory, directory.register(service, ENTRY_CREATE, ENTRY_MODIFY));
+  }
+
+  // Add the files of every module a program imports, and of the modules they import.
+  private static void add(SCLProgram program, Set<Path> files) {
+    for (SCLProgram module : program.getModules())
+      if (files.add(module.getPath())) add(module, files);
+  }
+}